@@ -227,7 +227,7 @@ public class MainApp extends Application {
         treeRoot.setExpanded(true);
         TreeView<String> treeView = new TreeView<>(treeRoot);
         treeView.getSelectionModel().selectedItemProperty().addListener(
-                (observable, oldValue, newValue) -> confirmButton.setDisable(newValue == null));
+                (observable, oldValue, newValue) -> confirmButton.setDisable(!(newValue instanceof BaseDirTreeItem)));
         dialogPane.setContent(treeView);
 
         dialog.setResultConverter(buttonType -> {
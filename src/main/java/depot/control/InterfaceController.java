@@ -6,14 +6,26 @@ import depot.model.base.AppSettings;
 import depot.model.repository.config.BaiduPanConfig;
 import depot.model.repository.config.ComparableRepositoryConfig;
 import depot.model.repository.config.RepositoryConfig;
+import depot.model.repository.config.RepositorySessionPool;
 import depot.model.repository.content.RepositoryContentData;
+import depot.model.repository.content.RepositoryListingCache;
+import depot.model.repository.index.RepositoryContentSearcher;
+import depot.model.repository.index.RepositoryQuery;
+import depot.model.repository.index.RepositorySnapshot;
 import depot.model.repository.log.RepositoryLogData;
 import depot.model.repository.path.*;
 import depot.model.repository.sync.SyncCancelledException;
+import depot.model.transfer.base.BlobCache;
+import depot.model.transfer.download.DownloadArchiveData;
+import depot.model.transfer.download.DownloadArchiveEditor;
 import depot.model.transfer.download.DownloadCancelledException;
+import depot.model.transfer.download.DownloadEngine;
+import depot.model.transfer.download.DownloadPlanner;
 import depot.model.transfer.download.DownloadTask;
 import depot.model.transfer.download.DownloadTransactionData;
 import depot.model.transfer.upload.UploadCancelledException;
+import depot.model.transfer.upload.UploadDeltaBase;
+import depot.model.transfer.upload.UploadPipeline;
 import depot.model.transfer.upload.UploadTransactionData;
 import depot.util.FileUtil;
 import javafx.application.Platform;
@@ -33,8 +45,6 @@ import javafx.stage.WindowEvent;
 import netscape.javascript.JSObject;
 import org.apache.commons.collections.CollectionUtils;
 import org.tmatesoft.svn.core.*;
-import org.tmatesoft.svn.core.internal.wc.SVNErrorManager;
-import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
 import org.tmatesoft.svn.core.io.ISVNEditor;
 import org.tmatesoft.svn.core.io.SVNRepository;
 import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
@@ -47,22 +57,20 @@ import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
 import org.tmatesoft.svn.core.wc2.admin.SvnRepositoryDump;
 import org.tmatesoft.svn.core.wc2.admin.SvnRepositoryLoad;
 import org.tmatesoft.svn.core.wc2.admin.SvnRepositoryVerify;
-import org.tmatesoft.svn.util.SVNLogType;
 
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.OutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class InterfaceController extends BaseController {
@@ -76,6 +84,7 @@ public class InterfaceController extends BaseController {
 
     private RepositoryConfig repositoryConfig;
     private SVNRepository repository;
+    private RepositoryListingCache listingCache;
 
     @FXML
     private WebView webView;
@@ -159,6 +168,12 @@ public class InterfaceController extends BaseController {
             return list;
         }
 
+        private List<RepositoryDirEntry> toEntryList(RepositoryListingCache.Listing listing) {
+            return listing.getEntries().stream()
+                    .map(RepositoryDirEntry::new)
+                    .collect(Collectors.toList());
+        }
+
         private void serviceCleanup() {
             uploadTransactionData = null;
             if (compressExecutor != null) {
@@ -215,31 +230,51 @@ public class InterfaceController extends BaseController {
                     protected Void call() {
                         try {
                             repositoryContentData.pathNodeList = path.getPathNodeList();
-                            if (repository.checkPath(path.toString(), -1) == SVNNodeKind.DIR) {
-                                ArrayList<SVNDirEntry> entryList = new ArrayList<>();
-                                repository.getDir(path.toString(), -1, null, entryList);
-                                repositoryContentData.entryList = entryList.stream()
-                                        .map(RepositoryDirEntry::new)
-                                        .collect(Collectors.toList());
+                            RepositoryPathNode pathNode = path.getPathNode();
+                            if (!pathNode.isSearch()) {
+                                String pathString = path.toString();
+                                RepositoryListingCache.Listing listing = listingCache.getCached(pathString);
+                                boolean cached = listing != null;
+                                if (!cached) {
+                                    try {
+                                        listing = listingCache.load(repository, pathString);
+                                    } catch (SVNException e) {
+                                        if (repository.checkPath(pathString, -1) != SVNNodeKind.DIR) {
+                                            throw new Exception("文件夹不存在");
+                                        }
+                                        throw e;
+                                    }
+                                }
+                                repositoryContentData.setEntryList(toEntryList(listing));
+                                if (cached) {
+                                    // 先显示缓存内容，列表有变化时重新显示
+                                    listingCache.revalidate(pathString, listing, newListing -> Platform.runLater(() -> {
+                                        if (pathString.equals(path.toString())) {
+                                            repositoryContentData.setEntryList(toEntryList(newListing));
+                                            getWindow().call("sortEntryList");
+                                        }
+                                    }));
+                                }
+                                listingCache.prefetch(pathString, listing);
                                 Platform.runLater(() -> getWindow().call("clearSearchPattern"));
                             } else {
-                                RepositoryPathNode pathNode = path.getPathNode();
-                                if (pathNode.isSearch()) {
-                                    String searchPattern = pathNode.getSearchPattern();
-                                    ArrayList<RepositoryDirEntry> searchEntryList = new ArrayList<>();
-                                    RepositoryDirEntry.traverse(repository, new RepositoryPathNode(), (currentPathNode, entry) -> {
-                                        if (currentPathNode.getParent() != null) {
-                                            if (Pattern.compile(".*" + searchPattern + ".*",
-                                                            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)
-                                                    .matcher(entry.getName()).matches()) {
-                                                searchEntryList.add(new RepositorySearchEntry(currentPathNode.getParent(), entry));
-                                            }
-                                        }
-                                    });
-                                    repositoryContentData.entryList = searchEntryList;
+                                String searchPattern = pathNode.getSearchPattern();
+                                ArrayList<RepositoryDirEntry> searchEntryList = new ArrayList<>();
+                                RepositoryDirEntry.DirEntryReceiver searchReceiver = (currentPathNode, entry) ->
+                                        searchEntryList.add(new RepositorySearchEntry(currentPathNode.getParent(), entry));
+                                if (searchPattern.startsWith(RepositoryContentSearcher.SEARCH_PREFIX)) {
+                                    RepositoryDirEntry.searchContent(repository,
+                                            searchPattern.substring(RepositoryContentSearcher.SEARCH_PREFIX.length()), searchReceiver);
+                                } else if (RepositoryQuery.isQuery(searchPattern)) {
+                                    RepositoryDirEntry.query(repository, searchPattern, searchReceiver);
                                 } else {
-                                    throw new Exception("文件夹不存在");
+                                    RepositoryDirEntry.search(repository, searchPattern, searchReceiver);
                                 }
+                                if (isCancelled()) {
+                                    // 输入过程中已开始新的搜索
+                                    return null;
+                                }
+                                repositoryContentData.setEntryList(searchEntryList);
                             }
                             Platform.runLater(() -> {
                                 getWindow().setMember("currentParentPath", path.toString());
@@ -332,6 +367,7 @@ public class InterfaceController extends BaseController {
 
             @Override
             protected void onEditingComplete() {
+                listingCache.invalidateAll();
                 Platform.runLater(() -> {
                     serviceCleanup();
                     getWindow().call("loadRepoContent");
@@ -401,6 +437,8 @@ public class InterfaceController extends BaseController {
          * 公共方法 - 关闭仓库
          */
         public void closeRepository() {
+            listingCache.dispose();
+            RepositorySessionPool.close(repository);
             mainApp.showWelcome();
         }
 
@@ -412,37 +450,33 @@ public class InterfaceController extends BaseController {
                     new LoadRepositoryContentService(), "仓库加载失败"));
         }
 
+        public void invalidateRepositoryContent() {
+            listingCache.invalidateAll();
+        }
+
         public Object[] getPathNodeArray() {
             return repositoryContentData.getPathNodeArray();
         }
 
-        public Object[] getEntryArray() {
-            return repositoryContentData.getEntryArray();
+        public int getEntryCount() {
+            return repositoryContentData.getEntryCount();
+        }
+
+        public String getEntryWindowJson(int offset, int limit) {
+            return repositoryContentData.getEntryWindowJson(offset, limit);
+        }
+
+        public String getEntryPathsJson() {
+            return repositoryContentData.getEntryPathsJson();
+        }
+
+        public int indexOfEntry(String pathString) {
+            return repositoryContentData.indexOfEntry(pathString);
         }
 
         public void sortEntryList(String sortKey, String direction) {
             direction = "up".equals(direction) ? "up" : "down";
-            Comparator<RepositoryDirEntry> comparator;
-            switch (sortKey) {
-                case "mtime":
-                    comparator = "up".equals(direction) ?
-                            RepositoryDirEntry::entryMtimeCompare : RepositoryDirEntry::entryMtimeCompareRev;
-                    break;
-                case "type":
-                    comparator = "up".equals(direction) ?
-                            RepositoryDirEntry::entryTypeCompare : RepositoryDirEntry::entryTypeCompareRev;
-                    break;
-                case "size":
-                    comparator = "up".equals(direction) ?
-                            RepositoryDirEntry::entrySizeCompare : RepositoryDirEntry::entrySizeCompareRev;
-                    break;
-                case "name":
-                default:
-                    sortKey = "name";
-                    comparator = "up".equals(direction) ?
-                            RepositoryDirEntry::entryNameCompare : RepositoryDirEntry::entryNameCompareRev;
-            }
-            repositoryContentData.entryList.sort(comparator);
+            sortKey = repositoryContentData.sortEntryList(sortKey, "up".equals(direction));
             getWindow().call("fillRepoContentTable");
             getWindow().call("showSortIcon", sortKey, direction);
         }
@@ -488,7 +522,9 @@ public class InterfaceController extends BaseController {
                 pattern = pattern.trim();
                 if (pattern.length() > 0) {
                     RepositoryPathNode searchPathNode = RepositoryPathNode.getSearchPathNode(pattern);
-                    if (searchPathNode != null && path.goPath(searchPathNode.toString())) {
+                    // 继续输入时替换当前搜索，不增加历史记录
+                    if (searchPathNode != null && (path.getPathNode().isSearch() ?
+                            path.replacePath(searchPathNode.toString()) : path.goPath(searchPathNode.toString()))) {
                         getWindow().call("loadRepoContent");
                     }
                 }
@@ -553,10 +589,15 @@ public class InterfaceController extends BaseController {
                 String fileUploadProgressText = "上传文件";
                 String fileUploadProgressTextTpl = "[%6s] [%s / %s] 总进度：%d / %d \t| 剩余时间：%s";
                 String fileUploadSubProgressTextTpl = "[%6s] [%s / %s] 正在上传：%s";
+                String fileDeltaBaseSubProgressTextTpl = "[%s] 正在获取仓库版本：%s";
                 String fileChecksumCalProgressTextTpl = "[%6s] 总进度：%d / %d";
                 String fileChecksumCalSubProgressTextTpl = "[%6s] [%s / %s] 正在计算校验和：%s";
+                String fileCopyProgressText = "复制文件";
+                String fileCopyProgressTextTpl = fileCopyProgressText + "（%d/%d）：%s";
                 String uploadCompleteProgressText = "上传完成";
+                String uploadCompleteWithCopyProgressTextTpl = uploadCompleteProgressText + "，%d个文件由仓库中的相同文件复制，节省%s";
                 String cancelConfirmMsg = "确定取消上传吗？";
+                boolean deltaUpload = AppSettings.load().isDeltaUpload();
                 startExclusiveService(buildNonInteractiveService(new EditingWithRefreshingService("上传", errorMsg) {
                     @Override
                     protected void beforeEditing(Task<Void> task) throws Exception {
@@ -599,82 +640,137 @@ public class InterfaceController extends BaseController {
                             }
                         }
 
-                        if (CollectionUtils.isNotEmpty(uploadTransactionData.getFileList())) {
-                            /*准备上传文件*/
+                        if (CollectionUtils.isNotEmpty(uploadTransactionData.getCopyFileList())) {
+                            /*准备复制文件*/
                             Platform.runLater(() -> {
-                                mainApp.showProgress(0, fileUploadProgressText, 0, fileUploadProgressText);
+                                mainApp.showProgress(0, fileCopyProgressText);
                                 mainApp.setProgressTitle(progressTitle);
                                 mainApp.setOnProgressCloseRequest(event -> cancelExclusiveService(event, cancelConfirmMsg));
                             });
 
-                            /*上传文件*/
-                            for (File file : uploadTransactionData.getFileList()) {
-                                /*文件大小校验*/
-                                Preconditions.checkArgument(file.length() == uploadTransactionData.getSize(file));
-
-                                long sent = 0;
-                                updateProgress(file, sent);
-
+                            /*复制文件：仓库中已有相同内容，只在服务端复制*/
+                            List<File> copyFileList = uploadTransactionData.getCopyFileList();
+                            for (int i = 0; i < copyFileList.size(); i++) {
+                                if (task.isCancelled()) {
+                                    throw new UploadCancelledException();
+                                }
+                                File file = copyFileList.get(i);
                                 String uploadFilePath = uploadPathMap.get(file);
                                 if (uploadTransactionData.getKind(file) == SVNNodeKind.FILE) {
-                                    editor.openFile(uploadFilePath, -1);
-                                } else {
-                                    editor.addFile(uploadFilePath, null, -1);
+                                    // 替换已有文件
+                                    editor.deleteEntry(uploadFilePath, -1);
                                 }
-                                editor.applyTextDelta(uploadFilePath, null);
-                                SVNDeltaGenerator deltaGenerator = new SVNDeltaGenerator();
-                                String checksum;
-                                try (FileInputStream fileInputStream = new FileInputStream(file)) {
-                                    byte[] targetBuffer = new byte[64 * 1024];
-                                    MessageDigest digest = null;
-                                    try {
-                                        digest = MessageDigest.getInstance("MD5");
-                                    } catch (NoSuchAlgorithmException e) {
-                                        SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR,
-                                                "MD5 implementation not found: {0}", e.getLocalizedMessage());
-                                        SVNErrorManager.error(err, e, SVNLogType.DEFAULT);
-                                    }
-                                    boolean windowSent = false;
-                                    while (true) {
-                                        if (task.isCancelled()) {
-                                            throw new UploadCancelledException();
+                                editor.addFile(uploadFilePath, uploadTransactionData.getCopySource(file).toString(),
+                                        uploadTransactionData.getCopyRevision());
+                                editor.closeFile(uploadFilePath, null);
+
+                                double progressValue = 1. * (i + 1) / copyFileList.size();
+                                String progressText = String.format(fileCopyProgressTextTpl,
+                                        i + 1, copyFileList.size(), file.getName());
+                                Platform.runLater(() -> mainApp.setProgress(progressValue, progressText));
+                            }
+                        }
+
+                        if (CollectionUtils.isNotEmpty(uploadTransactionData.getFileList())) {
+                            /*准备上传文件*/
+                            Platform.runLater(() -> {
+                                mainApp.showProgress(0, fileUploadProgressText, 0, fileUploadProgressText);
+                                mainApp.setProgressTitle(progressTitle);
+                                mainApp.setOnProgressCloseRequest(event -> cancelExclusiveService(event, cancelConfirmMsg));
+                            });
+
+                            /*上传文件：读取和计算校验和在后台流水线中进行*/
+                            try (UploadPipeline pipeline = new UploadPipeline(uploadTransactionData.getFileList(), task::isCancelled)) {
+                                for (File file : uploadTransactionData.getFileList()) {
+                                    /*文件大小校验*/
+                                    Preconditions.checkArgument(file.length() == uploadTransactionData.getSize(file));
+
+                                    long sent = 0;
+                                    updateProgress(file, sent);
+
+                                    String uploadFilePath = uploadPathMap.get(file);
+                                    UploadDeltaBase deltaBase = null;
+                                    if (uploadTransactionData.getKind(file) == SVNNodeKind.FILE) {
+                                        if (deltaUpload && file.length() >= UploadDeltaBase.MIN_FILE_SIZE) {
+                                            deltaBase = UploadDeltaBase.fetch(repository, uploadFilePath,
+                                                    fetchedSize -> updateDeltaBaseProgress(file, fetchedSize), task::isCancelled);
                                         }
-                                        int targetLength = fileInputStream.read(targetBuffer);
-                                        if (targetLength <= 0) {
-                                            if (!windowSent) {
-                                                editor.textDeltaChunk(uploadFilePath, SVNDiffWindow.EMPTY);
+                                        editor.openFile(uploadFilePath, -1);
+                                    } else {
+                                        editor.addFile(uploadFilePath, null, -1);
+                                    }
+                                    editor.applyTextDelta(uploadFilePath, deltaBase != null ? deltaBase.getChecksum() : null);
+                                    SVNDeltaGenerator deltaGenerator = new SVNDeltaGenerator();
+                                    String checksum;
+                                    try (UploadDeltaBase source = deltaBase) {
+                                        byte[] sourceBuffer = source != null ? new byte[UploadPipeline.WINDOW_SIZE] : null;
+                                        boolean windowSent = false;
+                                        while (true) {
+                                            if (task.isCancelled()) {
+                                                throw new UploadCancelledException();
                                             }
-                                            /*传输数据量校验*/
-                                            Preconditions.checkArgument(sent == uploadTransactionData.getSize(file));
-                                            break;
-                                        }
-                                        if (digest != null) {
-                                            digest.update(targetBuffer, 0, targetLength);
+                                            UploadPipeline.Window window = pipeline.take(file);
+                                            if (window.isEnd()) {
+                                                if (!windowSent) {
+                                                    editor.textDeltaChunk(uploadFilePath, SVNDiffWindow.EMPTY);
+                                                }
+                                                /*传输数据量校验*/
+                                                Preconditions.checkArgument(sent == uploadTransactionData.getSize(file));
+                                                checksum = window.getChecksum();
+                                                break;
+                                            }
+                                            int targetLength = window.getLength();
+                                            if (source != null) {
+                                                /*基础版本与目标按相同偏移分窗口*/
+                                                long sourceOffset = source.getOffset();
+                                                int sourceLength = source.readWindow(sourceBuffer, targetLength);
+                                                deltaGenerator.sendDelta(uploadFilePath, sourceBuffer, sourceLength, sourceOffset,
+                                                        window.getBuffer(), targetLength, editor);
+                                            } else {
+                                                deltaGenerator.sendDelta(uploadFilePath, window.getBuffer(), targetLength, editor);
+                                            }
+                                            pipeline.release(window);
+                                            windowSent = true;
+                                            sent += targetLength;
+                                            updateProgress(file, sent);
                                         }
-                                        deltaGenerator.sendDelta(uploadFilePath, targetBuffer, targetLength, editor);
-                                        windowSent = true;
-                                        sent += targetLength;
-                                        updateProgress(file, sent);
+                                        editor.textDeltaEnd(uploadFilePath);
                                     }
-                                    editor.textDeltaEnd(uploadFilePath);
-                                    checksum = SVNFileUtil.toHexDigest(digest);
-                                }
-                                editor.closeFile(uploadFilePath, checksum);
+                                    editor.closeFile(uploadFilePath, checksum);
 
-                                updateProgress(file, sent);
+                                    updateProgress(file, sent);
+                                }
                             }
                         }
 
                         /*上传完成*/
+                        String completeProgressText = getCompleteProgressText();
                         Platform.runLater(() -> {
                             if (CollectionUtils.isNotEmpty(uploadTransactionData.getFileList())) {
-                                mainApp.setProgress(1, uploadCompleteProgressText, 1, uploadCompleteProgressText);
+                                mainApp.setProgress(1, completeProgressText, 1, completeProgressText);
                             } else {
-                                mainApp.setProgress(1, uploadCompleteProgressText);
+                                mainApp.setProgress(1, completeProgressText);
                             }
                         });
                     }
 
+                    @Override
+                    protected void onEditingSuccess() {
+                        if (!uploadTransactionData.getCopyFileList().isEmpty()) {
+                            String completeProgressText = getCompleteProgressText();
+                            Platform.runLater(() -> info(completeProgressText));
+                        }
+                    }
+
+                    private String getCompleteProgressText() {
+                        if (uploadTransactionData.getCopyFileList().isEmpty()) {
+                            return uploadCompleteProgressText;
+                        }
+                        return String.format(uploadCompleteWithCopyProgressTextTpl,
+                                uploadTransactionData.getCopyFileList().size(),
+                                FileUtil.getSizeString(uploadTransactionData.getCopiedSize(), 0));
+                    }
+
                     private void updateChecksumProgress(long processedSize, long totalSize, int itemIdx, int itemCount, String itemName) {
                         double progressValue = 1. * (itemIdx + 1) / itemCount;
                         String progressPercent = String.format("%.1f%%", 100 * progressValue);
@@ -700,6 +796,26 @@ public class InterfaceController extends BaseController {
                                         dirIdx + 1, lengthOfDirs, dirName)));
                     }
 
+                    private void updateDeltaBaseProgress(File file, long fetchedSize) {
+                        long totalSent = uploadTransactionData.getPrevSize(file);
+                        long totalSize = Math.max(uploadTransactionData.getTotalSize(), 1);
+                        double progressValue = 1. * totalSent / totalSize;
+                        String progressPercent = String.format("%.1f%%", 100 * progressValue);
+                        String totalSentString = FileUtil.getSizeString(totalSent, 0);
+                        String totalSizeString = FileUtil.getSizeString(totalSize, 0);
+                        int fileIdx = uploadTransactionData.getFileList().indexOf(file);
+                        int lengthOfFiles = uploadTransactionData.getFileList().size();
+                        String remainingTimeString = uploadTransactionData.getRemainingTimeString(totalSent);
+
+                        String fetchedSizeString = FileUtil.getSizeString(fetchedSize, 0);
+                        String fileName = file.getName();
+                        Platform.runLater(() -> mainApp.setProgress(
+                                progressValue, String.format(fileUploadProgressTextTpl,
+                                        progressPercent, totalSentString, totalSizeString,
+                                        fileIdx + 1, lengthOfFiles, remainingTimeString),
+                                -1, String.format(fileDeltaBaseSubProgressTextTpl, fetchedSizeString, fileName)));
+                    }
+
                     private void updateProgress(File file, long sent) {
                         long totalSent = uploadTransactionData.getPrevSize(file) + sent;
                         long totalSize = Math.max(uploadTransactionData.getTotalSize(), 1);
@@ -754,13 +870,21 @@ public class InterfaceController extends BaseController {
             String downloadProgressText = "下载文件";
             String downloadProgressTextTpl = "[%6s] [%s / %s] 总进度：%d / %d \t| 剩余时间：%s";
             String downloadSubProgressTextTpl = "[%6s] [%s / %s] 正在下载：%s";
+            String downloadSubProgressOthersTpl = "%s（另有%d个任务下载中）";
+            String compareLocalProgressTextTpl = "[%6s] 比较本地文件：%d / %d";
+            String compareLocalSubProgressTextTpl = "[%6s] [%s / %s] 正在计算校验和：%s";
+            String copyLocalProgressTextTpl = "复制本地已有内容的文件：%d / %d";
             String downloadCompleteProgressText = "下载完成";
+            String downloadCompleteLocalProgressTextTpl = "下载完成，%d个文件（%s）从本地复制";
+            String downloadCompleteUnchangedProgressTextTpl = "，%d个文件（%s）与本地相同";
             String cancelConfirmMsg = "确定取消下载吗？";
+            boolean mirrorDownload = AppSettings.load().isMirrorDownload();
             startExclusiveService(buildNonInteractiveService(new Service<Void>() {
                 @Override
                 protected Task<Void> createTask() {
                     return new Task<Void>() {
                         private DownloadTransactionData downloadTransactionData;
+                        private RepositorySnapshot snapshot;
 
                         @Override
                         protected Void call() {
@@ -771,41 +895,69 @@ public class InterfaceController extends BaseController {
                                     mainApp.setOnProgressCloseRequest(event ->
                                             cancelExclusiveService(event, cancelConfirmMsg));
                                 });
+                                /*文件夹整体一次update下载；快照已建立时从快照取得大小，不再遍历仓库；
+                                镜像下载需要快照比较文件大小*/
+                                snapshot = mirrorDownload || RepositoryDirEntry.getSnapshot(repository).isBuilt() ?
+                                        RepositoryDirEntry.getUpdatedSnapshot(repository) : null;
                                 LinkedList<DownloadTask> downloadTasks = new LinkedList<>();
                                 for (String srcPathString : pathList) {
                                     RepositoryPathNode srcPathNode = path.resolve(srcPathString).getPathNode();
                                     RepositoryPathNode parentPathNode = srcPathNode.getParent();
-                                    RepositoryDirEntry.traverse(repository, srcPathNode, (currentPathNode, entry) -> {
-                                        if (entry.getKind() == SVNNodeKind.FILE) {
-                                            downloadTasks.add(new DownloadTask(currentPathNode, entry, parentPathNode));
-                                        }
-                                    });
+                                    SVNDirEntry entry = snapshot != null ?
+                                            snapshot.getDirEntry(repository, srcPathNode.toString()) :
+                                            RepositoryDirEntry.getEntry(repository, srcPathNode.toString());
+                                    if (entry == null) {
+                                        throw new Exception("路径不存在：" + srcPathNode);
+                                    }
+                                    if (entry.getKind() == SVNNodeKind.DIR) {
+                                        long size = snapshot != null ? snapshot.getSubtreeSize(srcPathNode.toString()) : -1;
+                                        downloadTasks.add(new DownloadTask(srcPathNode, entry, parentPathNode, null, size));
+                                    } else if (entry.getKind() == SVNNodeKind.FILE) {
+                                        downloadTasks.add(new DownloadTask(srcPathNode, entry, parentPathNode));
+                                    }
                                 }
 
                                 if (!downloadTasks.isEmpty()) {
-                                    /*准备下载*/
-                                    Platform.runLater(() -> {
-                                        mainApp.showProgress(0, downloadProgressText,
-                                                0, downloadProgressText);
-                                        mainApp.setProgressTitle(progressTitle);
-                                        mainApp.setOnProgressCloseRequest(event ->
-                                                cancelExclusiveService(event, cancelConfirmMsg));
-                                    });
-                                    downloadTransactionData = new DownloadTransactionData(downloadTasks, this);
-
-                                    /*开始下载*/
-                                    for (DownloadTask downloadTask : downloadTransactionData.downloadTasks()) {
-                                        if (isCancelled()) {
-                                            throw new DownloadCancelledException();
-                                        }
-                                        downloadTask.getEditor().setReceiveListener(newReceivedTotal ->
-                                                updateProgress(downloadTask, newReceivedTotal));
-                                        downloadTask.execute(repository);
+                                    /*本地已有内容的文件不再下载*/
+                                    DownloadPlanner planner = new DownloadPlanner(BlobCache.getInstance(), mirrorDownload);
+                                    try {
+                                        planner.plan(repository, snapshot, downloadTasks,
+                                                this::updateCompareProgress, this::isCancelled);
+
+                                        /*准备下载*/
+                                        Platform.runLater(() -> {
+                                            mainApp.showProgress(0, downloadProgressText,
+                                                    0, downloadProgressText);
+                                            mainApp.setProgressTitle(progressTitle);
+                                            mainApp.setOnProgressCloseRequest(event ->
+                                                    cancelExclusiveService(event, cancelConfirmMsg));
+                                        });
+                                        downloadTransactionData = new DownloadTransactionData(downloadTasks, this);
+
+                                        /*开始下载：多个会话同时下载*/
+                                        new DownloadEngine(repository, downloadTransactionData, this::isCancelled)
+                                                .execute(this::updateProgress);
+
+                                        /*复制本地已有内容的文件*/
+                                        planner.copyLocalFiles(repository, downloadTasks, this::isCancelled, (copiedCount, localCount) -> {
+                                            String progressText = String.format(copyLocalProgressTextTpl, copiedCount, localCount);
+                                            Platform.runLater(() -> mainApp.setProgress(1, progressText,
+                                                    1. * copiedCount / Math.max(localCount, 1), progressText));
+                                        });
+                                    } finally {
+                                        planner.release();
                                     }
 
                                     /*下载完成*/
-                                    Platform.runLater(() -> mainApp.setProgress(1, downloadCompleteProgressText,
-                                            1, downloadCompleteProgressText));
+                                    String completeProgressText = (planner.getLocalCount() > 0 ?
+                                            String.format(downloadCompleteLocalProgressTextTpl, planner.getLocalCount(),
+                                                    FileUtil.getSizeString(planner.getLocalSize(), 0)) :
+                                            downloadCompleteProgressText)
+                                            + (planner.getUnchangedCount() > 0 ?
+                                            String.format(downloadCompleteUnchangedProgressTextTpl, planner.getUnchangedCount(),
+                                                    FileUtil.getSizeString(planner.getUnchangedSize(), 0)) : "");
+                                    Platform.runLater(() -> mainApp.setProgress(1, completeProgressText,
+                                            1, completeProgressText));
                                 }
                             } catch (Exception e) {
                                 Platform.runLater(() -> error(errorMsg, e));
@@ -815,27 +967,58 @@ public class InterfaceController extends BaseController {
                             return null;
                         }
 
-                        private void updateProgress(DownloadTask downloadTask, long received) {
-                            long totalReceived = downloadTransactionData.getPrevSize(downloadTask) + received;
-                            long totalSize = Math.max(downloadTransactionData.getTotalSize(), 1);
-                            double progressValue = 1. * totalReceived / totalSize;
+                        private void updateCompareProgress(long processedSize, long totalSize, int itemIdx, int itemCount, String itemName) {
+                            double progressValue = 1. * (itemIdx + 1) / itemCount;
                             String progressPercent = String.format("%.1f%%", 100 * progressValue);
-                            String totalReceivedString = FileUtil.getSizeString(totalReceived, 0);
+                            double subProgressValue = 1. * processedSize / Math.max(totalSize, 1);
+                            String subProgressPercent = String.format("%.1f%%", 100 * subProgressValue);
+                            String processedSizeString = FileUtil.getSizeString(processedSize, 0);
                             String totalSizeString = FileUtil.getSizeString(totalSize, 0);
-                            int taskIdx = downloadTransactionData.indexOfTask(downloadTask);
-                            int lengthOfTasks = downloadTransactionData.lengthOfTasks();
-                            String remainingTimeString = downloadTransactionData.getRemainingTimeString(totalReceived);
+                            Platform.runLater(() -> mainApp.setProgress(
+                                    progressValue, String.format(compareLocalProgressTextTpl,
+                                            progressPercent, (itemIdx + 1), itemCount),
+                                    subProgressValue, String.format(compareLocalSubProgressTextTpl,
+                                            subProgressPercent, processedSizeString, totalSizeString, itemName)));
+                        }
 
-                            long size = Math.max(downloadTask.getSize(), 1);
-                            double subProgressValue = 1. * received / size;
-                            String subProgressPercent = String.format("%.1f%%", 100 * subProgressValue);
+                        private void updateProgress() {
+                            long totalReceived = downloadTransactionData.getReceivedSize();
+                            long totalSize = Math.max(downloadTransactionData.getTotalSize(), 1);
+                            /*有大小未知的文件夹时只显示已接收的数据量*/
+                            boolean sizeKnown = downloadTransactionData.isSizeKnown();
+                            double progressValue = sizeKnown ? 1. * totalReceived / totalSize : -1;
+                            String progressPercent = sizeKnown ? String.format("%.1f%%", 100 * progressValue) : "-";
+                            String totalReceivedString = FileUtil.getSizeString(totalReceived, 0);
+                            String totalSizeString = sizeKnown ? FileUtil.getSizeString(totalSize, 0) : "-";
+                            int finishedCount = downloadTransactionData.getFinishedCount();
+                            int lengthOfTasks = downloadTransactionData.lengthOfTasks();
+                            String remainingTimeString = sizeKnown ?
+                                    downloadTransactionData.getRemainingTimeString(totalReceived) : "inf";
+                            String progressText = String.format(downloadProgressTextTpl,
+                                    progressPercent, totalReceivedString, totalSizeString,
+                                    finishedCount, lengthOfTasks, remainingTimeString);
+
+                            /*显示下载中最大的任务正在下载的文件*/
+                            DownloadTask downloadTask = downloadTransactionData.getLargestActiveTask();
+                            RepositoryPathNode currentPathNode = downloadTask != null ?
+                                    downloadTask.getEditor().getCurrentPathNode() : null;
+                            if (currentPathNode == null) {
+                                Platform.runLater(() -> mainApp.setProgress(progressValue, progressText, -1, ""));
+                                return;
+                            }
+                            long received = downloadTask.getEditor().getCurrentReceived();
+                            long size = !downloadTask.isDir() ? downloadTask.getSize() :
+                                    snapshot != null ? snapshot.getSize(currentPathNode.toString()) : -1;
+                            double subProgressValue = size >= 0 ? 1. * received / Math.max(size, 1) : -1;
+                            String subProgressPercent = size >= 0 ? String.format("%.1f%%", 100 * subProgressValue) : "-";
                             String receivedString = FileUtil.getSizeString(received, 0);
-                            String sizeString = FileUtil.getSizeString(size, 0);
-                            String fileName = downloadTask.getName();
+                            String sizeString = size >= 0 ? FileUtil.getSizeString(size, 0) : "-";
+                            int otherCount = downloadTransactionData.countActiveTasks() - 1;
+                            String fileName = otherCount > 0 ?
+                                    String.format(downloadSubProgressOthersTpl, currentPathNode.getName(), otherCount) :
+                                    currentPathNode.getName();
                             Platform.runLater(() -> mainApp.setProgress(
-                                    progressValue, String.format(downloadProgressTextTpl,
-                                            progressPercent, totalReceivedString, totalSizeString,
-                                            taskIdx + 1, lengthOfTasks, remainingTimeString),
+                                    progressValue, progressText,
                                     subProgressValue, String.format(downloadSubProgressTextTpl,
                                             subProgressPercent, receivedString, sizeString, fileName)));
                         }
@@ -844,6 +1027,185 @@ public class InterfaceController extends BaseController {
             }, errorMsg));
         }
 
+        /**
+         * 公共方法 - 主页 - 打包下载：所选项目写入下载路径下的一个压缩包
+         */
+        public void downloadArchive(JSObject pathArray, int length, String formatName) {
+            LinkedList<String> pathList = convertJSStringArray(pathArray, length);
+            DownloadArchiveEditor.Format format = DownloadArchiveEditor.Format.valueOf(formatName);
+            String errorMsg = "打包下载失败";
+            String progressTitle = "打包下载进度";
+            String collectDownloadTasksProgressText = "收集下载任务";
+            String downloadProgressText = "打包下载";
+            String downloadProgressTextTpl = "[%6s] [%s / %s] 总进度：%d / %d \t| 剩余时间：%s";
+            String downloadSubProgressTextTpl = "[%6s] [%s / %s] 正在打包：%s";
+            String downloadCompleteProgressTextTpl = "打包完成：%s";
+            String cancelConfirmMsg = "确定取消下载吗？";
+            startExclusiveService(buildNonInteractiveService(new Service<Void>() {
+                @Override
+                protected Task<Void> createTask() {
+                    return new Task<Void>() {
+                        private DownloadArchiveEditor archiveEditor;
+                        private DownloadArchiveData downloadArchiveData;
+                        private int pathIdx;
+                        private long lastProgressTime;
+
+                        @Override
+                        protected Void call() {
+                            File archiveFile = null;
+                            try {
+                                Platform.runLater(() -> {
+                                    mainApp.showProgress(-1, collectDownloadTasksProgressText);
+                                    mainApp.setOnProgressCloseRequest(event ->
+                                            cancelExclusiveService(event, cancelConfirmMsg));
+                                });
+                                /*tar条目需要预先给出文件大小：快照已建立时从快照取得，否则只列出所选项目的子树；
+                                按取得大小的版本下载，大小与内容一致*/
+                                RepositorySnapshot snapshot = RepositoryDirEntry.getSnapshot(repository).isBuilt() ?
+                                        RepositoryDirEntry.getUpdatedSnapshot(repository) : null;
+                                long revision = snapshot != null ? snapshot.getRevision() : repository.getLatestRevision();
+                                Map<String, Long> fileSizes = snapshot == null && format != DownloadArchiveEditor.Format.ZIP ?
+                                        new HashMap<>() : null;
+                                LinkedList<RepositoryPathNode> srcPathNodes = new LinkedList<>();
+                                long totalSize = snapshot != null || fileSizes != null ? 0 : -1;
+                                for (String srcPathString : pathList) {
+                                    RepositoryPathNode srcPathNode = path.resolve(srcPathString).getPathNode();
+                                    SVNNodeKind kind = snapshot != null ? snapshot.getKind(srcPathNode.toString()) :
+                                            repository.checkPath(srcPathNode.toString(), revision);
+                                    if (kind != SVNNodeKind.DIR && kind != SVNNodeKind.FILE) {
+                                        throw new Exception("路径不存在：" + srcPathNode);
+                                    }
+                                    srcPathNodes.add(srcPathNode);
+                                    if (snapshot != null) {
+                                        totalSize += snapshot.getSubtreeSize(srcPathNode.toString());
+                                    } else if (fileSizes != null) {
+                                        RepositoryDirEntry.list(repository, srcPathNode, revision, (pathNode, entry) -> {
+                                            if (entry.getKind() == SVNNodeKind.FILE) {
+                                                fileSizes.put(pathNode.toString(), entry.getSize());
+                                            }
+                                        });
+                                    }
+                                }
+                                if (fileSizes != null) {
+                                    totalSize = fileSizes.values().stream().mapToLong(Long::longValue).sum();
+                                }
+                                if (srcPathNodes.isEmpty()) {
+                                    return null;
+                                }
+
+                                /*压缩包名称：单个项目取其名称，否则取当前文件夹名称；不覆盖已有文件*/
+                                RepositoryPathNode parentPathNode = srcPathNodes.getFirst().getParent();
+                                String archiveName = downloadProgressText;
+                                if (srcPathNodes.size() == 1) {
+                                    archiveName = srcPathNodes.getFirst().getName();
+                                } else if (parentPathNode.getParent() != null) {
+                                    archiveName = parentPathNode.getName();
+                                } else if (Paths.get(repositoryConfig.getPath()).getFileName() != null) {
+                                    archiveName = Paths.get(repositoryConfig.getPath()).getFileName().toString();
+                                }
+                                File downloadParent = AppSettings.load().getDownloadParent();
+                                if (!downloadParent.isDirectory() && !downloadParent.mkdirs()) {
+                                    throw new Exception("下载文件夹创建失败：" + downloadParent.getAbsolutePath());
+                                }
+                                OutputStream archiveStream = null;
+                                for (int num = 0; archiveStream == null; num++) {
+                                    archiveFile = new File(downloadParent, (num == 0 ? archiveName :
+                                            String.format("%s (%d)", archiveName, num)) + format.getSuffix());
+                                    try {
+                                        archiveStream = Files.newOutputStream(archiveFile.toPath(), StandardOpenOption.CREATE_NEW);
+                                    } catch (FileAlreadyExistsException e) {
+                                        archiveFile = null;
+                                    }
+                                }
+
+                                Platform.runLater(() -> {
+                                    mainApp.showProgress(0, downloadProgressText, 0, downloadProgressText);
+                                    mainApp.setProgressTitle(progressTitle);
+                                    mainApp.setOnProgressCloseRequest(event ->
+                                            cancelExclusiveService(event, cancelConfirmMsg));
+                                });
+                                downloadArchiveData = new DownloadArchiveData(totalSize);
+                                archiveEditor = new DownloadArchiveEditor(parentPathNode, archiveStream, format,
+                                        snapshot != null ? snapshot::getSize : fileSizes != null ?
+                                                filePath -> fileSizes.getOrDefault(filePath, -1L) : null, this::isCancelled);
+                                archiveEditor.setReceiveListener(this::updateProgress);
+                                /*所有项目依次写入同一个压缩包，使用一个会话*/
+                                try (RepositorySessionPool.Session session = RepositorySessionPool.of(repository).borrow()) {
+                                    for (pathIdx = 0; pathIdx < srcPathNodes.size(); pathIdx++) {
+                                        RepositoryPathNode srcPathNode = srcPathNodes.get(pathIdx);
+                                        try {
+                                            session.getRepository().update(revision, srcPathNode.toString(), true, reporter -> {
+                                                reporter.setPath("", null, revision, SVNDepth.INFINITY, true);
+                                                reporter.deletePath("");
+                                                reporter.finishReport();
+                                            }, archiveEditor);
+                                        } catch (SVNException e) {
+                                            session.invalidate();
+                                            throw isCancelled() ? new DownloadCancelledException() : e;
+                                        }
+                                    }
+                                }
+                                archiveEditor.close();
+                                archiveEditor = null;
+
+                                String completeProgressText = String.format(downloadCompleteProgressTextTpl, archiveFile.getName());
+                                Platform.runLater(() -> mainApp.setProgress(1, completeProgressText, 1, completeProgressText));
+                            } catch (Exception e) {
+                                /*不完整的压缩包不保留*/
+                                if (archiveEditor != null) {
+                                    try {
+                                        archiveEditor.close();
+                                    } catch (Exception ignored) {
+                                    }
+                                }
+                                if (archiveFile != null) {
+                                    archiveFile.delete();
+                                }
+                                Platform.runLater(() -> error(errorMsg, e));
+                            } finally {
+                                Platform.runLater(JavaApi.this::serviceCleanup);
+                            }
+                            return null;
+                        }
+
+                        private void updateProgress(long receivedTotal) {
+                            downloadArchiveData.received(receivedTotal);
+                            long now = System.currentTimeMillis();
+                            if (now - lastProgressTime < 100) {
+                                return;
+                            }
+                            lastProgressTime = now;
+                            boolean sizeKnown = downloadArchiveData.isSizeKnown();
+                            long totalSize = Math.max(downloadArchiveData.getTotalSize(), 1);
+                            double progressValue = sizeKnown ? 1. * receivedTotal / totalSize : -1;
+                            String progressPercent = sizeKnown ? String.format("%.1f%%", 100 * progressValue) : "-";
+                            String remainingTimeString = sizeKnown ?
+                                    downloadArchiveData.getRemainingTimeString(receivedTotal) : "inf";
+                            String progressText = String.format(downloadProgressTextTpl, progressPercent,
+                                    FileUtil.getSizeString(receivedTotal, 0),
+                                    sizeKnown ? FileUtil.getSizeString(totalSize, 0) : "-",
+                                    pathIdx + 1, length, remainingTimeString);
+
+                            RepositoryPathNode currentPathNode = archiveEditor.getCurrentPathNode();
+                            if (currentPathNode == null) {
+                                Platform.runLater(() -> mainApp.setProgress(progressValue, progressText, -1, ""));
+                                return;
+                            }
+                            long received = archiveEditor.getCurrentReceived();
+                            long size = archiveEditor.getCurrentSize();
+                            double subProgressValue = size >= 0 ? 1. * received / Math.max(size, 1) : -1;
+                            String subProgressPercent = size >= 0 ? String.format("%.1f%%", 100 * subProgressValue) : "-";
+                            String subProgressText = String.format(downloadSubProgressTextTpl, subProgressPercent,
+                                    FileUtil.getSizeString(received, 0),
+                                    size >= 0 ? FileUtil.getSizeString(size, 0) : "-", currentPathNode.getName());
+                            Platform.runLater(() -> mainApp.setProgress(
+                                    progressValue, progressText, subProgressValue, subProgressText));
+                        }
+                    };
+                }
+            }, errorMsg));
+        }
+
         /**
          * 公共方法 - 主页 - 删除
          */
@@ -913,7 +1275,7 @@ public class InterfaceController extends BaseController {
             LinkedList<String> pathList = convertJSStringArray(pathArray, length);
             String operation = deleteAfterCopy ? "移动" : "复制";
             String errorMsg = String.format("%s失败", operation);
-            String newParentPath = MainApp.chooseRepositoryDirectory(new RepositoryDirTreeItem(repository), operation);
+            String newParentPath = MainApp.chooseRepositoryDirectory(new RepositoryDirTreeItem(listingCache), operation);
             if (newParentPath == null) {
                 return;
             }
@@ -1164,7 +1526,7 @@ public class InterfaceController extends BaseController {
                                         .forEach(File::delete);
                                 newRepoRootFile.renameTo(repoRootFile);
                                 repositoryConfig = RepositoryConfig.newFileRepositoryConfig(repositoryConfig.getPath(), null, null);
-                                repository = repositoryConfig.getRepository();
+                                setRepository(repositoryConfig.getRepository());
                                 repositoryConfig.save();
 
                                 // success
@@ -1247,8 +1609,8 @@ public class InterfaceController extends BaseController {
                     new LoadRepositoryLogService(rebuild), "仓库历史记录加载失败"));
         }
 
-        public Object[] getLogTreeNodeChildrenArray(String parentId) {
-            return repositoryLogData.getLogTreeNodeChildrenArray(parentId);
+        public String getLogTreeNodeChildrenJson(String parentId) {
+            return repositoryLogData.getLogTreeNodeChildrenJson(parentId);
         }
 
         /**
@@ -1392,8 +1754,24 @@ public class InterfaceController extends BaseController {
             try {
                 AppSettings settings = AppSettings.load();
                 File newDownloadParent = new File(String.valueOf(params.getMember("downloadParent")));
-                if (!settings.getDownloadParent().equals(newDownloadParent)) {
+                /*未选中的开关不会出现在表单数据中*/
+                boolean newDeltaUpload = "on".equals(String.valueOf(params.getMember("deltaUpload")));
+                boolean newBlobCacheEnabled = "on".equals(String.valueOf(params.getMember("blobCacheEnabled")));
+                boolean newMirrorDownload = "on".equals(String.valueOf(params.getMember("mirrorDownload")));
+                long newBlobCacheQuota = Long.parseLong(String.valueOf(params.getMember("blobCacheQuota")).trim());
+                if (newBlobCacheQuota <= 0) {
+                    throw new Exception("内容缓存容量必须大于0");
+                }
+                if (!settings.getDownloadParent().equals(newDownloadParent)
+                        || settings.isDeltaUpload() != newDeltaUpload
+                        || settings.isBlobCacheEnabled() != newBlobCacheEnabled
+                        || settings.getBlobCacheQuota() != newBlobCacheQuota
+                        || settings.isMirrorDownload() != newMirrorDownload) {
                     settings.setDownloadParent(newDownloadParent);
+                    settings.setDeltaUpload(newDeltaUpload);
+                    settings.setBlobCacheEnabled(newBlobCacheEnabled);
+                    settings.setBlobCacheQuota(newBlobCacheQuota);
+                    settings.setMirrorDownload(newMirrorDownload);
                     settings.save();
                 }
                 getWindow().call("loadAppSettings");
@@ -1416,6 +1794,13 @@ public class InterfaceController extends BaseController {
     }
 
     public void setRepository(SVNRepository repository) {
+        if (this.repository != null && this.repository != repository) {
+            RepositorySessionPool.close(this.repository);
+        }
         this.repository = repository;
+        if (listingCache != null) {
+            listingCache.dispose();
+        }
+        listingCache = new RepositoryListingCache(repository);
     }
 }
@@ -135,8 +135,8 @@ public class RepositoryCompareController extends BaseController {
             }, errorMsg));
         }
 
-        public Object[] getCompareTreeNodeChildrenArray(String parentId) {
-            return compareResult.getCompareTreeNodeChildrenArray(parentId);
+        public String getCompareTreeNodeChildrenJson(String parentId) {
+            return compareResult.getCompareTreeNodeChildrenJson(parentId);
         }
     }
 
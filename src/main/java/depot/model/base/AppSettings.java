@@ -18,9 +18,17 @@ public class AppSettings extends BaseModel {
     private static final Logger LOGGER = Logger.getLogger("AppSettings");
 
     private File downloadParent;
+    /*上传已有文件时只发送与仓库版本的差异，需要先获取仓库版本*/
+    private boolean deltaUpload;
+    /*下载内容缓存，容量单位为MB*/
+    private boolean blobCacheEnabled;
+    private long blobCacheQuota;
+    /*镜像下载：本地相同的文件跳过，不同的文件覆盖*/
+    private boolean mirrorDownload;
 
     public AppSettings() {
         downloadParent = new File(APP_HOME, "download");
+        blobCacheQuota = 4096;
     }
 
     public static AppSettings load() {
@@ -3,19 +3,46 @@ package depot.model.base;
 import de.jensd.fx.glyphs.GlyphsDude;
 import de.jensd.fx.glyphs.fontawesome.FontAwesomeIcon;
 import depot.model.repository.path.RepositoryPathNode;
-import javafx.collections.FXCollections;
+import javafx.application.Platform;
 import javafx.collections.ObservableList;
+import javafx.event.Event;
 import javafx.scene.control.TreeItem;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
 
+/**
+ * 文件夹树节点：子文件夹在后台加载，加载期间显示占位节点；
+ * 节点显示时即开始加载，因此展开前已获取下一层
+ */
 public abstract class BaseDirTreeItem extends TreeItem<String> {
+    private static final Logger LOGGER = Logger.getLogger("BaseDirTreeItem");
     protected static final String ICON_SIZE = "16px";
+    private static final String LOADING_TEXT = "正在加载…";
+
+    /*单线程加载，同一棵树的请求依次执行*/
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "BaseDirTreeItem");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     protected final RepositoryPathNode pathNode;
     protected Boolean isLeaf = null;
     protected List<Object> childrenDir = null;
     protected boolean childrenFilled = false;
+    private boolean loading = false;
+
+    protected interface ChildrenDirListener {
+        void loaded(List<Object> childrenDir);
+
+        void failed(Exception e);
+    }
 
     protected BaseDirTreeItem(RepositoryPathNode pathNode) {
         super();
@@ -29,37 +56,95 @@ public abstract class BaseDirTreeItem extends TreeItem<String> {
 
     protected abstract String getName();
 
-    protected abstract List<Object> getChildrenDir() throws Exception;
+    /**
+     * 已缓存的子文件夹，没有缓存时返回null
+     */
+    protected abstract List<Object> getCachedChildrenDir();
+
+    /**
+     * 在后台加载子文件夹，listener可在任意线程回调
+     */
+    protected abstract void loadChildrenDir(ChildrenDirListener listener);
 
     protected abstract BaseDirTreeItem convertChildDir(Object childDir);
 
-    @Override
-    public boolean isLeaf() {
-        if (isLeaf == null) {
+    protected static void runInBackground(Callable<List<Object>> loader, ChildrenDirListener listener) {
+        LOADER.execute(() -> {
             try {
-                isLeaf = getChildrenDir().size() <= 0;
+                listener.loaded(loader.call());
             } catch (Exception e) {
-                e.printStackTrace();
+                listener.failed(e);
             }
+        });
+    }
+
+    @Override
+    public boolean isLeaf() {
+        if (isLeaf == null) {
+            startLoading();
         }
-        return isLeaf;
+        return isLeaf != null ? isLeaf : false;
     }
 
     @Override
     public ObservableList<TreeItem<String>> getChildren() {
         if (!childrenFilled) {
-            try {
-                ObservableList<TreeItem<String>> children = FXCollections.observableArrayList();
-                getChildrenDir().forEach(dirEntry -> children.add(convertChildDir(dirEntry)));
-                super.getChildren().setAll(children);
-                childrenFilled = true;
-            } catch (Exception e) {
-                e.printStackTrace();
+            startLoading();
+            if (childrenDir != null) {
+                fillChildren();
+            } else if (super.getChildren().isEmpty()) {
+                List<TreeItem<String>> placeholder = Collections.singletonList(new TreeItem<>(LOADING_TEXT));
+                super.getChildren().setAll(placeholder);
             }
         }
         return super.getChildren();
     }
 
+    private void startLoading() {
+        if (childrenDir != null || loading) {
+            return;
+        }
+        List<Object> cachedChildrenDir = getCachedChildrenDir();
+        if (cachedChildrenDir != null) {
+            childrenDir = cachedChildrenDir;
+            isLeaf = childrenDir.isEmpty();
+            return;
+        }
+        loading = true;
+        loadChildrenDir(new ChildrenDirListener() {
+            @Override
+            public void loaded(List<Object> childrenDir) {
+                Platform.runLater(() -> onLoaded(childrenDir));
+            }
+
+            @Override
+            public void failed(Exception e) {
+                LOGGER.warning("文件夹加载失败：" + pathNode + "\n" + e);
+                Platform.runLater(() -> onLoaded(new ArrayList<>()));
+            }
+        });
+    }
+
+    private void onLoaded(List<Object> loadedChildrenDir) {
+        loading = false;
+        childrenDir = loadedChildrenDir;
+        isLeaf = childrenDir.isEmpty();
+        if (!super.getChildren().isEmpty()) {
+            // 已显示占位节点
+            fillChildren();
+        } else if (isLeaf) {
+            // 刷新展开箭头
+            Event.fireEvent(this, new TreeModificationEvent<>(valueChangedEvent(), this, getValue()));
+        }
+    }
+
+    private void fillChildren() {
+        List<TreeItem<String>> children = new ArrayList<>(childrenDir.size());
+        childrenDir.forEach(dirEntry -> children.add(convertChildDir(dirEntry)));
+        childrenFilled = true;
+        super.getChildren().setAll(children);
+    }
+
     public RepositoryPathNode getPathNode() {
         return pathNode;
     }
@@ -1,5 +1,7 @@
 package depot.model.base;
 
+import depot.util.JsonWriter;
+
 public class BaseTreeNode {
 
     public String id;
@@ -23,4 +25,20 @@ public class BaseTreeNode {
         this.comment = comment;
         this.state.opened = opened;
     }
+
+    public void writeJson(JsonWriter writer) {
+        writer.beginObject();
+        writeJsonProperties(writer);
+        writer.endObject();
+    }
+
+    protected void writeJsonProperties(JsonWriter writer) {
+        writer.property("id", id)
+                .property("parent", parent)
+                .property("type", type)
+                .property("text", text)
+                .property("comment", comment)
+                .name("state").beginObject().property("opened", state.opened).endObject()
+                .property("children", children);
+    }
 }
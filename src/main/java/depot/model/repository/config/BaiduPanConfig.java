@@ -1,5 +1,7 @@
 package depot.model.repository.config;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import depot.MainApp;
 import depot.model.base.BaseDirTreeItem;
 import depot.model.base.BaseModel;
@@ -31,6 +33,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.*;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -348,6 +351,10 @@ public class BaiduPanConfig extends BaseModel implements ComparableRepositoryCon
     }
 
     public static class BaiduPanRootPathTreeItem extends BaseDirTreeItem {
+        private static final Cache<String, List<Object>> CHILDREN_DIR_CACHE = CacheBuilder.newBuilder()
+                .maximumSize(1000)
+                .expireAfterWrite(Duration.ofMinutes(5))
+                .build();
 
         private final BaiduPanConfig baiduPanConfig;
 
@@ -367,13 +374,22 @@ public class BaiduPanConfig extends BaseModel implements ComparableRepositoryCon
         }
 
         @Override
-        protected List<Object> getChildrenDir() {
-            if (childrenDir == null) {
-                childrenDir = baiduPanConfig.listDir(pathNode, true).stream()
+        protected List<Object> getCachedChildrenDir() {
+            return CHILDREN_DIR_CACHE.getIfPresent(pathNode.toString());
+        }
+
+        @Override
+        protected void loadChildrenDir(ChildrenDirListener listener) {
+            runInBackground(() -> {
+                List<Object> loadedChildrenDir = baiduPanConfig.listDir(pathNode, true).stream()
                         .map(entry -> (Object) entry)
                         .collect(Collectors.toList());
-            }
-            return childrenDir;
+                if (!loadedChildrenDir.isEmpty()) {
+                    // 请求失败时也返回空列表，不缓存
+                    CHILDREN_DIR_CACHE.put(pathNode.toString(), loadedChildrenDir);
+                }
+                return loadedChildrenDir;
+            }, listener);
         }
 
         @Override
@@ -0,0 +1,334 @@
+package depot.model.repository.config;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * 仓库会话池：SVNRepository不是线程安全的，并行任务从池中借用独立会话，用完归还，避免重复连接和验证
+ * <p>
+ * 每个仓库（按主会话区分）一个池；空闲会话超时后关闭，svn+ssh会话定期检测以保持连接。
+ * 遍历使用单独的额度，借用会话的任务中再发起遍历时不会占满额度后互相等待
+ */
+public class RepositorySessionPool {
+    private static final Logger LOGGER = Logger.getLogger("RepositorySessionPool");
+    private static final int MIN_IDLE = 1;
+    private static final int MAX_IDLE = 4;
+    private static final int MAX_TOTAL = 8;
+    private static final int MAX_TRAVERSAL = 4;
+    private static final long BORROW_TIMEOUT_SECONDS = 60;
+    /*空闲超过该时间的会话借出前先检测*/
+    private static final long VALIDATE_AFTER_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long KEEP_ALIVE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long MAINTAIN_PERIOD_SECONDS = 30;
+
+    private static final Cache<SVNRepository, RepositorySessionPool> POOLS = CacheBuilder.newBuilder()
+            .weakKeys()
+            .removalListener(RepositorySessionPool::onPoolRemoval)
+            .build();
+    private static final ScheduledExecutorService MAINTAINER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "RepositorySessionPool");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /*不引用主会话，避免池一直持有主会话*/
+    private final SVNURL location;
+    private final ISVNAuthenticationManager authManager;
+    private final boolean keepAlive;
+    private final Semaphore permits = new Semaphore(MAX_TOTAL, true);
+    private final Semaphore traversalPermits = new Semaphore(MAX_TRAVERSAL, true);
+    private final ArrayDeque<Session> idleSessions = new ArrayDeque<>();
+    private final List<Session> allSessions = new ArrayList<>();
+    private final ScheduledFuture<?> maintainFuture;
+    private volatile boolean closed = false;
+
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong destroyedCount = new AtomicLong();
+    private final AtomicLong borrowedCount = new AtomicLong();
+    private final AtomicLong waitedCount = new AtomicLong();
+    private final AtomicLong failedCheckCount = new AtomicLong();
+
+    /**
+     * 借出的会话，close时归还
+     */
+    public class Session implements AutoCloseable {
+        private final SVNRepository session;
+        private final long createdTime = System.currentTimeMillis();
+        private long lastUsedTime = createdTime;
+        private long borrowedTime;
+        private long borrowCount = 0;
+        private long busyMillis = 0;
+        private boolean invalid = false;
+        private boolean returned = false;
+        /*借出时占用的额度*/
+        private Semaphore borrowedPermits;
+
+        private Session(SVNRepository session) {
+            this.session = session;
+        }
+
+        public SVNRepository getRepository() {
+            return session;
+        }
+
+        /**
+         * 连接出错后调用，归还时不再复用
+         */
+        public void invalidate() {
+            invalid = true;
+        }
+
+        @Override
+        public void close() {
+            if (!returned) {
+                returned = true;
+                giveBack(this);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("创建于%tT，借出%d次，使用%dms，空闲%dms", createdTime, borrowCount, busyMillis,
+                    System.currentTimeMillis() - lastUsedTime);
+        }
+    }
+
+    private RepositorySessionPool(SVNRepository repository) {
+        this.location = repository.getLocation();
+        this.authManager = repository.getAuthenticationManager();
+        this.keepAlive = RepositoryConfig.PROTOCOL_SVN_SSH.equals(location.getProtocol());
+        this.maintainFuture = MAINTAINER.scheduleWithFixedDelay(
+                this::maintain, MAINTAIN_PERIOD_SECONDS, MAINTAIN_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 获取主会话对应的会话池
+     */
+    public static RepositorySessionPool of(SVNRepository repository) {
+        try {
+            return POOLS.get(repository, () -> new RepositorySessionPool(repository));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 关闭主会话对应的会话池
+     */
+    public static void close(SVNRepository repository) {
+        POOLS.invalidate(repository);
+    }
+
+    private static void onPoolRemoval(RemovalNotification<SVNRepository, RepositorySessionPool> notification) {
+        if (notification.getValue() != null) {
+            notification.getValue().close();
+        }
+    }
+
+    public Session borrow() throws SVNException, InterruptedException {
+        return borrow(permits, true);
+    }
+
+    /**
+     * 遍历借用：使用单独的额度，不与借用会话的调用方争用
+     *
+     * @param wait 为false时额度已满立即返回null
+     */
+    public Session borrowForTraversal(boolean wait) throws SVNException, InterruptedException {
+        return borrow(traversalPermits, wait);
+    }
+
+    private Session borrow(Semaphore borrowPermits, boolean wait) throws SVNException, InterruptedException {
+        if (!borrowPermits.tryAcquire()) {
+            if (!wait) {
+                return null;
+            }
+            waitedCount.incrementAndGet();
+            if (!borrowPermits.tryAcquire(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("等待仓库会话超时");
+            }
+        }
+        try {
+            Session session;
+            while ((session = pollIdle()) != null) {
+                if (System.currentTimeMillis() - session.lastUsedTime < VALIDATE_AFTER_MILLIS || check(session)) {
+                    break;
+                }
+                destroy(session);
+            }
+            if (session == null) {
+                session = create();
+            }
+            session.returned = false;
+            session.borrowedPermits = borrowPermits;
+            session.borrowCount++;
+            session.borrowedTime = System.currentTimeMillis();
+            borrowedCount.incrementAndGet();
+            return session;
+        } catch (Throwable e) {
+            borrowPermits.release();
+            throw e;
+        }
+    }
+
+    private void giveBack(Session session) {
+        // 放回空闲队列后可能立即被再次借出，先取得本次占用的额度
+        Semaphore borrowedPermits = session.borrowedPermits;
+        long now = System.currentTimeMillis();
+        session.busyMillis += now - session.borrowedTime;
+        session.lastUsedTime = now;
+        boolean reuse;
+        synchronized (this) {
+            reuse = !closed && !session.invalid && idleSessions.size() < MAX_IDLE;
+            if (reuse) {
+                idleSessions.push(session);
+            }
+        }
+        if (!reuse) {
+            destroy(session);
+        }
+        borrowedPermits.release();
+    }
+
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        LOGGER.info(getStats());
+        closed = true;
+        maintainFuture.cancel(false);
+        idleSessions.forEach(this::closeSession);
+        allSessions.removeAll(idleSessions);
+        idleSessions.clear();
+    }
+
+    public synchronized String getStats() {
+        StringBuilder stats = new StringBuilder(String.format(
+                "仓库会话池（%s）：当前%d个，空闲%d个，已创建%d个，已关闭%d个，借出%d次，等待%d次，检测失败%d次",
+                location, allSessions.size(), idleSessions.size(), createdCount.get(),
+                destroyedCount.get(), borrowedCount.get(), waitedCount.get(), failedCheckCount.get()));
+        allSessions.forEach(session -> stats.append("\n").append(session));
+        return stats.toString();
+    }
+
+    private synchronized Session pollIdle() {
+        if (closed) {
+            throw new IllegalStateException("仓库会话池已关闭");
+        }
+        return idleSessions.poll();
+    }
+
+    private Session create() throws SVNException {
+        SVNRepository svnRepository = SVNRepositoryFactory.create(location);
+        svnRepository.setAuthenticationManager(authManager);
+        Session session = new Session(svnRepository);
+        synchronized (this) {
+            allSessions.add(session);
+        }
+        createdCount.incrementAndGet();
+        return session;
+    }
+
+    private boolean check(Session session) {
+        try {
+            session.session.testConnection();
+            session.lastUsedTime = System.currentTimeMillis();
+            return true;
+        } catch (SVNException e) {
+            failedCheckCount.incrementAndGet();
+            LOGGER.fine("仓库会话检测失败：" + e);
+            return false;
+        }
+    }
+
+    private void destroy(Session session) {
+        synchronized (this) {
+            allSessions.remove(session);
+        }
+        closeSession(session);
+    }
+
+    private void closeSession(Session session) {
+        try {
+            session.session.closeSession();
+        } catch (Exception e) {
+            LOGGER.fine("仓库会话关闭失败：" + e);
+        }
+        destroyedCount.incrementAndGet();
+    }
+
+    /**
+     * 定期维护：关闭超时的空闲会话，保持连接，并补足最少空闲数
+     */
+    private void maintain() {
+        long now = System.currentTimeMillis();
+        List<Session> expiredSessions = new ArrayList<>();
+        List<Session> checkSessions = new ArrayList<>();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            for (Iterator<Session> iterator = idleSessions.descendingIterator(); iterator.hasNext(); ) {
+                Session session = iterator.next();
+                if (now - session.lastUsedTime > IDLE_TIMEOUT_MILLIS && idleSessions.size() > MIN_IDLE) {
+                    iterator.remove();
+                    expiredSessions.add(session);
+                } else if (keepAlive && now - session.lastUsedTime > KEEP_ALIVE_MILLIS) {
+                    iterator.remove();
+                    checkSessions.add(session);
+                }
+            }
+        }
+        expiredSessions.forEach(this::destroy);
+        for (Session session : checkSessions) {
+            if (check(session)) {
+                synchronized (this) {
+                    if (!closed) {
+                        idleSessions.addLast(session);
+                        continue;
+                    }
+                }
+            }
+            destroy(session);
+        }
+        try {
+            while (!closed && idleCount() < MIN_IDLE && permits.tryAcquire()) {
+                try {
+                    Session session = create();
+                    if (check(session)) {
+                        synchronized (this) {
+                            idleSessions.addLast(session);
+                        }
+                    } else {
+                        destroy(session);
+                        break;
+                    }
+                } finally {
+                    permits.release();
+                }
+            }
+        } catch (SVNException e) {
+            LOGGER.fine("仓库会话创建失败：" + e);
+        }
+    }
+
+    private synchronized int idleCount() {
+        return idleSessions.size();
+    }
+}
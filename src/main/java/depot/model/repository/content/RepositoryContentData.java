@@ -2,6 +2,7 @@ package depot.model.repository.content;
 
 import depot.model.repository.path.RepositoryDirEntry;
 import depot.model.repository.path.RepositoryPathNode;
+import depot.util.JsonWriter;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -12,15 +13,65 @@ public class RepositoryContentData {
     public List<RepositoryDirEntry> entryList = new ArrayList<>();
 
     private Object[] pathNodeArrayCache;
-    private Object[] entryArrayCache;
+    private RepositoryEntrySorter entrySorter;
 
     public Object[] getPathNodeArray() {
         pathNodeArrayCache = pathNodeList.toArray();
         return pathNodeArrayCache;
     }
 
-    public Object[] getEntryArray() {
-        entryArrayCache = entryList.toArray();
-        return entryArrayCache;
+    /**
+     * 设置新的文件列表，同时计算排序键
+     */
+    public void setEntryList(List<RepositoryDirEntry> entryList) {
+        RepositoryEntrySorter newEntrySorter = new RepositoryEntrySorter(entryList);
+        this.entryList = entryList;
+        this.entrySorter = newEntrySorter;
+    }
+
+    /**
+     * 排序，返回实际使用的sortKey
+     */
+    public String sortEntryList(String sortKey, boolean ascending) {
+        if (entrySorter == null || entrySorter.size() != entryList.size()) {
+            entrySorter = new RepositoryEntrySorter(entryList);
+        }
+        entryList = entrySorter.sort(sortKey, ascending);
+        return RepositoryEntrySorter.normalizeSortKey(sortKey);
+    }
+
+    public int getEntryCount() {
+        return entryList.size();
+    }
+
+    /**
+     * 按当前排序获取[offset, offset + limit)范围内的项目，页面只渲染可见的行；
+     * 以JSON一次传递，避免页面逐个属性回调Java
+     */
+    public String getEntryWindowJson(int offset, int limit) {
+        int from = Math.max(0, Math.min(offset, entryList.size()));
+        int to = Math.max(from, Math.min(from + Math.max(limit, 0), entryList.size()));
+        JsonWriter writer = new JsonWriter((to - from) * 192 + 2).beginArray();
+        for (RepositoryDirEntry entry : entryList.subList(from, to)) {
+            entry.writeJson(writer);
+        }
+        return writer.endArray().toString();
+    }
+
+    public String getEntryPathsJson() {
+        JsonWriter writer = new JsonWriter(entryList.size() * 32 + 2).beginArray();
+        for (RepositoryDirEntry entry : entryList) {
+            writer.value(entry.toString());
+        }
+        return writer.endArray().toString();
+    }
+
+    public int indexOfEntry(String pathString) {
+        for (int i = 0; i < entryList.size(); i++) {
+            if (entryList.get(i).toString().equals(pathString)) {
+                return i;
+            }
+        }
+        return -1;
     }
 }
@@ -0,0 +1,145 @@
+package depot.model.repository.content;
+
+import depot.model.repository.path.RepositoryDirEntry;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.*;
+
+/**
+ * 文件列表排序：每个列表只计算一次排序键，各列的升序排列缓存后，切换列或方向只需O(n)
+ * <p>
+ * 文件夹始终排在文件前面（按类型排序除外），降序由升序排列按分组翻转得到
+ */
+public class RepositoryEntrySorter {
+    public static final String SORT_KEY_NAME = "name";
+    public static final String SORT_KEY_MTIME = "mtime";
+    public static final String SORT_KEY_TYPE = "type";
+    public static final String SORT_KEY_SIZE = "size";
+
+    private final RepositoryDirEntry[] entries;
+    private final boolean[] dirs;
+    private final CollationKey[] nameKeys;
+    private final long[] mtimes;
+    private final long[] sizes;
+    private final int[] typeOrdinals;
+    private final Map<String, int[]> ascendingOrders = new HashMap<>();
+
+    public RepositoryEntrySorter(List<RepositoryDirEntry> entryList) {
+        Collator collator = Collator.getInstance();
+        int count = entryList.size();
+        entries = entryList.toArray(new RepositoryDirEntry[0]);
+        dirs = new boolean[count];
+        nameKeys = new CollationKey[count];
+        mtimes = new long[count];
+        sizes = new long[count];
+        typeOrdinals = new int[count];
+        String[] types = new String[count];
+        for (int i = 0; i < count; i++) {
+            RepositoryDirEntry entry = entries[i];
+            dirs[i] = entry.isDir();
+            nameKeys[i] = collator.getCollationKey(entry.getName());
+            Date date = entry.getDate();
+            mtimes[i] = date != null ? date.getTime() : 0;
+            sizes[i] = entry.getSize();
+            types[i] = entry.getType();
+        }
+
+        /*类型按字符串顺序编号*/
+        String[] distinctTypes = new TreeSet<>(Arrays.asList(types)).toArray(new String[0]);
+        for (int i = 0; i < count; i++) {
+            typeOrdinals[i] = Arrays.binarySearch(distinctTypes, types[i]);
+        }
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * 返回按sortKey排序的新列表，无法识别的sortKey按名称排序
+     */
+    public synchronized List<RepositoryDirEntry> sort(String sortKey, boolean ascending) {
+        int[] order = ascendingOrders.computeIfAbsent(normalizeSortKey(sortKey), this::buildAscendingOrder);
+        if (!ascending) {
+            order = toDescendingOrder(normalizeSortKey(sortKey), order);
+        }
+        List<RepositoryDirEntry> sortedList = new ArrayList<>(order.length);
+        for (int idx : order) {
+            sortedList.add(entries[idx]);
+        }
+        return sortedList;
+    }
+
+    public static String normalizeSortKey(String sortKey) {
+        if (SORT_KEY_MTIME.equals(sortKey) || SORT_KEY_TYPE.equals(sortKey) || SORT_KEY_SIZE.equals(sortKey)) {
+            return sortKey;
+        }
+        return SORT_KEY_NAME;
+    }
+
+    private int[] buildAscendingOrder(String sortKey) {
+        Integer[] order = new Integer[entries.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Comparator<Integer> comparator;
+        switch (sortKey) {
+            case SORT_KEY_MTIME:
+                comparator = (i, j) -> dirs[i] != dirs[j] ? (dirs[i] ? -1 : 1) : Long.compare(mtimes[i], mtimes[j]);
+                break;
+            case SORT_KEY_TYPE:
+                comparator = (i, j) -> typeOrdinals[i] != typeOrdinals[j] ?
+                        Integer.compare(typeOrdinals[i], typeOrdinals[j]) : nameKeys[i].compareTo(nameKeys[j]);
+                break;
+            case SORT_KEY_SIZE:
+                comparator = (i, j) -> dirs[i] != dirs[j] ? (dirs[i] ? -1 : 1) :
+                        dirs[i] ? nameKeys[i].compareTo(nameKeys[j]) : Long.compare(sizes[i], sizes[j]);
+                break;
+            default:
+                comparator = (i, j) -> dirs[i] != dirs[j] ? (dirs[i] ? -1 : 1) : nameKeys[i].compareTo(nameKeys[j]);
+        }
+        // 数量较少时parallelSort会直接使用单线程排序
+        Arrays.parallelSort(order, comparator);
+        int[] ascendingOrder = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            ascendingOrder[i] = order[i];
+        }
+        return ascendingOrder;
+    }
+
+    /**
+     * 名称、修改时间：文件夹和文件各自翻转；大小：只翻转文件；类型：翻转类型分组的顺序，组内仍按名称升序
+     */
+    private int[] toDescendingOrder(String sortKey, int[] ascendingOrder) {
+        int count = ascendingOrder.length;
+        int[] descendingOrder = new int[count];
+        if (SORT_KEY_TYPE.equals(sortKey)) {
+            int pos = 0;
+            int groupEnd = count;
+            while (groupEnd > 0) {
+                int groupStart = groupEnd - 1;
+                int typeOrdinal = typeOrdinals[ascendingOrder[groupStart]];
+                while (groupStart > 0 && typeOrdinals[ascendingOrder[groupStart - 1]] == typeOrdinal) {
+                    groupStart--;
+                }
+                System.arraycopy(ascendingOrder, groupStart, descendingOrder, pos, groupEnd - groupStart);
+                pos += groupEnd - groupStart;
+                groupEnd = groupStart;
+            }
+            return descendingOrder;
+        }
+        int dirCount = 0;
+        while (dirCount < count && dirs[ascendingOrder[dirCount]]) {
+            dirCount++;
+        }
+        boolean reverseDirs = !SORT_KEY_SIZE.equals(sortKey);
+        for (int i = 0; i < dirCount; i++) {
+            descendingOrder[i] = ascendingOrder[reverseDirs ? dirCount - 1 - i : i];
+        }
+        for (int i = dirCount; i < count; i++) {
+            descendingOrder[i] = ascendingOrder[count - 1 - (i - dirCount)];
+        }
+        return descendingOrder;
+    }
+}
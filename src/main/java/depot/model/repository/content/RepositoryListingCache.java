@@ -0,0 +1,199 @@
+package depot.model.repository.content;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import depot.model.repository.config.RepositorySessionPool;
+import org.tmatesoft.svn.core.SVNDirEntry;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Logger;
+
+/**
+ * 文件夹列表缓存：先显示缓存内容，再在后台按最新版本校验，并预先获取相邻文件夹
+ */
+public class RepositoryListingCache {
+    private static final Logger LOGGER = Logger.getLogger("RepositoryListingCache");
+    private static final long MAX_CACHED_ENTRIES = 200_000;
+    private static final int BACKGROUND_THREAD_COUNT = 2;
+    private static final int MAX_PREFETCH_DIRS = 16;
+
+    public static class Listing {
+        private final long revision;
+        private final List<SVNDirEntry> entries;
+
+        private Listing(long revision, List<SVNDirEntry> entries) {
+            this.revision = revision;
+            this.entries = Collections.unmodifiableList(entries);
+        }
+
+        public long getRevision() {
+            return revision;
+        }
+
+        public List<SVNDirEntry> getEntries() {
+            return entries;
+        }
+    }
+
+    public interface RevalidateListener {
+        void changed(Listing listing);
+    }
+
+    public interface LoadListener {
+        void loaded(Listing listing);
+
+        void failed(Exception e);
+    }
+
+    private final SVNRepository repository;
+    private final Cache<String, Listing> cache = CacheBuilder.newBuilder()
+            .maximumWeight(MAX_CACHED_ENTRIES)
+            .weigher((Weigher<String, Listing>) (k, v) -> v.entries.size() + 1)
+            .build();
+    private final ExecutorService backgroundExecutor;
+
+    public RepositoryListingCache(SVNRepository repository) {
+        this.repository = repository;
+        this.backgroundExecutor = Executors.newFixedThreadPool(BACKGROUND_THREAD_COUNT, runnable -> {
+            Thread thread = new Thread(runnable, "RepositoryListingCache");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Listing getCached(String path) {
+        return cache.getIfPresent(path);
+    }
+
+    /**
+     * 使用调用线程的会话获取列表，一次请求同时得到版本号
+     */
+    public Listing load(SVNRepository session, String path) throws SVNException {
+        List<SVNDirEntry> entries = new ArrayList<>();
+        long revision = session.getDir(path, -1, null, entries::add);
+        Listing listing = new Listing(revision, entries);
+        cache.put(path, listing);
+        return listing;
+    }
+
+    /**
+     * 使用后台会话获取列表，listener在后台线程回调
+     */
+    public void load(String path, LoadListener listener) {
+        boolean submitted = submit(() -> {
+            Listing listing;
+            try (RepositorySessionPool.Session session = borrowSession()) {
+                listing = load(session.getRepository(), path);
+            } catch (Exception e) {
+                listener.failed(e);
+                return;
+            }
+            listener.loaded(listing);
+        });
+        if (!submitted) {
+            listener.failed(new RejectedExecutionException("文件夹列表缓存已关闭"));
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * 后台校验：版本未变化时只需一次请求，列表变化时通知listener
+     */
+    public void revalidate(String path, Listing listing, RevalidateListener listener) {
+        submit(() -> {
+            Listing newListing;
+            try (RepositorySessionPool.Session session = borrowSession()) {
+                if (session.getRepository().getLatestRevision() == listing.revision) {
+                    return;
+                }
+                newListing = load(session.getRepository(), path);
+            }
+            if (!isSameEntries(listing.entries, newListing.entries)) {
+                listener.changed(newListing);
+            }
+        });
+    }
+
+    /**
+     * 预先获取子文件夹和上级文件夹
+     */
+    public void prefetch(String path, Listing listing) {
+        List<String> prefetchPaths = new ArrayList<>();
+        int idx = path.lastIndexOf('/');
+        if (path.length() > 1) {
+            prefetchPaths.add(idx > 0 ? path.substring(0, idx) : "/");
+        }
+        for (SVNDirEntry entry : listing.entries) {
+            if (entry.getKind() == SVNNodeKind.DIR) {
+                prefetchPaths.add(path.endsWith("/") ? path + entry.getName() : path + "/" + entry.getName());
+                if (prefetchPaths.size() > MAX_PREFETCH_DIRS) {
+                    break;
+                }
+            }
+        }
+        for (String prefetchPath : prefetchPaths) {
+            submit(() -> {
+                Listing cachedListing = cache.getIfPresent(prefetchPath);
+                if (cachedListing == null || cachedListing.revision < listing.revision) {
+                    try (RepositorySessionPool.Session session = borrowSession()) {
+                        load(session.getRepository(), prefetchPath);
+                    }
+                }
+            });
+        }
+    }
+
+    public void dispose() {
+        backgroundExecutor.shutdownNow();
+        cache.invalidateAll();
+    }
+
+    private interface BackgroundTask {
+        void run() throws Exception;
+    }
+
+    private boolean submit(BackgroundTask task) {
+        try {
+            backgroundExecutor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    LOGGER.fine("后台获取文件夹列表失败：" + e);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private RepositorySessionPool.Session borrowSession() throws SVNException, InterruptedException {
+        return RepositorySessionPool.of(repository).borrow();
+    }
+
+    private static boolean isSameEntries(List<SVNDirEntry> entries, List<SVNDirEntry> newEntries) {
+        if (entries.size() != newEntries.size()) {
+            return false;
+        }
+        Map<String, SVNDirEntry> entryMap = new HashMap<>();
+        entries.forEach(entry -> entryMap.put(entry.getName(), entry));
+        for (SVNDirEntry newEntry : newEntries) {
+            SVNDirEntry entry = entryMap.get(newEntry.getName());
+            if (entry == null || entry.getKind() != newEntry.getKind() || entry.getSize() != newEntry.getSize()
+                    || entry.getRevision() != newEntry.getRevision()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,186 @@
+package depot.model.repository.index;
+
+import depot.model.base.BaseEditor;
+import depot.model.base.BaseModel;
+import depot.model.repository.path.RepositoryPathNode;
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+import java.io.*;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.logging.Logger;
+
+public class RepositoryChecksumIndex extends BaseModel implements Serializable {
+    private static final long serialVersionUID = 20261018001L;
+    private static final String CACHE_PATH = Paths.get(APP_HOME, "cache").toString();
+    private static final String CACHE_SUFFIX = ".checksum";
+    private static final Logger LOGGER = Logger.getLogger("RepositoryChecksumIndex");
+
+    private final String repositoryUUID;
+    private long revision = -1;
+    private transient Map<RepositoryPathNode, String> checksums = Collections.emptyMap();
+
+    static {
+        File cache = new File(CACHE_PATH);
+        if (!cache.isDirectory()) {
+            cache.mkdirs();
+        }
+    }
+
+    private RepositoryChecksumIndex(String repositoryUUID) {
+        this.repositoryUUID = repositoryUUID;
+    }
+
+    private static File getChecksumCacheFile(String repositoryUUID) {
+        return new File(CACHE_PATH, repositoryUUID + CACHE_SUFFIX);
+    }
+
+    public static RepositoryChecksumIndex load(SVNRepository repository) throws SVNException {
+        String repositoryUUID = repository.getRepositoryUUID(true);
+        try {
+            File checksumCacheFile = getChecksumCacheFile(repositoryUUID);
+            if (checksumCacheFile.isFile()) {
+                try (FileInputStream fileInputStream = new FileInputStream(checksumCacheFile);
+                     ObjectInputStream objectInputStream = new ObjectInputStream(new BufferedInputStream(fileInputStream))) {
+                    RepositoryChecksumIndex checksumIndex = (RepositoryChecksumIndex) objectInputStream.readObject();
+                    if (repositoryUUID.equals(checksumIndex.repositoryUUID)) {
+                        return checksumIndex;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.warning("校验和缓存文件读取失败：" + e);
+        }
+        return new RepositoryChecksumIndex(repositoryUUID);
+    }
+
+    public synchronized void save() throws Exception {
+        File checksumCacheFile = getChecksumCacheFile(repositoryUUID);
+        File tempFile = new File(checksumCacheFile.getPath() + ".tmp");
+        try (FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+             ObjectOutputStream objectOutputStream = new ObjectOutputStream(new BufferedOutputStream(fileOutputStream))) {
+            objectOutputStream.writeObject(this);
+        }
+        if (!tempFile.renameTo(checksumCacheFile)) {
+            checksumCacheFile.delete();
+            if (!tempFile.renameTo(checksumCacheFile)) {
+                throw new IOException("校验和缓存文件保存失败：" + checksumCacheFile);
+            }
+        }
+    }
+
+    public void dumpCache() {
+        getChecksumCacheFile(repositoryUUID).delete();
+    }
+
+    public String getRepositoryUUID() {
+        return repositoryUUID;
+    }
+
+    public synchronized long getRevision() {
+        return revision;
+    }
+
+    public synchronized int size() {
+        return checksums.size();
+    }
+
+    /**
+     * 获取校验和表，返回的表不会再被修改
+     */
+    public synchronized Map<RepositoryPathNode, String> getChecksumMap() {
+        return checksums;
+    }
+
+    /**
+     * 同步到最新版本：已有版本时只汇报该版本，由服务端发送变更的文件
+     */
+    public synchronized void update(SVNRepository repository) throws Exception {
+        long latestRevision = repository.getLatestRevision();
+        if (latestRevision == revision) {
+            return;
+        }
+        long baseRevision = revision >= 0 && revision < latestRevision ? revision : -1;
+        /*删除的路径最后一次性移除，变更的文件单独记录，之后覆盖*/
+        Set<RepositoryPathNode> deletedPathNodes = new HashSet<>();
+        Map<RepositoryPathNode, String> updatedChecksums = new HashMap<>();
+        repository.status(latestRevision, "", true, reporter -> {
+            if (baseRevision >= 0) {
+                reporter.setPath("", null, baseRevision, SVNDepth.INFINITY, false);
+            } else {
+                reporter.setPath("", null, latestRevision, SVNDepth.INFINITY, true);
+            }
+            reporter.finishReport();
+        }, new BaseEditor() {
+            @Override
+            public void deleteEntry(String path, long revision) {
+                deletedPathNodes.add(RepositoryPathNode.of(path));
+            }
+
+            @Override
+            public void closeFile(String path, String textChecksum) {
+                RepositoryPathNode pathNode = RepositoryPathNode.of(path);
+                if (textChecksum != null) {
+                    updatedChecksums.put(pathNode, textChecksum);
+                } else if (baseRevision < 0 || !checksums.containsKey(pathNode) || isDeleted(pathNode, deletedPathNodes)) {
+                    LOGGER.warning("未获取到校验和：" + pathNode);
+                }
+            }
+        });
+        Map<RepositoryPathNode, String> newChecksums = new HashMap<>();
+        if (baseRevision >= 0) {
+            for (Map.Entry<RepositoryPathNode, String> item : checksums.entrySet()) {
+                if (!isDeleted(item.getKey(), deletedPathNodes)) {
+                    newChecksums.put(item.getKey(), item.getValue());
+                }
+            }
+        }
+        newChecksums.putAll(updatedChecksums);
+        checksums = Collections.unmodifiableMap(newChecksums);
+        revision = latestRevision;
+        try {
+            save();
+        } catch (Exception e) {
+            LOGGER.warning("校验和缓存文件保存失败：" + e);
+        }
+    }
+
+    /**
+     * 路径本身或任一上级路径已删除
+     */
+    private static boolean isDeleted(RepositoryPathNode pathNode, Set<RepositoryPathNode> deletedPathNodes) {
+        if (deletedPathNodes.isEmpty()) {
+            return false;
+        }
+        for (RepositoryPathNode node = pathNode; node != null; node = node.getParent()) {
+            if (deletedPathNodes.contains(node)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 序列化：路径节点按字符串保存
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(checksums.size());
+        for (Map.Entry<RepositoryPathNode, String> item : checksums.entrySet()) {
+            out.writeUTF(item.getKey().toString());
+            out.writeUTF(item.getValue());
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int size = in.readInt();
+        Map<RepositoryPathNode, String> readChecksums = new HashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            readChecksums.put(RepositoryPathNode.of(in.readUTF()), in.readUTF());
+        }
+        checksums = Collections.unmodifiableMap(readChecksums);
+    }
+}
@@ -0,0 +1,363 @@
+package depot.model.repository.index;
+
+import depot.model.base.BaseModel;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 内容索引：按文件校验和记录内容三元组，相同内容的文件只索引一次
+ * <p>
+ * 文本内容按校验和压缩保存在本地，候选文件在本地确认，不再从仓库获取
+ */
+public class RepositoryContentIndex extends BaseModel implements Serializable {
+    private static final long serialVersionUID = 20261018001L;
+    private static final String CACHE_PATH = Paths.get(APP_HOME, "cache").toString();
+    private static final String CACHE_SUFFIX = ".contentindex";
+    private static final String TEXT_DIR_SUFFIX = ".contenttext";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Logger LOGGER = Logger.getLogger("RepositoryContentIndex");
+    public static final int GRAM_SIZE = 3;
+
+    private final String repositoryUUID;
+
+    /*文档编号对应的校验和，已淘汰文档为null*/
+    private transient ArrayList<String> checksums = new ArrayList<>();
+    private transient HashMap<String, Integer> checksumIds = new HashMap<>();
+    private transient BitSet textDocIds = new BitSet();
+    private transient HashMap<Long, IntList> postings = new HashMap<>();
+    private transient int deletedCount = 0;
+
+    static {
+        File cache = new File(CACHE_PATH);
+        if (!cache.isDirectory()) {
+            cache.mkdirs();
+        }
+    }
+
+    private static class IntList {
+        private int[] data;
+        private int size;
+
+        private IntList(int capacity) {
+            this.data = new int[Math.max(capacity, 2)];
+        }
+
+        private void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+    }
+
+    private RepositoryContentIndex(String repositoryUUID) {
+        this.repositoryUUID = repositoryUUID;
+    }
+
+    private static File getContentIndexCacheFile(String repositoryUUID) {
+        return new File(CACHE_PATH, repositoryUUID + CACHE_SUFFIX);
+    }
+
+    private File getTextDir() {
+        return new File(CACHE_PATH, repositoryUUID + TEXT_DIR_SUFFIX);
+    }
+
+    private File getTextFile(String checksum) {
+        return new File(getTextDir(), checksum);
+    }
+
+    public static RepositoryContentIndex load(SVNRepository repository) throws SVNException {
+        String repositoryUUID = repository.getRepositoryUUID(true);
+        try {
+            File contentIndexCacheFile = getContentIndexCacheFile(repositoryUUID);
+            if (contentIndexCacheFile.isFile()) {
+                try (FileInputStream fileInputStream = new FileInputStream(contentIndexCacheFile);
+                     ObjectInputStream objectInputStream = new ObjectInputStream(new BufferedInputStream(fileInputStream))) {
+                    RepositoryContentIndex contentIndex = (RepositoryContentIndex) objectInputStream.readObject();
+                    if (repositoryUUID.equals(contentIndex.repositoryUUID)) {
+                        return contentIndex;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.warning("内容索引缓存文件读取失败：" + e);
+        }
+        return new RepositoryContentIndex(repositoryUUID);
+    }
+
+    public synchronized void save() throws Exception {
+        File contentIndexCacheFile = getContentIndexCacheFile(repositoryUUID);
+        File tempFile = new File(contentIndexCacheFile.getPath() + ".tmp");
+        try (FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+             ObjectOutputStream objectOutputStream = new ObjectOutputStream(new BufferedOutputStream(fileOutputStream))) {
+            objectOutputStream.writeObject(this);
+        }
+        if (!tempFile.renameTo(contentIndexCacheFile)) {
+            contentIndexCacheFile.delete();
+            if (!tempFile.renameTo(contentIndexCacheFile)) {
+                throw new IOException("内容索引缓存文件保存失败：" + contentIndexCacheFile);
+            }
+        }
+    }
+
+    public void dumpCache() {
+        getContentIndexCacheFile(repositoryUUID).delete();
+        File[] textFiles = getTextDir().listFiles();
+        if (textFiles != null) {
+            for (File textFile : textFiles) {
+                textFile.delete();
+            }
+        }
+        getTextDir().delete();
+    }
+
+    public String getRepositoryUUID() {
+        return repositoryUUID;
+    }
+
+    public synchronized int size() {
+        return checksumIds.size();
+    }
+
+    public synchronized boolean contains(String checksum) {
+        return checksumIds.containsKey(checksum);
+    }
+
+    /**
+     * 添加文档，grams为null表示不需要索引内容的文件
+     *
+     * @param grams 由{@link #getGrams(String)}生成的有序三元组
+     */
+    public synchronized void add(String checksum, long[] grams) {
+        if (checksumIds.containsKey(checksum)) {
+            return;
+        }
+        int id = checksums.size();
+        checksums.add(checksum);
+        checksumIds.put(checksum, id);
+        if (grams != null) {
+            textDocIds.set(id);
+            for (long gram : grams) {
+                postings.computeIfAbsent(gram, k -> new IntList(4)).add(id);
+            }
+        }
+    }
+
+    /**
+     * 淘汰仓库中已不存在的内容
+     */
+    public synchronized void retain(Set<String> currentChecksums) {
+        for (int id = 0; id < checksums.size(); id++) {
+            String checksum = checksums.get(id);
+            if (checksum != null && !currentChecksums.contains(checksum)) {
+                checksumIds.remove(checksum);
+                checksums.set(id, null);
+                if (textDocIds.get(id)) {
+                    getTextFile(checksum).delete();
+                }
+                textDocIds.clear(id);
+                deletedCount++;
+            }
+        }
+        if (deletedCount > checksums.size() / 4) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        int[] newIds = new int[checksums.size()];
+        ArrayList<String> newChecksums = new ArrayList<>(checksumIds.size());
+        BitSet newTextDocIds = new BitSet();
+        for (int id = 0; id < checksums.size(); id++) {
+            String checksum = checksums.get(id);
+            if (checksum != null) {
+                newIds[id] = newChecksums.size();
+                if (textDocIds.get(id)) {
+                    newTextDocIds.set(newChecksums.size());
+                }
+                newChecksums.add(checksum);
+            } else {
+                newIds[id] = -1;
+            }
+        }
+        for (Iterator<IntList> iterator = postings.values().iterator(); iterator.hasNext(); ) {
+            IntList posting = iterator.next();
+            int size = 0;
+            for (int i = 0; i < posting.size; i++) {
+                int newId = newIds[posting.data[i]];
+                if (newId >= 0) {
+                    posting.data[size++] = newId;
+                }
+            }
+            posting.size = size;
+            if (size == 0) {
+                iterator.remove();
+            }
+        }
+        checksums = newChecksums;
+        checksumIds = new HashMap<>(newChecksums.size() * 4 / 3 + 1);
+        for (int id = 0; id < newChecksums.size(); id++) {
+            checksumIds.put(newChecksums.get(id), id);
+        }
+        textDocIds = newTextDocIds;
+        deletedCount = 0;
+    }
+
+    /**
+     * 查询可能包含文本的文件校验和，结果需要按实际内容确认
+     */
+    public synchronized Set<String> getCandidates(String text) {
+        int[] candidates = null;
+        for (long gram : getGrams(text)) {
+            IntList posting = postings.get(gram);
+            if (posting == null) {
+                return Collections.emptySet();
+            }
+            candidates = candidates == null ?
+                    Arrays.copyOf(posting.data, posting.size) : intersect(candidates, posting);
+        }
+        Set<String> candidateChecksums = new HashSet<>();
+        if (candidates != null) {
+            for (int id : candidates) {
+                if (textDocIds.get(id)) {
+                    candidateChecksums.add(checksums.get(id));
+                }
+            }
+        }
+        return candidateChecksums;
+    }
+
+    /**
+     * 保存文本内容：先写入临时文件再移动，不会留下不完整的内容
+     */
+    public void putText(String checksum, String text) {
+        File textFile = getTextFile(checksum);
+        File tempFile = new File(textFile.getPath() + "." + Thread.currentThread().getId() + TEMP_SUFFIX);
+        try {
+            Files.createDirectories(getTextDir().toPath());
+            try (DeflaterOutputStream outputStream = new DeflaterOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                outputStream.write(text.getBytes(StandardCharsets.UTF_8));
+            }
+            Files.move(tempFile.toPath(), textFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.warning("内容文本缓存写入失败：" + checksum + "\n" + e);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * 读取本地保存的文本内容，未保存或读取失败时返回null
+     */
+    public String getText(String checksum) {
+        File textFile = getTextFile(checksum);
+        if (!textFile.isFile()) {
+            return null;
+        }
+        try (InflaterInputStream inputStream = new InflaterInputStream(
+                new BufferedInputStream(new FileInputStream(textFile)))) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LOGGER.warning("内容文本缓存读取失败：" + checksum + "\n" + e);
+            return null;
+        }
+    }
+
+    private static int[] intersect(int[] ids, IntList posting) {
+        int[] result = new int[Math.min(ids.length, posting.size)];
+        int i = 0, j = 0, k = 0;
+        while (i < ids.length && j < posting.size) {
+            if (ids[i] < posting.data[j]) {
+                i++;
+            } else if (ids[i] > posting.data[j]) {
+                j++;
+            } else {
+                result[k++] = ids[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, k);
+    }
+
+    /**
+     * 文本的三元组，升序且不重复
+     */
+    public static long[] getGrams(String text) {
+        String lowerText = text.toLowerCase(Locale.ROOT);
+        int count = Math.max(lowerText.length() - GRAM_SIZE + 1, 0);
+        long[] grams = new long[count];
+        for (int i = 0; i < count; i++) {
+            grams[i] = ((long) lowerText.charAt(i) << 32) | ((long) lowerText.charAt(i + 1) << 16) | lowerText.charAt(i + 2);
+        }
+        Arrays.sort(grams);
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            if (size == 0 || grams[i] != grams[size - 1]) {
+                grams[size++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, size);
+    }
+
+    /**
+     * 序列化：已淘汰文档不再保存
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        if (deletedCount > 0) {
+            compact();
+        }
+        out.defaultWriteObject();
+        out.writeInt(checksums.size());
+        for (int id = 0; id < checksums.size(); id++) {
+            out.writeUTF(checksums.get(id));
+            out.writeBoolean(textDocIds.get(id));
+        }
+        out.writeInt(postings.size());
+        for (Map.Entry<Long, IntList> item : postings.entrySet()) {
+            out.writeLong(item.getKey());
+            out.writeInt(item.getValue().size);
+            for (int i = 0; i < item.getValue().size; i++) {
+                out.writeInt(item.getValue().data[i]);
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int docCount = in.readInt();
+        checksums = new ArrayList<>(docCount);
+        checksumIds = new HashMap<>(docCount * 4 / 3 + 1);
+        textDocIds = new BitSet(docCount);
+        for (int id = 0; id < docCount; id++) {
+            String checksum = in.readUTF();
+            checksums.add(checksum);
+            checksumIds.put(checksum, id);
+            if (in.readBoolean()) {
+                textDocIds.set(id);
+            }
+        }
+        int postingCount = in.readInt();
+        postings = new HashMap<>(postingCount * 4 / 3 + 1);
+        for (int i = 0; i < postingCount; i++) {
+            long gram = in.readLong();
+            int size = in.readInt();
+            IntList posting = new IntList(size);
+            for (int j = 0; j < size; j++) {
+                posting.add(in.readInt());
+            }
+            postings.put(gram, posting);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package depot.model.repository.index;
+
+import com.google.common.base.Preconditions;
+import depot.model.repository.config.RepositorySessionPool;
+import depot.model.repository.path.RepositoryPathNode;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNProperties;
+import org.tmatesoft.svn.core.SVNProperty;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Logger;
+
+/**
+ * 内容搜索：从会话池借用多个会话并行获取未索引的文件，查询结果按本地保存的文件内容确认
+ */
+public class RepositoryContentSearcher {
+    public static final String SEARCH_PREFIX = "content:";
+    private static final Logger LOGGER = Logger.getLogger("RepositoryContentSearcher");
+    private static final int WORKER_COUNT = 4;
+    private static final long MAX_FILE_SIZE = 8 * 1024 * 1024;
+    private static final int BINARY_CHECK_SIZE = 8000;
+    private static final Charset FALLBACK_CHARSET = Charset.forName("GB18030");
+    private static final HashSet<String> BINARY_EXTS = new HashSet<>(Arrays.asList((
+            "png,jpg,jpeg,gif,bmp,ico,webp,psd,mp3,wav,flac,mp4,avi,mkv,mov,wmv,"
+                    + "zip,rar,7z,gz,tgz,bz2,xz,tar,jar,war,class,exe,dll,so,dylib,bin,iso,"
+                    + "pdf,doc,docx,xls,xlsx,ppt,pptx,ttf,otf,woff,woff2").split(",")));
+
+    private interface FileHandler {
+        void handle(String checksum, String text);
+    }
+
+    /**
+     * 查询包含text的文件校验和
+     *
+     * @param checksumMap 与revision对应的校验和表
+     */
+    public static Set<String> search(SVNRepository repository, long revision, RepositorySnapshot snapshot,
+                                     Map<RepositoryPathNode, String> checksumMap,
+                                     RepositoryContentIndex contentIndex, String text) throws Exception {
+        Preconditions.checkArgument(text.length() >= RepositoryContentIndex.GRAM_SIZE,
+                "内容搜索至少需要输入" + RepositoryContentIndex.GRAM_SIZE + "个字符");
+        Map<String, String> checksumPaths = new HashMap<>();
+        checksumMap.forEach((pathNode, checksum) -> checksumPaths.putIfAbsent(checksum, pathNode.toString()));
+        contentIndex.retain(checksumPaths.keySet());
+
+        /*只获取新内容，跳过二进制和过大的文件*/
+        Map<String, String> unindexedPaths = new HashMap<>();
+        checksumPaths.forEach((checksum, path) -> {
+            if (!contentIndex.contains(checksum)) {
+                if (isBinaryName(path) || snapshot.getSize(path) > MAX_FILE_SIZE) {
+                    contentIndex.add(checksum, null);
+                } else {
+                    unindexedPaths.put(checksum, path);
+                }
+            }
+        });
+        if (!unindexedPaths.isEmpty()) {
+            try {
+                fetchParallel(repository, revision, unindexedPaths, (checksum, content) -> {
+                    if (content != null) {
+                        contentIndex.putText(checksum, content);
+                    }
+                    contentIndex.add(checksum, content != null ? RepositoryContentIndex.getGrams(content) : null);
+                });
+            } finally {
+                try {
+                    contentIndex.save();
+                } catch (Exception e) {
+                    LOGGER.warning("内容索引缓存文件保存失败：" + e);
+                }
+            }
+        }
+
+        /*三元组只能筛选候选文件，按本地保存的文本确认，本地缺失时才重新获取*/
+        String lowerText = text.toLowerCase(Locale.ROOT);
+        Set<String> matchedChecksums = ConcurrentHashMap.newKeySet();
+        Map<String, String> missingPaths = new HashMap<>();
+        for (String checksum : contentIndex.getCandidates(text)) {
+            String content = contentIndex.getText(checksum);
+            if (content == null) {
+                missingPaths.put(checksum, checksumPaths.get(checksum));
+            } else if (content.toLowerCase(Locale.ROOT).contains(lowerText)) {
+                matchedChecksums.add(checksum);
+            }
+        }
+        fetchParallel(repository, revision, missingPaths, (checksum, content) -> {
+            if (content != null) {
+                contentIndex.putText(checksum, content);
+                if (content.toLowerCase(Locale.ROOT).contains(lowerText)) {
+                    matchedChecksums.add(checksum);
+                }
+            }
+        });
+        return matchedChecksums;
+    }
+
+    private static boolean isBinaryName(String path) {
+        int rIdx = path.lastIndexOf('.');
+        return rIdx > path.lastIndexOf('/') && BINARY_EXTS.contains(path.substring(rIdx + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static void fetchParallel(SVNRepository repository, long revision, Map<String, String> paths,
+                                      FileHandler handler) throws Exception {
+        if (paths.isEmpty()) {
+            return;
+        }
+        BlockingQueue<Map.Entry<String, String>> queue = new LinkedBlockingQueue<>(paths.entrySet());
+        ExecutorService executor = Executors.newFixedThreadPool(WORKER_COUNT, runnable -> {
+            Thread thread = new Thread(runnable, "RepositoryContentSearcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < Math.min(WORKER_COUNT, paths.size()); i++) {
+                futures.add(executor.submit(() -> {
+                    try (RepositorySessionPool.Session pooledSession = RepositorySessionPool.of(repository).borrow()) {
+                        Map.Entry<String, String> item;
+                        while ((item = queue.poll()) != null && !Thread.currentThread().isInterrupted()) {
+                            try {
+                                handler.handle(item.getKey(), fetchText(pooledSession.getRepository(), revision, item.getValue()));
+                            } catch (SVNException e) {
+                                LOGGER.warning("文件内容获取失败：" + item.getValue() + "\n" + e);
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 获取文本内容，二进制文件返回null
+     */
+    private static String fetchText(SVNRepository session, long revision, String path) throws SVNException {
+        SVNProperties properties = new SVNProperties();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        session.getFile(path, revision, properties, outputStream);
+        if (SVNProperty.isBinaryMimeType(properties.getStringValue(SVNProperty.MIME_TYPE))) {
+            return null;
+        }
+        byte[] bytes = outputStream.toByteArray();
+        for (int i = 0; i < Math.min(bytes.length, BINARY_CHECK_SIZE); i++) {
+            if (bytes[i] == 0) {
+                return null;
+            }
+        }
+        try {
+            return StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes)).toString();
+        } catch (CharacterCodingException e) {
+            return new String(bytes, FALLBACK_CHARSET);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package depot.model.repository.index;
+
+import org.tmatesoft.svn.core.SVNNodeKind;
+
+import java.util.*;
+
+/**
+ * 元数据列存储：由快照生成，每列为基本类型数组，查询时按列比较
+ */
+public class RepositoryMetadataStore {
+    private static final byte KIND_FILE = 1;
+    private static final byte KIND_DIR = 2;
+    private static final byte KIND_UNKNOWN = 0;
+
+    private final long revision;
+    private final int count;
+
+    /*路径按字典序排列，同一文件夹下的项目连续存放*/
+    private final String[] paths;
+    private final int[] nameOffsets;
+    private final byte[] kinds;
+    private final long[] sizes;
+    private final long[] times;
+    private final long[] revisions;
+    private final int[] extIds;
+    private final int[] authorIds;
+    private final List<String> extDict = new ArrayList<>();
+    private final List<String> authorDict = new ArrayList<>();
+
+    RepositoryMetadataStore(long revision, int capacity) {
+        this.revision = revision;
+        this.paths = new String[capacity];
+        this.nameOffsets = new int[capacity];
+        this.kinds = new byte[capacity];
+        this.sizes = new long[capacity];
+        this.times = new long[capacity];
+        this.revisions = new long[capacity];
+        this.extIds = new int[capacity];
+        this.authorIds = new int[capacity];
+        this.count = capacity;
+    }
+
+    void set(int idx, String path, SVNNodeKind kind, long size, long time, long revision, String author,
+             Map<String, Integer> extIdMap, Map<String, Integer> authorIdMap) {
+        int nameOffset = path.lastIndexOf('/') + 1;
+        paths[idx] = path;
+        nameOffsets[idx] = nameOffset;
+        kinds[idx] = kind == SVNNodeKind.FILE ? KIND_FILE : kind == SVNNodeKind.DIR ? KIND_DIR : KIND_UNKNOWN;
+        sizes[idx] = size;
+        times[idx] = time;
+        revisions[idx] = revision;
+        int extIdx = path.lastIndexOf('.');
+        String ext = kind == SVNNodeKind.FILE && extIdx >= nameOffset ?
+                path.substring(extIdx + 1).toLowerCase(Locale.ROOT) : "";
+        extIds[idx] = extIdMap.computeIfAbsent(ext, k -> {
+            extDict.add(k);
+            return extDict.size() - 1;
+        });
+        String authorKey = author != null ? author.toLowerCase(Locale.ROOT) : "";
+        authorIds[idx] = authorIdMap.computeIfAbsent(authorKey, k -> {
+            authorDict.add(k);
+            return authorDict.size() - 1;
+        });
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * 查询，返回匹配项目的路径
+     */
+    public List<String> query(RepositoryQuery query) {
+        int from = 0, to = count;
+        if (query.pathPrefix != null && !"/".equals(query.pathPrefix)) {
+            from = lowerBound(query.pathPrefix + "/");
+            to = lowerBound(query.pathPrefix + "/\uffff");
+        }
+        boolean[] extMatches = toMatches(extDict, query.exts);
+        boolean[] authorMatches = toMatches(authorDict, query.authors);
+        byte kind = query.kind == SVNNodeKind.FILE ? KIND_FILE : query.kind == SVNNodeKind.DIR ? KIND_DIR : KIND_UNKNOWN;
+
+        List<String> result = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            if (nameOffsets[i] == 1 && paths[i].length() == 1) {
+                // 根路径
+                continue;
+            }
+            if ((kind != KIND_UNKNOWN && kinds[i] != kind)
+                    || sizes[i] < query.minSize || sizes[i] > query.maxSize
+                    || times[i] < query.minTime || times[i] > query.maxTime
+                    || revisions[i] < query.minRevision || revisions[i] > query.maxRevision
+                    || (extMatches != null && !extMatches[extIds[i]])
+                    || (authorMatches != null && !authorMatches[authorIds[i]])
+                    || !matchNameTerms(i, query.nameTerms)) {
+                continue;
+            }
+            result.add(paths[i]);
+        }
+        return result;
+    }
+
+    private static boolean[] toMatches(List<String> dict, Set<String> values) {
+        if (values == null) {
+            return null;
+        }
+        boolean[] matches = new boolean[dict.size()];
+        for (int i = 0; i < dict.size(); i++) {
+            matches[i] = values.contains(dict.get(i));
+        }
+        return matches;
+    }
+
+    private boolean matchNameTerms(int idx, List<String> nameTerms) {
+        String path = paths[idx];
+        int nameOffset = nameOffsets[idx];
+        for (String nameTerm : nameTerms) {
+            boolean found = false;
+            for (int i = nameOffset; i + nameTerm.length() <= path.length() && !found; i++) {
+                found = path.regionMatches(true, i, nameTerm, 0, nameTerm.length());
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int lowerBound(String key) {
+        int low = 0, high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (paths[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,466 @@
+package depot.model.repository.index;
+
+import depot.model.base.BaseModel;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+import java.io.*;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * 名称索引：按名称三元组记录项目编号，查询时先求候选项目再用正则表达式确认
+ */
+public class RepositoryNameIndex extends BaseModel implements Serializable {
+    private static final long serialVersionUID = 20261018002L;
+    private static final String CACHE_PATH = Paths.get(APP_HOME, "cache").toString();
+    private static final String CACHE_SUFFIX = ".nameindex";
+    private static final Logger LOGGER = Logger.getLogger("RepositoryNameIndex");
+    private static final String ROOT_PATH = "/";
+    private static final int GRAM_SIZE = 3;
+    private static final String REGEX_META_CHARS = "\\[](){}.*+?^$|";
+
+    private final String repositoryUUID;
+    private long revision = -1;
+
+    /*项目编号对应的路径，已删除项目为null*/
+    private transient ArrayList<String> paths = new ArrayList<>();
+    private transient HashMap<String, Integer> pathIds = new HashMap<>();
+    private transient HashMap<Long, IntList> postings = new HashMap<>();
+    private transient int deletedCount = 0;
+
+    /*上次查询，用于输入过程中逐步缩小结果；不做大小写转换，包含上次的字面量时结果必然是上次结果的子集*/
+    private transient String lastLiteral;
+    private transient long lastRevision = -1;
+    private transient int[] lastResult;
+
+    static {
+        File cache = new File(CACHE_PATH);
+        if (!cache.isDirectory()) {
+            cache.mkdirs();
+        }
+    }
+
+    private static class IntList {
+        private int[] data;
+        private int size;
+
+        private IntList(int capacity) {
+            this.data = new int[Math.max(capacity, 2)];
+        }
+
+        private void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+    }
+
+    private RepositoryNameIndex(String repositoryUUID) {
+        this.repositoryUUID = repositoryUUID;
+    }
+
+    private static File getNameIndexCacheFile(String repositoryUUID) {
+        return new File(CACHE_PATH, repositoryUUID + CACHE_SUFFIX);
+    }
+
+    public static RepositoryNameIndex load(SVNRepository repository) throws SVNException {
+        String repositoryUUID = repository.getRepositoryUUID(true);
+        try {
+            File nameIndexCacheFile = getNameIndexCacheFile(repositoryUUID);
+            if (nameIndexCacheFile.isFile()) {
+                try (FileInputStream fileInputStream = new FileInputStream(nameIndexCacheFile);
+                     ObjectInputStream objectInputStream = new ObjectInputStream(new BufferedInputStream(fileInputStream))) {
+                    RepositoryNameIndex nameIndex = (RepositoryNameIndex) objectInputStream.readObject();
+                    if (repositoryUUID.equals(nameIndex.repositoryUUID)) {
+                        return nameIndex;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.warning("名称索引缓存文件读取失败：" + e);
+        }
+        return new RepositoryNameIndex(repositoryUUID);
+    }
+
+    public synchronized void save() throws Exception {
+        File nameIndexCacheFile = getNameIndexCacheFile(repositoryUUID);
+        File tempFile = new File(nameIndexCacheFile.getPath() + ".tmp");
+        try (FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+             ObjectOutputStream objectOutputStream = new ObjectOutputStream(new BufferedOutputStream(fileOutputStream))) {
+            objectOutputStream.writeObject(this);
+        }
+        if (!tempFile.renameTo(nameIndexCacheFile)) {
+            nameIndexCacheFile.delete();
+            if (!tempFile.renameTo(nameIndexCacheFile)) {
+                throw new IOException("名称索引缓存文件保存失败：" + nameIndexCacheFile);
+            }
+        }
+    }
+
+    public void dumpCache() {
+        getNameIndexCacheFile(repositoryUUID).delete();
+    }
+
+    public String getRepositoryUUID() {
+        return repositoryUUID;
+    }
+
+    public synchronized long getRevision() {
+        return revision;
+    }
+
+    public synchronized int size() {
+        return pathIds.size();
+    }
+
+    /**
+     * 与快照同步：只为新增项目建立索引，删除的项目标记后在查询时跳过
+     */
+    public synchronized void update(RepositorySnapshot snapshot) {
+        long snapshotRevision = snapshot.getRevision();
+        if (snapshotRevision == revision || snapshotRevision < 0) {
+            return;
+        }
+        List<String> snapshotPaths = snapshot.getPaths();
+        int oldCount = paths.size();
+        BitSet seenIds = new BitSet(oldCount);
+        for (String path : snapshotPaths) {
+            Integer id = pathIds.get(path);
+            if (id != null) {
+                seenIds.set(id);
+            } else if (!ROOT_PATH.equals(path)) {
+                add(path);
+            }
+        }
+        for (int id = 0; id < oldCount; id++) {
+            if (paths.get(id) != null && !seenIds.get(id)) {
+                remove(id);
+            }
+        }
+        if (deletedCount > paths.size() / 4) {
+            compact();
+        }
+        revision = snapshotRevision;
+        try {
+            save();
+        } catch (Exception e) {
+            LOGGER.warning("名称索引缓存文件保存失败：" + e);
+        }
+    }
+
+    private void add(String path) {
+        int id = paths.size();
+        paths.add(path);
+        pathIds.put(path, id);
+        for (long gram : getGrams(getName(path))) {
+            postings.computeIfAbsent(gram, k -> new IntList(4)).add(id);
+        }
+    }
+
+    private void remove(int id) {
+        pathIds.remove(paths.get(id));
+        paths.set(id, null);
+        deletedCount++;
+    }
+
+    private void compact() {
+        List<String> alivePaths = new ArrayList<>(pathIds.size());
+        for (String path : paths) {
+            if (path != null) {
+                alivePaths.add(path);
+            }
+        }
+        paths = new ArrayList<>(alivePaths.size());
+        pathIds = new HashMap<>(alivePaths.size() * 4 / 3 + 1);
+        postings = new HashMap<>();
+        deletedCount = 0;
+        alivePaths.forEach(this::add);
+    }
+
+    /**
+     * 查询名称匹配的项目路径，searchPattern与原搜索相同，按正则表达式处理
+     */
+    public synchronized List<String> search(String searchPattern) {
+        Pattern pattern = Pattern.compile(".*" + searchPattern + ".*", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        String literal = isLiteral(searchPattern) ? searchPattern : null;
+
+        int[] candidates;
+        if (literal != null && lastLiteral != null && lastRevision == revision && literal.contains(lastLiteral)) {
+            // 在上次结果中继续筛选
+            candidates = lastResult;
+        } else {
+            candidates = null;
+            for (String requiredLiteral : extractLiterals(searchPattern)) {
+                for (long gram : getGrams(requiredLiteral)) {
+                    IntList posting = postings.get(gram);
+                    if (posting == null) {
+                        candidates = new int[0];
+                        break;
+                    }
+                    candidates = candidates == null ?
+                            Arrays.copyOf(posting.data, posting.size) : intersect(candidates, posting);
+                }
+            }
+        }
+
+        IntList result = new IntList(candidates != null ? candidates.length : 16);
+        if (candidates != null) {
+            for (int id : candidates) {
+                match(id, pattern, result);
+            }
+        } else {
+            for (int id = 0; id < paths.size(); id++) {
+                match(id, pattern, result);
+            }
+        }
+        int[] resultIds = Arrays.copyOf(result.data, result.size);
+        lastLiteral = literal;
+        lastRevision = revision;
+        lastResult = resultIds;
+
+        List<String> resultPaths = new ArrayList<>(resultIds.length);
+        for (int id : resultIds) {
+            resultPaths.add(paths.get(id));
+        }
+        return resultPaths;
+    }
+
+    private void match(int id, Pattern pattern, IntList result) {
+        String path = paths.get(id);
+        if (path != null && pattern.matcher(getName(path)).matches()) {
+            result.add(id);
+        }
+    }
+
+    private static int[] intersect(int[] ids, IntList posting) {
+        int[] result = new int[Math.min(ids.length, posting.size)];
+        int i = 0, j = 0, k = 0;
+        while (i < ids.length && j < posting.size) {
+            if (ids[i] < posting.data[j]) {
+                i++;
+            } else if (ids[i] > posting.data[j]) {
+                j++;
+            } else {
+                result[k++] = ids[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, k);
+    }
+
+    /**
+     * 三元组与正则表达式工具
+     */
+    private static String getName(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * 逐个字符转换大小写，与CASE_INSENSITIVE|UNICODE_CASE的比较方式一致，且不改变长度（如İ、ß）
+     */
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static Set<Long> getGrams(String text) {
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_SIZE <= text.length(); i++) {
+            grams.add(((long) fold(text.charAt(i)) << 32) | ((long) fold(text.charAt(i + 1)) << 16) | fold(text.charAt(i + 2)));
+        }
+        return grams;
+    }
+
+    private static boolean isLiteral(String regex) {
+        for (int i = 0; i < regex.length(); i++) {
+            if (REGEX_META_CHARS.indexOf(regex.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 提取每个匹配结果都必须包含的字面量，无法确定时返回空列表
+     * <p>
+     * 只收集普通字符和转义的符号；量词、字符类、分组，以及字母或数字转义及其参数（十六进制、Unicode、八进制、字符属性、引用段等）都会中断字面量
+     */
+    private static List<String> extractLiterals(String regex) {
+        List<String> literals = new ArrayList<>();
+        if (regex.indexOf('|') >= 0) {
+            return literals;
+        }
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\' && i + 1 < regex.length() && !Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                // 转义的符号按字面量处理
+                i++;
+                appendLiteral(literals, current, regex, i, 1);
+            } else if (c == '\\') {
+                addLiteral(literals, current);
+                i = skipEscape(regex, i);
+            } else if (REGEX_META_CHARS.indexOf(c) >= 0) {
+                addLiteral(literals, current);
+                if (c == '[') {
+                    i = skipUntil(regex, i, ']');
+                } else if (c == '(') {
+                    if (hasCommentsFlag(regex, i)) {
+                        // 注释模式下空白和#后的内容不是字面量
+                        return new ArrayList<>();
+                    }
+                    i = skipUntil(regex, i, ')');
+                } else if (c == '{') {
+                    i = skipUntil(regex, i, '}');
+                }
+            } else {
+                int length = Character.isHighSurrogate(c) && i + 1 < regex.length() ? 2 : 1;
+                appendLiteral(literals, current, regex, i, length);
+                i += length - 1;
+            }
+        }
+        addLiteral(literals, current);
+        return literals;
+    }
+
+    /**
+     * 字符后跟可为零次的量词时不是必需的，在此中断字面量
+     */
+    private static void appendLiteral(List<String> literals, StringBuilder current, String regex, int start, int length) {
+        char next = start + length < regex.length() ? regex.charAt(start + length) : 0;
+        if (next == '*' || next == '?' || next == '{') {
+            addLiteral(literals, current);
+        } else {
+            current.append(regex, start, start + length);
+        }
+    }
+
+    private static void addLiteral(List<String> literals, StringBuilder current) {
+        if (current.length() >= GRAM_SIZE) {
+            literals.add(current.toString());
+        }
+        current.setLength(0);
+    }
+
+    /**
+     * 跳过字母或数字转义及其参数，返回转义的最后一个字符的位置
+     */
+    private static int skipEscape(String regex, int start) {
+        int i = start + 1;
+        char c = regex.charAt(i);
+        char next = i + 1 < regex.length() ? regex.charAt(i + 1) : 0;
+        switch (c) {
+            case 'x':
+                return next == '{' ? skipUntil(regex, i + 1, '}') : Math.min(i + 2, regex.length() - 1);
+            case 'u':
+                return Math.min(i + 4, regex.length() - 1);
+            case '0':
+                for (int digits = 0; digits < 3 && i + 1 < regex.length()
+                        && regex.charAt(i + 1) >= '0' && regex.charAt(i + 1) <= '7'; digits++) {
+                    i++;
+                }
+                return i;
+            case 'p':
+            case 'P':
+                return next == '{' ? skipUntil(regex, i + 1, '}') : i + 1;
+            case 'N':
+                return skipUntil(regex, i + 1, '}');
+            case 'c':
+                return i + 1;
+            case 'k':
+                return skipUntil(regex, i + 1, '>');
+            case 'Q':
+                int quoteEnd = regex.indexOf("\\E", i + 1);
+                return quoteEnd >= 0 ? quoteEnd + 1 : regex.length() - 1;
+            default:
+                // 反向引用的编号可能有多位
+                while (Character.isDigit(c) && i + 1 < regex.length() && Character.isDigit(regex.charAt(i + 1))) {
+                    i++;
+                }
+                return i;
+        }
+    }
+
+    /**
+     * 嵌入标志(?x)或(?x:…)开启注释模式
+     */
+    private static boolean hasCommentsFlag(String regex, int start) {
+        if (start + 1 >= regex.length() || regex.charAt(start + 1) != '?') {
+            return false;
+        }
+        for (int i = start + 2; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == 'x') {
+                return true;
+            } else if (!Character.isLetter(c) && c != '-') {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static int skipUntil(String regex, int start, char end) {
+        int depth = 0;
+        for (int i = start; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == regex.charAt(start)) {
+                depth++;
+            } else if (c == end && --depth == 0) {
+                return i;
+            }
+        }
+        return regex.length();
+    }
+
+    /**
+     * 序列化：已删除项目不再保存
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        if (deletedCount > 0) {
+            compact();
+        }
+        out.defaultWriteObject();
+        out.writeInt(paths.size());
+        for (String path : paths) {
+            out.writeUTF(path);
+        }
+        out.writeInt(postings.size());
+        for (Map.Entry<Long, IntList> item : postings.entrySet()) {
+            out.writeLong(item.getKey());
+            out.writeInt(item.getValue().size);
+            for (int i = 0; i < item.getValue().size; i++) {
+                out.writeInt(item.getValue().data[i]);
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int pathCount = in.readInt();
+        paths = new ArrayList<>(pathCount);
+        pathIds = new HashMap<>(pathCount * 4 / 3 + 1);
+        for (int id = 0; id < pathCount; id++) {
+            String path = in.readUTF();
+            paths.add(path);
+            pathIds.put(path, id);
+        }
+        int postingCount = in.readInt();
+        postings = new HashMap<>(postingCount * 4 / 3 + 1);
+        for (int i = 0; i < postingCount; i++) {
+            long gram = in.readLong();
+            int size = in.readInt();
+            IntList posting = new IntList(size);
+            for (int j = 0; j < size; j++) {
+                posting.add(in.readInt());
+            }
+            postings.put(gram, posting);
+        }
+        lastRevision = -1;
+    }
+}
@@ -0,0 +1,185 @@
+package depot.model.repository.index;
+
+import com.google.common.base.Preconditions;
+import depot.model.repository.path.RepositoryPathNode;
+import org.tmatesoft.svn.core.SVNNodeKind;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 结构化查询，条件之间为“且”关系，例如：size>500MB mtime>30d path:/assets ext:psd author:张三
+ * <p>
+ * size：大小，单位B/KB/MB/GB/TB；mtime：修改时间，yyyy-MM-dd或相对时间（h/d/w），mtime>30d表示30天内；
+ * ext：扩展名，多个用逗号分隔；kind：file/dir；author：作者；path：所在文件夹；rev：版本；其余文字按名称匹配
+ */
+public class RepositoryQuery {
+    private static final Pattern TERM_PATTERN = Pattern.compile(
+            "^(size|mtime|ext|kind|author|path|rev)(>=|<=|>|<|=|:)(.+)$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SIZE_PATTERN = Pattern.compile(
+            "^(\\d+(?:\\.\\d+)?)(b|kb|mb|gb|tb)?$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern RELATIVE_TIME_PATTERN = Pattern.compile("^(\\d+)([hdw])$", Pattern.CASE_INSENSITIVE);
+    private static final String DATE_FORMAT = "yyyy-MM-dd";
+
+    long minSize = Long.MIN_VALUE;
+    long maxSize = Long.MAX_VALUE;
+    long minTime = Long.MIN_VALUE;
+    long maxTime = Long.MAX_VALUE;
+    long minRevision = Long.MIN_VALUE;
+    long maxRevision = Long.MAX_VALUE;
+    SVNNodeKind kind;
+    Set<String> exts;
+    Set<String> authors;
+    String pathPrefix;
+    List<String> nameTerms = new ArrayList<>();
+
+    private RepositoryQuery() {
+    }
+
+    /**
+     * 是否包含结构化条件，否则按原方式搜索名称
+     */
+    public static boolean isQuery(String searchPattern) {
+        for (String token : searchPattern.trim().split("\\s+")) {
+            if (TERM_PATTERN.matcher(token).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static RepositoryQuery parse(String searchPattern) {
+        RepositoryQuery query = new RepositoryQuery();
+        for (String token : searchPattern.trim().split("\\s+")) {
+            Matcher termMatcher = TERM_PATTERN.matcher(token);
+            if (!termMatcher.matches()) {
+                if (token.length() > 0) {
+                    query.nameTerms.add(token.toLowerCase(Locale.ROOT));
+                }
+                continue;
+            }
+            String key = termMatcher.group(1).toLowerCase(Locale.ROOT);
+            String op = termMatcher.group(2);
+            String value = termMatcher.group(3);
+            switch (key) {
+                case "size":
+                    query.kind = SVNNodeKind.FILE;
+                    long size = parseSize(value);
+                    query.minSize = applyMin(query.minSize, op, size, size);
+                    query.maxSize = applyMax(query.maxSize, op, size, size);
+                    break;
+                case "mtime":
+                    long[] timeRange = parseTime(value);
+                    query.minTime = applyMin(query.minTime, op, timeRange[0], timeRange[1]);
+                    query.maxTime = applyMax(query.maxTime, op, timeRange[0], timeRange[1]);
+                    break;
+                case "rev":
+                    long revision = parseLong(value, token);
+                    query.minRevision = applyMin(query.minRevision, op, revision, revision);
+                    query.maxRevision = applyMax(query.maxRevision, op, revision, revision);
+                    break;
+                case "kind":
+                    checkEquality(op, token);
+                    Preconditions.checkArgument(value.equalsIgnoreCase("file") || value.equalsIgnoreCase("dir"),
+                            "无法识别的查询条件：" + token);
+                    query.kind = value.equalsIgnoreCase("file") ? SVNNodeKind.FILE : SVNNodeKind.DIR;
+                    break;
+                case "ext":
+                    checkEquality(op, token);
+                    query.exts = new HashSet<>();
+                    for (String ext : value.toLowerCase(Locale.ROOT).split(",")) {
+                        query.exts.add(ext.startsWith(".") ? ext.substring(1) : ext);
+                    }
+                    break;
+                case "author":
+                    checkEquality(op, token);
+                    query.authors = new HashSet<>(Arrays.asList(value.toLowerCase(Locale.ROOT).split(",")));
+                    break;
+                case "path":
+                    checkEquality(op, token);
+                    query.pathPrefix = RepositoryPathNode.of(value).toString();
+                    break;
+                default:
+                    break;
+            }
+        }
+        return query;
+    }
+
+    private static void checkEquality(String op, String token) {
+        Preconditions.checkArgument(":".equals(op) || "=".equals(op), "无法识别的查询条件：" + token);
+    }
+
+    /**
+     * 条件值对应区间[lower, upper]
+     */
+    private static long applyMin(long min, String op, long lower, long upper) {
+        switch (op) {
+            case ">":
+                return Math.max(min, upper == Long.MAX_VALUE ? upper : upper + 1);
+            case ">=":
+            case "=":
+            case ":":
+                return Math.max(min, lower);
+            default:
+                return min;
+        }
+    }
+
+    private static long applyMax(long max, String op, long lower, long upper) {
+        switch (op) {
+            case "<":
+                return Math.min(max, lower == Long.MIN_VALUE ? lower : lower - 1);
+            case "<=":
+            case "=":
+            case ":":
+                return Math.min(max, upper);
+            default:
+                return max;
+        }
+    }
+
+    private static long parseLong(String value, String token) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无法识别的查询条件：" + token);
+        }
+    }
+
+    private static long parseSize(String value) {
+        Matcher sizeMatcher = SIZE_PATTERN.matcher(value);
+        Preconditions.checkArgument(sizeMatcher.matches(), "无法识别的大小：" + value);
+        double size = Double.parseDouble(sizeMatcher.group(1));
+        String unit = sizeMatcher.group(2) != null ? sizeMatcher.group(2).toUpperCase(Locale.ROOT) : "B";
+        int shift = "KB".equals(unit) ? 10 : "MB".equals(unit) ? 20 : "GB".equals(unit) ? 30 : "TB".equals(unit) ? 40 : 0;
+        return (long) (size * (1L << shift));
+    }
+
+    /**
+     * 相对时间表示距今的时间点，因此mtime>30d为30天内；日期表示当天
+     */
+    private static long[] parseTime(String value) {
+        Matcher relativeTimeMatcher = RELATIVE_TIME_PATTERN.matcher(value);
+        if (relativeTimeMatcher.matches()) {
+            long amount = Long.parseLong(relativeTimeMatcher.group(1));
+            String unit = relativeTimeMatcher.group(2).toLowerCase(Locale.ROOT);
+            long millis = "h".equals(unit) ? TimeUnit.HOURS.toMillis(amount) :
+                    "w".equals(unit) ? TimeUnit.DAYS.toMillis(amount * 7) : TimeUnit.DAYS.toMillis(amount);
+            long time = System.currentTimeMillis() - millis;
+            return new long[]{time, time};
+        }
+        try {
+            SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+            dateFormat.setLenient(false);
+            long dayStart = dateFormat.parse(value).getTime();
+            return new long[]{dayStart, dayStart + TimeUnit.DAYS.toMillis(1) - 1};
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("无法识别的时间：" + value);
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package depot.model.repository.index;
+
+import depot.model.base.BaseModel;
+import depot.model.repository.path.DirEntryStream;
+import depot.model.repository.path.RepositoryDirEntry;
+import depot.model.repository.path.RepositoryPathNode;
+import org.tmatesoft.svn.core.*;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+import java.io.*;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.logging.Logger;
+
+public class RepositorySnapshot extends BaseModel implements Serializable {
+    private static final long serialVersionUID = 20261018001L;
+    private static final String CACHE_PATH = Paths.get(APP_HOME, "cache").toString();
+    private static final String CACHE_SUFFIX = ".snapshot";
+    private static final Logger LOGGER = Logger.getLogger("RepositorySnapshot");
+    private static final String ROOT_PATH = "/";
+    private static final int MAX_REFRESH_PATHS = 2000;
+
+    private final String repositoryUUID;
+    private long revision = -1;
+    private TreeMap<String, SnapshotEntry> entries = new TreeMap<>();
+
+    static {
+        File cache = new File(CACHE_PATH);
+        if (!cache.isDirectory()) {
+            cache.mkdirs();
+        }
+    }
+
+    private static class SnapshotEntry implements Serializable {
+        private static final long serialVersionUID = 20261018001L;
+
+        private final SVNNodeKind kind;
+        private final long size;
+        private final long revision;
+        private final long time;
+        private final String author;
+
+        private SnapshotEntry(SVNDirEntry entry) {
+            this.kind = entry.getKind();
+            this.size = entry.getSize();
+            this.revision = entry.getRevision();
+            this.time = entry.getDate() != null ? entry.getDate().getTime() : -1;
+            this.author = entry.getAuthor();
+        }
+
+        private SVNDirEntry toDirEntry(SVNURL repositoryRoot, String path, String name) throws SVNException {
+            SVNURL url = ROOT_PATH.equals(path) ? repositoryRoot : repositoryRoot.appendPath(path, false);
+            return new SVNDirEntry(url, repositoryRoot, name, kind, size, false, revision,
+                    time >= 0 ? new Date(time) : null, author);
+        }
+    }
+
+    private RepositorySnapshot(String repositoryUUID) {
+        this.repositoryUUID = repositoryUUID;
+    }
+
+    private static File getSnapshotCacheFile(String repositoryUUID) {
+        return new File(CACHE_PATH, repositoryUUID + CACHE_SUFFIX);
+    }
+
+    public static RepositorySnapshot load(SVNRepository repository) throws SVNException {
+        String repositoryUUID = repository.getRepositoryUUID(true);
+        try {
+            File snapshotCacheFile = getSnapshotCacheFile(repositoryUUID);
+            if (snapshotCacheFile.isFile()) {
+                try (FileInputStream fileInputStream = new FileInputStream(snapshotCacheFile);
+                     ObjectInputStream objectInputStream = new ObjectInputStream(new BufferedInputStream(fileInputStream))) {
+                    RepositorySnapshot snapshot = (RepositorySnapshot) objectInputStream.readObject();
+                    if (repositoryUUID.equals(snapshot.repositoryUUID)) {
+                        return snapshot;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.warning("快照缓存文件读取失败：" + e);
+        }
+        return new RepositorySnapshot(repositoryUUID);
+    }
+
+    public synchronized void save() throws Exception {
+        File snapshotCacheFile = getSnapshotCacheFile(repositoryUUID);
+        File tempFile = new File(snapshotCacheFile.getPath() + ".tmp");
+        try (FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+             ObjectOutputStream objectOutputStream = new ObjectOutputStream(new BufferedOutputStream(fileOutputStream))) {
+            objectOutputStream.writeObject(this);
+        }
+        if (!tempFile.renameTo(snapshotCacheFile)) {
+            snapshotCacheFile.delete();
+            if (!tempFile.renameTo(snapshotCacheFile)) {
+                throw new IOException("快照缓存文件保存失败：" + snapshotCacheFile);
+            }
+        }
+    }
+
+    public void dumpCache() {
+        getSnapshotCacheFile(repositoryUUID).delete();
+    }
+
+    public String getRepositoryUUID() {
+        return repositoryUUID;
+    }
+
+    public synchronized long getRevision() {
+        return revision;
+    }
+
+    public synchronized boolean isBuilt() {
+        return revision >= 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized SVNNodeKind getKind(String path) {
+        SnapshotEntry snapshotEntry = entries.get(path);
+        return snapshotEntry != null ? snapshotEntry.kind : SVNNodeKind.NONE;
+    }
+
+    public synchronized long getSize(String path) {
+        SnapshotEntry snapshotEntry = entries.get(path);
+        return snapshotEntry != null ? snapshotEntry.size : -1;
+    }
+
+    /**
+     * 文件夹下所有文件的总大小，path为文件时为该文件的大小
+     */
+    public synchronized long getSubtreeSize(String path) {
+        long subtreeSize = Math.max(getSize(path), 0);
+        for (SnapshotEntry snapshotEntry : getDescendants(entries, path).values()) {
+            if (snapshotEntry.kind == SVNNodeKind.FILE) {
+                subtreeSize += snapshotEntry.size;
+            }
+        }
+        return subtreeSize;
+    }
+
+    /**
+     * 仓库中所有文件的大小，用于快速排除不可能重复的本地文件
+     */
+    public synchronized Set<Long> getFileSizes() {
+        Set<Long> fileSizes = new HashSet<>();
+        for (SnapshotEntry snapshotEntry : entries.values()) {
+            if (snapshotEntry.kind == SVNNodeKind.FILE) {
+                fileSizes.add(snapshotEntry.size);
+            }
+        }
+        return fileSizes;
+    }
+
+    public synchronized RepositoryMetadataStore toMetadataStore() {
+        RepositoryMetadataStore metadataStore = new RepositoryMetadataStore(revision, entries.size());
+        Map<String, Integer> extIdMap = new HashMap<>();
+        Map<String, Integer> authorIdMap = new HashMap<>();
+        int idx = 0;
+        for (Map.Entry<String, SnapshotEntry> item : entries.entrySet()) {
+            SnapshotEntry snapshotEntry = item.getValue();
+            metadataStore.set(idx++, item.getKey(), snapshotEntry.kind, snapshotEntry.size, snapshotEntry.time,
+                    snapshotEntry.revision, snapshotEntry.author, extIdMap, authorIdMap);
+        }
+        return metadataStore;
+    }
+
+    public synchronized List<String> getPaths() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    public synchronized SVNDirEntry getDirEntry(SVNRepository repository, String path) throws SVNException {
+        SnapshotEntry snapshotEntry = entries.get(path);
+        return snapshotEntry != null ? snapshotEntry.toDirEntry(repository.getRepositoryRoot(true),
+                path, RepositoryPathNode.of(path).getName()) : null;
+    }
+
+    /**
+     * 同步到最新版本，需要完整重建时将获取到的项目同时交给rebuildReceiver
+     *
+     * @return 是否已通过rebuildReceiver交付全部项目
+     */
+    public synchronized boolean update(SVNRepository repository,
+                                       RepositoryDirEntry.DirEntryReceiver rebuildReceiver) throws Exception {
+        long latestRevision = repository.getLatestRevision();
+        if (latestRevision == revision) {
+            return false;
+        }
+        boolean delivered = false;
+        if (revision < 0 || latestRevision < revision || !rollForward(repository, latestRevision)) {
+            rebuild(repository, latestRevision, rebuildReceiver);
+            delivered = rebuildReceiver != null;
+        }
+        try {
+            save();
+        } catch (Exception e) {
+            LOGGER.warning("快照缓存文件保存失败：" + e);
+        }
+        return delivered;
+    }
+
+    private void rebuild(SVNRepository repository, long latestRevision,
+                         RepositoryDirEntry.DirEntryReceiver rebuildReceiver) throws Exception {
+        TreeMap<String, SnapshotEntry> newEntries = new TreeMap<>();
+        if (rebuildReceiver != null) {
+            DirEntryStream.stream(streamReceiver -> RepositoryDirEntry.list(
+                    repository, RepositoryPathNode.getRoot(), latestRevision, streamReceiver), (pathNode, entry) -> {
+                newEntries.put(pathNode.toString(), new SnapshotEntry(entry));
+                rebuildReceiver.receive(pathNode, entry);
+            });
+        } else {
+            list(repository, ROOT_PATH, latestRevision, newEntries);
+        }
+        entries = newEntries;
+        revision = latestRevision;
+    }
+
+    private boolean rollForward(SVNRepository repository, long latestRevision) throws Exception {
+        TreeSet<String> deletedPaths = new TreeSet<>();
+        TreeSet<String> treeRefreshPaths = new TreeSet<>();
+        TreeSet<String> selfRefreshPaths = new TreeSet<>();
+        LinkedList<SVNLogEntry> logEntries = new LinkedList<>();
+        repository.log(new String[]{""}, logEntries, revision + 1, latestRevision, true, true);
+        logEntries.sort(Comparator.comparingLong(SVNLogEntry::getRevision));
+        for (SVNLogEntry logEntry : logEntries) {
+            for (SVNLogEntryPath changedPath : new TreeMap<>(logEntry.getChangedPaths()).values()) {
+                String path = normalize(changedPath.getPath());
+                char type = changedPath.getType();
+                if (type == SVNLogEntryPath.TYPE_DELETED || type == SVNLogEntryPath.TYPE_REPLACED) {
+                    deletedPaths.add(path);
+                    removeSubtree(treeRefreshPaths, path);
+                    removeSubtree(selfRefreshPaths, path);
+                }
+                if (type == SVNLogEntryPath.TYPE_ADDED || type == SVNLogEntryPath.TYPE_REPLACED) {
+                    if (changedPath.getKind() == SVNNodeKind.FILE) {
+                        selfRefreshPaths.add(path);
+                    } else {
+                        treeRefreshPaths.add(path);
+                    }
+                } else if (type == SVNLogEntryPath.TYPE_MODIFIED) {
+                    selfRefreshPaths.add(path);
+                }
+                for (String parent = getParent(path); parent != null; parent = getParent(parent)) {
+                    selfRefreshPaths.add(parent);
+                }
+            }
+            if (treeRefreshPaths.size() + selfRefreshPaths.size() > MAX_REFRESH_PATHS) {
+                return false;
+            }
+        }
+
+        /*同一子树只需刷新一次*/
+        pruneSubtrees(deletedPaths);
+        pruneSubtrees(treeRefreshPaths);
+        for (String treePath : treeRefreshPaths) {
+            removeSubtree(selfRefreshPaths, treePath);
+        }
+
+        /*查询变更项目，全部成功后再更新快照*/
+        TreeMap<String, SnapshotEntry> refreshedEntries = new TreeMap<>();
+        for (String path : treeRefreshPaths) {
+            SVNNodeKind kind = repository.checkPath(path, latestRevision);
+            if (kind == SVNNodeKind.DIR) {
+                list(repository, path, latestRevision, refreshedEntries);
+            } else if (kind == SVNNodeKind.FILE) {
+                selfRefreshPaths.add(path);
+            }
+        }
+        for (String path : selfRefreshPaths) {
+            SVNDirEntry entry = repository.info(path, latestRevision);
+            if (entry != null) {
+                refreshedEntries.put(path, new SnapshotEntry(entry));
+            } else {
+                deletedPaths.add(path);
+            }
+        }
+
+        deletedPaths.forEach(path -> removeSubtree(entries, path));
+        treeRefreshPaths.forEach(path -> removeSubtree(entries, path));
+        entries.putAll(refreshedEntries);
+        revision = latestRevision;
+        return true;
+    }
+
+    private void list(SVNRepository repository, String path, long listRevision,
+                      Map<String, SnapshotEntry> listEntries) throws Exception {
+        RepositoryDirEntry.list(repository, RepositoryPathNode.of(path), listRevision,
+                (pathNode, entry) -> listEntries.put(pathNode.toString(), new SnapshotEntry(entry)));
+    }
+
+    /**
+     * 遍历
+     */
+    public synchronized void traverse(SVNRepository repository, RepositoryPathNode pathNode,
+                                      RepositoryDirEntry.DirEntryReceiver receiver) throws Exception {
+        SVNURL repositoryRoot = repository.getRepositoryRoot(true);
+        String path = pathNode.toString();
+        if (ROOT_PATH.equals(path)) {
+            for (Map.Entry<String, SnapshotEntry> item : entries.entrySet()) {
+                receive(repositoryRoot, item.getKey(), item.getValue(), receiver);
+            }
+        } else if (entries.containsKey(path)) {
+            receive(repositoryRoot, path, entries.get(path), receiver);
+            for (Map.Entry<String, SnapshotEntry> item : getDescendants(entries, path).entrySet()) {
+                receive(repositoryRoot, item.getKey(), item.getValue(), receiver);
+            }
+        }
+    }
+
+    private void receive(SVNURL repositoryRoot, String path, SnapshotEntry snapshotEntry,
+                         RepositoryDirEntry.DirEntryReceiver receiver) throws Exception {
+        RepositoryPathNode currentPathNode = RepositoryPathNode.of(path);
+        receiver.receive(currentPathNode, snapshotEntry.toDirEntry(repositoryRoot, path, currentPathNode.getName()));
+    }
+
+    /**
+     * 路径工具
+     */
+    private static String normalize(String path) {
+        return RepositoryPathNode.of(path).toString();
+    }
+
+    private static String getParent(String path) {
+        if (ROOT_PATH.equals(path)) {
+            return null;
+        }
+        int idx = path.lastIndexOf('/');
+        return idx > 0 ? path.substring(0, idx) : ROOT_PATH;
+    }
+
+    private static void pruneSubtrees(TreeSet<String> paths) {
+        String lastPath = null;
+        for (Iterator<String> iterator = paths.iterator(); iterator.hasNext(); ) {
+            String path = iterator.next();
+            if (lastPath != null && (ROOT_PATH.equals(lastPath) || path.startsWith(lastPath + "/"))) {
+                iterator.remove();
+            } else {
+                lastPath = path;
+            }
+        }
+    }
+
+    /**
+     * 子树范围：path下的所有路径，不含path本身；所有子树查询都使用该范围
+     */
+    private static String getDescendantsFrom(String path) {
+        return path + "/";
+    }
+
+    private static String getDescendantsTo(String path) {
+        return path + "/\uffff";
+    }
+
+    private static <V> SortedMap<String, V> getDescendants(TreeMap<String, V> map, String path) {
+        return ROOT_PATH.equals(path) ? map.tailMap(ROOT_PATH, false) :
+                map.subMap(getDescendantsFrom(path), getDescendantsTo(path));
+    }
+
+    private static SortedSet<String> getDescendants(TreeSet<String> set, String path) {
+        return ROOT_PATH.equals(path) ? set.tailSet(ROOT_PATH, false) :
+                set.subSet(getDescendantsFrom(path), getDescendantsTo(path));
+    }
+
+    private static <V> void removeSubtree(TreeMap<String, V> map, String path) {
+        map.remove(path);
+        getDescendants(map, path).clear();
+    }
+
+    private static void removeSubtree(TreeSet<String> set, String path) {
+        set.remove(path);
+        getDescendants(set, path).clear();
+    }
+}
@@ -0,0 +1,118 @@
+package depot.model.repository.index;
+
+import depot.model.base.BaseEditor;
+import depot.model.repository.path.RepositoryDirEntry;
+import depot.model.repository.path.RepositoryPathNode;
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * 子树元数据：按固定版本获取单个文件夹下所有项目的类型和大小，不需要整个仓库的快照
+ * <p>
+ * 校验和在需要时由一次状态请求获取，只有该文件夹按空目录汇报，服务端只发送其中的文件
+ */
+public class RepositorySubtree {
+    private static final Logger LOGGER = Logger.getLogger("RepositorySubtree");
+
+    private final RepositoryPathNode rootPathNode;
+    private final long revision;
+    private final Map<String, SVNNodeKind> kinds = new HashMap<>();
+    private final Map<String, Long> sizes = new HashMap<>();
+    private Map<RepositoryPathNode, String> checksums;
+
+    private RepositorySubtree(RepositoryPathNode rootPathNode, long revision) {
+        this.rootPathNode = rootPathNode;
+        this.revision = revision;
+    }
+
+    /**
+     * 获取pathNode所在的最近已有文件夹下的子树
+     */
+    public static RepositorySubtree fetch(SVNRepository repository, RepositoryPathNode pathNode, long revision) throws Exception {
+        RepositoryPathNode rootPathNode = pathNode;
+        while (rootPathNode.getParent() != null && repository.checkPath(rootPathNode.toString(), revision) != SVNNodeKind.DIR) {
+            rootPathNode = rootPathNode.getParent();
+        }
+        RepositorySubtree subtree = new RepositorySubtree(rootPathNode, revision);
+        RepositoryDirEntry.list(repository, rootPathNode, revision, (currentPathNode, entry) ->
+                subtree.put(currentPathNode.toString(), entry.getKind(), entry.getSize()));
+        return subtree;
+    }
+
+    private synchronized void put(String path, SVNNodeKind kind, long size) {
+        kinds.put(path, kind);
+        sizes.put(path, size);
+    }
+
+    public RepositoryPathNode getRootPathNode() {
+        return rootPathNode;
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    public synchronized SVNNodeKind getKind(String path) {
+        return kinds.getOrDefault(path, SVNNodeKind.NONE);
+    }
+
+    public synchronized long getSize(String path) {
+        return sizes.getOrDefault(path, -1L);
+    }
+
+    /**
+     * 子树中所有文件的大小，用于快速排除不可能重复的本地文件
+     */
+    public synchronized Set<Long> getFileSizes() {
+        Set<Long> fileSizes = new HashSet<>();
+        kinds.forEach((path, kind) -> {
+            if (kind == SVNNodeKind.FILE) {
+                fileSizes.add(sizes.get(path));
+            }
+        });
+        return fileSizes;
+    }
+
+    /**
+     * 子树中文件的校验和，首次调用时获取
+     */
+    public synchronized Map<RepositoryPathNode, String> getChecksumMap(SVNRepository repository) throws SVNException {
+        if (checksums == null) {
+            checksums = getChecksumMap(repository, rootPathNode, revision);
+        }
+        return checksums;
+    }
+
+    /**
+     * 获取rootPathNode文件夹下所有文件在revision的校验和
+     */
+    public static Map<RepositoryPathNode, String> getChecksumMap(SVNRepository repository, RepositoryPathNode rootPathNode,
+                                                                long revision) throws SVNException {
+        Map<RepositoryPathNode, String> subtreeChecksums = new HashMap<>();
+        String rootPath = rootPathNode.toString().substring(1);
+        repository.status(revision, "", true, reporter -> {
+            // 只有子树按空目录汇报，其余部分与目标版本相同
+            reporter.setPath("", null, revision, SVNDepth.INFINITY, rootPath.isEmpty());
+            if (!rootPath.isEmpty()) {
+                reporter.setPath(rootPath, null, revision, SVNDepth.INFINITY, true);
+            }
+            reporter.finishReport();
+        }, new BaseEditor() {
+            @Override
+            public void closeFile(String path, String textChecksum) {
+                RepositoryPathNode pathNode = RepositoryPathNode.of(path);
+                if (textChecksum != null) {
+                    subtreeChecksums.put(pathNode, textChecksum);
+                } else {
+                    LOGGER.warning("未获取到校验和：" + pathNode);
+                }
+            }
+        });
+        return Collections.unmodifiableMap(subtreeChecksums);
+    }
+}
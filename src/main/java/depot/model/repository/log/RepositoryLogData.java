@@ -2,6 +2,7 @@ package depot.model.repository.log;
 
 import depot.model.base.BaseModel;
 import depot.model.repository.path.RepositoryPathNode;
+import depot.util.JsonWriter;
 import org.tmatesoft.svn.core.SVNLogEntry;
 import org.tmatesoft.svn.core.SVNLogEntryPath;
 import org.tmatesoft.svn.core.SVNNodeKind;
@@ -179,7 +180,7 @@ public class RepositoryLogData extends BaseModel implements Serializable {
                         && changedPaths.get(copyPath).getType() == 'D'
                         && copyRevision == revision - 1) {
                     movedPaths.add(copyPath);
-                    if (Paths.get(path).getParent().equals(Paths.get(copyPath).getParent())) {
+                    if (RepositoryPathNode.of(path).getParent().equals(RepositoryPathNode.of(copyPath).getParent())) {
                         renamedPaths.putIfAbsent(copyPath, path);
                     }
                 }
@@ -208,10 +209,14 @@ public class RepositoryLogData extends BaseModel implements Serializable {
         return logTreeNodes;
     }
 
-    public synchronized Object[] getLogTreeNodeChildrenArray(String parentId) {
-        return (logTreeNodes != null ? logTreeNodes : buildLogTreeNodes()).parallelStream()
-                .filter(node -> node.parent.equals(parentId))
-                .toArray();
+    public synchronized String getLogTreeNodeChildrenJson(String parentId) {
+        JsonWriter writer = new JsonWriter().beginArray();
+        for (RepositoryLogTreeNode node : logTreeNodes != null ? logTreeNodes : buildLogTreeNodes()) {
+            if (node.parent.equals(parentId)) {
+                node.writeJson(writer);
+            }
+        }
+        return writer.endArray().toString();
     }
 
     public String getRepositoryUUID() {
@@ -0,0 +1,115 @@
+package depot.model.repository.path;
+
+import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNDirEntry;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式遍历：生产者在后台线程中逐项获取，经有界缓冲区交给调用线程处理
+ * <p>
+ * 生产者只能使用会话池中的会话，调用方在处理期间可能使用自己的会话
+ */
+public class DirEntryStream {
+    private static final int DEFAULT_BUFFER_SIZE = 1024;
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    public interface Producer {
+        void produce(RepositoryDirEntry.DirEntryReceiver receiver) throws Exception;
+    }
+
+    private static class Item {
+        private final RepositoryPathNode pathNode;
+        private final SVNDirEntry entry;
+
+        private Item(RepositoryPathNode pathNode, SVNDirEntry entry) {
+            this.pathNode = pathNode;
+            this.entry = entry;
+        }
+    }
+
+    private static final Item END = new Item(null, null);
+
+    private final BlockingQueue<Item> buffer;
+    private volatile boolean stopped = false;
+    private volatile Exception producerException;
+
+    private DirEntryStream(int bufferSize) {
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+    }
+
+    public static void stream(Producer producer, RepositoryDirEntry.DirEntryReceiver receiver) throws Exception {
+        stream(producer, receiver, DEFAULT_BUFFER_SIZE);
+    }
+
+    public static void stream(Producer producer, RepositoryDirEntry.DirEntryReceiver receiver,
+                              int bufferSize) throws Exception {
+        new DirEntryStream(bufferSize).run(producer, receiver);
+    }
+
+    private void run(Producer producer, RepositoryDirEntry.DirEntryReceiver receiver) throws Exception {
+        Thread producerThread = new Thread(() -> {
+            try {
+                producer.produce(this::put);
+            } catch (Exception e) {
+                producerException = e;
+            } finally {
+                try {
+                    put(END);
+                } catch (Exception ignored) {
+                }
+            }
+        }, "DirEntryStream");
+        producerThread.setDaemon(true);
+        producerThread.start();
+
+        try {
+            while (true) {
+                Item item = buffer.take();
+                if (item == END) {
+                    break;
+                }
+                receiver.receive(item.pathNode, item.entry);
+            }
+        } finally {
+            stopped = true;
+            buffer.clear();
+            join(producerThread);
+        }
+        if (producerException != null) {
+            throw producerException;
+        }
+    }
+
+    /**
+     * 接收者出错或调用方被中断时，生产者在下一次放入时停止；等待其结束，返回后不再使用会话
+     */
+    private static void join(Thread producerThread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                producerThread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void put(RepositoryPathNode pathNode, SVNDirEntry entry) throws Exception {
+        put(new Item(pathNode, entry));
+    }
+
+    private void put(Item item) throws Exception {
+        while (!buffer.offer(item, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (stopped) {
+                throw new SVNCancelException();
+            }
+        }
+    }
+}
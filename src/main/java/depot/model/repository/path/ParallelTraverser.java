@@ -0,0 +1,163 @@
+package depot.model.repository.path;
+
+import depot.model.repository.config.RepositorySessionPool;
+import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNDirEntry;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 并行遍历：从会话池借用多个会话，同时对不同子树执行getDir，结果合并交给同一个接收者
+ */
+public class ParallelTraverser {
+    private static final int DEFAULT_SESSION_COUNT = 4;
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+
+    private final SVNRepository repository;
+    private final long revision;
+    private final RepositoryDirEntry.DirEntryReceiver receiver;
+    private final LinkedBlockingDeque<RepositoryPathNode> pendingDirs = new LinkedBlockingDeque<>();
+    private final AtomicInteger unfinishedDirCount = new AtomicInteger();
+    private volatile Exception exception;
+
+    private ParallelTraverser(SVNRepository repository, long revision, RepositoryDirEntry.DirEntryReceiver receiver) {
+        this.repository = repository;
+        this.revision = revision;
+        this.receiver = receiver;
+    }
+
+    public static void list(SVNRepository repository, RepositoryPathNode pathNode, long revision,
+                            RepositoryDirEntry.DirEntryReceiver receiver) throws Exception {
+        list(repository, pathNode, revision, DEFAULT_SESSION_COUNT, receiver);
+    }
+
+    /**
+     * 只使用会话池中的会话，可在其他线程中调用，不与调用方共用主会话
+     */
+    public static void list(SVNRepository repository, RepositoryPathNode pathNode, long revision, int sessionCount,
+                            RepositoryDirEntry.DirEntryReceiver receiver) throws Exception {
+        long listRevision;
+        SVNDirEntry rootEntry;
+        try (RepositorySessionPool.Session pooledSession = RepositorySessionPool.of(repository).borrowForTraversal(true)) {
+            try {
+                SVNRepository session = pooledSession.getRepository();
+                listRevision = revision >= 0 ? revision : session.getLatestRevision();
+                rootEntry = session.info(pathNode.toString(), listRevision);
+            } catch (SVNException e) {
+                pooledSession.invalidate();
+                throw e;
+            }
+        }
+        if (rootEntry == null) {
+            return;
+        }
+        rootEntry.setName(pathNode.getName());
+        new ParallelTraverser(repository, listRevision, receiver).run(pathNode, rootEntry, sessionCount);
+    }
+
+    private void run(RepositoryPathNode pathNode, SVNDirEntry rootEntry, int sessionCount) throws Exception {
+        receive(pathNode, rootEntry);
+        if (rootEntry.getKind() != SVNNodeKind.DIR) {
+            return;
+        }
+        unfinishedDirCount.set(1);
+        pendingDirs.add(pathNode);
+
+        ExecutorService executor = Executors.newFixedThreadPool(sessionCount, runnable -> {
+            Thread thread = new Thread(runnable, "ParallelTraverser");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < sessionCount; i++) {
+                boolean first = i == 0;
+                futures.add(executor.submit(() -> work(first)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            /*等待所有工作线程归还会话后再返回*/
+            executor.shutdownNow();
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    if (executor.awaitTermination(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * 工作线程：使用遍历额度借用会话；只有第一个线程等待额度，其余线程额度已满时直接结束
+     */
+    private void work(boolean first) {
+        RepositorySessionPool.Session pooledSession = null;
+        try {
+            pooledSession = RepositorySessionPool.of(repository).borrowForTraversal(first);
+            if (pooledSession == null) {
+                return;
+            }
+            SVNRepository session = pooledSession.getRepository();
+            while (exception == null && unfinishedDirCount.get() > 0) {
+                RepositoryPathNode dirPathNode = pendingDirs.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (dirPathNode == null) {
+                    continue;
+                }
+                LinkedList<SVNDirEntry> children = new LinkedList<>();
+                session.getDir(dirPathNode.toString(), revision, null, SVNDirEntry.DIRENT_ALL, children::add);
+                for (SVNDirEntry child : children) {
+                    RepositoryPathNode childPathNode = dirPathNode.resolveChild(child.getName());
+                    receive(childPathNode, child);
+                    if (child.getKind() == SVNNodeKind.DIR) {
+                        unfinishedDirCount.incrementAndGet();
+                        pendingDirs.add(childPathNode);
+                    }
+                }
+                unfinishedDirCount.decrementAndGet();
+            }
+        } catch (Exception e) {
+            if (exception == null) {
+                exception = e;
+            }
+            if (pooledSession != null && e instanceof SVNException && !(e instanceof SVNCancelException)) {
+                pooledSession.invalidate();
+            }
+        } finally {
+            if (pooledSession != null) {
+                pooledSession.close();
+            }
+        }
+    }
+
+    private void receive(RepositoryPathNode pathNode, SVNDirEntry entry) throws Exception {
+        if (exception != null) {
+            throw new SVNCancelException();
+        }
+        synchronized (receiver) {
+            receiver.receive(pathNode, entry);
+        }
+    }
+}
@@ -1,15 +1,31 @@
 package depot.model.repository.path;
 
-import depot.model.base.BaseEditor;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import depot.model.repository.config.RepositorySessionPool;
+import depot.model.repository.index.RepositoryChecksumIndex;
+import depot.model.repository.index.RepositoryContentIndex;
+import depot.model.repository.index.RepositoryContentSearcher;
+import depot.model.repository.index.RepositoryMetadataStore;
+import depot.model.repository.index.RepositoryNameIndex;
+import depot.model.repository.index.RepositoryQuery;
+import depot.model.repository.index.RepositorySnapshot;
 import depot.util.FileUtil;
+import depot.util.JsonWriter;
 import org.tmatesoft.svn.core.*;
 import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.wc.SVNRevision;
 import org.tmatesoft.svn.core.wc2.SvnList;
 import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
 import org.tmatesoft.svn.core.wc2.SvnTarget;
 
-import java.text.Collator;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
 
 public class RepositoryDirEntry {
     private static final String TYPE_CODE_DIR = "DIR";
@@ -146,47 +162,93 @@ public class RepositoryDirEntry {
         return TYPE_CODE_FILE.equals(getTypeCode()) ? FileUtil.getSizeString(getSize()) : "-";
     }
 
+    public void writeJson(JsonWriter writer) {
+        writer.beginObject()
+                .property("path", toString())
+                .property("name", getName())
+                .property("typeCode", getTypeCode())
+                .property("type", getType())
+                .property("iconClass", getIconClass())
+                .property("mtime", getMtime())
+                .property("sizeString", getSizeString())
+                .endObject();
+    }
+
     /**
      * 元数据查询
      */
-    private static class RepositoryRevision {
-        private final String repositoryUUID;
-        private final long revision;
-
-        public RepositoryRevision(SVNRepository repository, long revision) throws SVNException {
-            this.repositoryUUID = repository.getRepositoryUUID(true);
-            this.revision = revision;
-        }
-
-        public String getRepositoryUUID() {
-            return repositoryUUID;
-        }
-
-        public long getRevision() {
-            return revision;
+    private static final Logger LOGGER = Logger.getLogger("RepositoryDirEntry");
+    /*每个仓库的值都很大，只用一个段，避免权重上限按段均分后大仓库的值写入即被淘汰*/
+    private static final long CHECKSUM_INDEX_CACHE_MAX_ENTRIES = 2_000_000;
+    private static final long SNAPSHOT_CACHE_MAX_ENTRIES = 4_000_000;
+    private static final long NAME_INDEX_CACHE_MAX_ENTRIES = 4_000_000;
+    private static final long CONTENT_INDEX_CACHE_MAX_ENTRIES = 1_000_000;
+    private static final long METADATA_STORE_CACHE_MAX_ENTRIES = 4_000_000;
+
+    private static final Cache<String, RepositoryChecksumIndex> CHECKSUM_INDEX_CACHE = CacheBuilder.newBuilder()
+            .concurrencyLevel(1)
+            .maximumWeight(CHECKSUM_INDEX_CACHE_MAX_ENTRIES)
+            .weigher((Weigher<String, RepositoryChecksumIndex>) (k, v) -> v.size())
+            .removalListener(RepositoryDirEntry::onCacheRemoval)
+            .recordStats()
+            .build();
+    private static final Cache<String, RepositorySnapshot> SNAPSHOT_CACHE = CacheBuilder.newBuilder()
+            .concurrencyLevel(1)
+            .maximumWeight(SNAPSHOT_CACHE_MAX_ENTRIES)
+            .weigher((Weigher<String, RepositorySnapshot>) (k, v) -> v.size())
+            .removalListener(RepositoryDirEntry::onCacheRemoval)
+            .recordStats()
+            .build();
+
+    private static final Cache<String, RepositoryNameIndex> NAME_INDEX_CACHE = CacheBuilder.newBuilder()
+            .concurrencyLevel(1)
+            .maximumWeight(NAME_INDEX_CACHE_MAX_ENTRIES)
+            .weigher((Weigher<String, RepositoryNameIndex>) (k, v) -> v.size())
+            .removalListener(RepositoryDirEntry::onCacheRemoval)
+            .recordStats()
+            .build();
+
+    private static final Cache<String, RepositoryContentIndex> CONTENT_INDEX_CACHE = CacheBuilder.newBuilder()
+            .concurrencyLevel(1)
+            .maximumWeight(CONTENT_INDEX_CACHE_MAX_ENTRIES)
+            .weigher((Weigher<String, RepositoryContentIndex>) (k, v) -> v.size())
+            .removalListener(RepositoryDirEntry::onCacheRemoval)
+            .recordStats()
+            .build();
+
+    private static final Cache<String, RepositoryMetadataStore> METADATA_STORE_CACHE = CacheBuilder.newBuilder()
+            .concurrencyLevel(1)
+            .maximumWeight(METADATA_STORE_CACHE_MAX_ENTRIES)
+            .weigher((Weigher<String, RepositoryMetadataStore>) (k, v) -> v.size())
+            .removalListener(RepositoryDirEntry::onCacheRemoval)
+            .recordStats()
+            .build();
+
+    private static void onCacheRemoval(RemovalNotification<?, ?> notification) {
+        if (notification.wasEvicted()) {
+            LOGGER.info("元数据缓存已淘汰：" + notification.getKey() + "\n" + getCacheStats());
         }
+    }
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) {
-                return true;
-            }
-            if (o == null || getClass() != o.getClass()) {
-                return false;
-            }
-            RepositoryRevision that = (RepositoryRevision) o;
-            return revision == that.revision && Objects.equals(repositoryUUID, that.repositoryUUID);
-        }
+    public static String getCacheStats() {
+        return String.format("校验和缓存：%s，共%d项\n快照缓存：%s，共%d项\n名称索引缓存：%s，共%d项\n内容索引缓存：%s，共%d项\n元数据列存储缓存：%s，共%d项",
+                CHECKSUM_INDEX_CACHE.stats(), CHECKSUM_INDEX_CACHE.size(),
+                SNAPSHOT_CACHE.stats(), SNAPSHOT_CACHE.size(),
+                NAME_INDEX_CACHE.stats(), NAME_INDEX_CACHE.size(),
+                CONTENT_INDEX_CACHE.stats(), CONTENT_INDEX_CACHE.size(),
+                METADATA_STORE_CACHE.stats(), METADATA_STORE_CACHE.size());
+    }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(repositoryUUID, revision);
+    private static <V> V getCached(Cache<?, V> cache, Object key, Callable<? extends V> loader) throws Exception {
+        try {
+            @SuppressWarnings("unchecked")
+            Cache<Object, V> objectKeyCache = (Cache<Object, V>) cache;
+            return objectKeyCache.get(key, loader);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
         }
     }
 
-    private static final Map<RepositoryRevision, Map<RepositoryPathNode, String>> CHECKSUM_MAP_CACHE = new HashMap<>();
-    private static final Map<RepositoryRevision, Map<RepositoryPathNode, List<SVNDirEntry>>> TRAVERSE_CACHE = new HashMap<>();
-
     public static SVNDirEntry getEntry(SVNRepository repository, RepositoryPathNode pathNode) {
         return getEntry(repository, pathNode.toString());
     }
@@ -215,155 +277,160 @@ public class RepositoryDirEntry {
         return null;
     }
 
-    public static Map<RepositoryPathNode, String> getChecksumMap(SVNRepository repository) throws Exception {
-        long revision = repository.getLatestRevision();
-        RepositoryRevision repositoryRevision = new RepositoryRevision(repository, revision);
-        if (CHECKSUM_MAP_CACHE.containsKey(repositoryRevision)) {
-            return CHECKSUM_MAP_CACHE.get(repositoryRevision);
-        }
-
-        Map<RepositoryPathNode, String> checksumMap = new HashMap<>();
-        repository.status(revision, "", true, reporter -> {
-            reporter.setPath("", null, revision, SVNDepth.INFINITY, true);
-            reporter.finishReport();
-        }, new BaseEditor() {
-            @Override
-            public void closeFile(String path, String textChecksum) {
-                checksumMap.put(new RepositoryPathNode(path), textChecksum);
-            }
-        });
-
-        CHECKSUM_MAP_CACHE.put(repositoryRevision, checksumMap);
-        for (RepositoryRevision item : CHECKSUM_MAP_CACHE.keySet()) {
-            if (Objects.equals(item.getRepositoryUUID(), repository.getRepositoryUUID(true))
-                    && item.getRevision() < revision) {
-                CHECKSUM_MAP_CACHE.remove(item);
-            }
-        }
+    public static RepositoryChecksumIndex getChecksumIndex(SVNRepository repository) throws Exception {
+        return getCached(CHECKSUM_INDEX_CACHE, repository.getRepositoryUUID(true), () -> RepositoryChecksumIndex.load(repository));
+    }
 
-        return checksumMap;
+    /**
+     * 校验和表：按仓库持久保存，新版本只获取变更的文件
+     */
+    public static Map<RepositoryPathNode, String> getChecksumMap(SVNRepository repository) throws Exception {
+        RepositoryChecksumIndex checksumIndex = getChecksumIndex(repository);
+        checksumIndex.update(repository);
+        // 校验和表大小变化后重新计算缓存权重
+        CHECKSUM_INDEX_CACHE.put(checksumIndex.getRepositoryUUID(), checksumIndex);
+        return checksumIndex.getChecksumMap();
     }
 
+    private static final String LOCAL_PROTOCOL = "file";
+
     public interface DirEntryReceiver {
         void receive(RepositoryPathNode pathNode, SVNDirEntry entry) throws Exception;
     }
 
-    public static void traverse(SVNRepository repository, RepositoryPathNode pathNode, DirEntryReceiver receiver) throws Exception {
-        long revision = repository.getLatestRevision();
-        RepositoryRevision repositoryRevision = new RepositoryRevision(repository, revision);
-
-        final List<SVNDirEntry> entryList = new LinkedList<>();
-        if (TRAVERSE_CACHE.containsKey(repositoryRevision)
-                && TRAVERSE_CACHE.get(repositoryRevision).containsKey(pathNode)) {
-            entryList.addAll(TRAVERSE_CACHE.get(repositoryRevision).get(pathNode));
-        } else {
-            SvnOperationFactory svnOperationFactory = new SvnOperationFactory();
-            svnOperationFactory.setAuthenticationManager(repository.getAuthenticationManager());
-            SvnList svnList = svnOperationFactory.createList();
-            svnList.setDepth(SVNDepth.INFINITY);
-            svnList.setSingleTarget(SvnTarget.fromURL(repository.getRepositoryRoot(true).appendPath(pathNode.toString(), true)));
-            svnList.setReceiver((target, object) -> entryList.add(object));
-            svnList.run();
-        }
+    public static RepositorySnapshot getSnapshot(SVNRepository repository) throws Exception {
+        return getCached(SNAPSHOT_CACHE, repository.getRepositoryUUID(true), () -> RepositorySnapshot.load(repository));
+    }
 
-        entryList.forEach(entry -> {
-            RepositoryPathNode currentPathNode = new RepositoryPathNode(
-                    entry.getURL().toDecodedString()
-                            .substring(entry.getRepositoryRoot().toDecodedString().length()));
-            entry.setName(currentPathNode.getName());
-            try {
-                receiver.receive(currentPathNode, entry);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        });
-
-        TRAVERSE_CACHE.computeIfAbsent(repositoryRevision, k -> new HashMap<>())
-                .putIfAbsent(pathNode, entryList);
-        for (RepositoryRevision item : TRAVERSE_CACHE.keySet()) {
-            if (Objects.equals(item.getRepositoryUUID(), repository.getRepositoryUUID(true))
-                    && item.getRevision() < revision) {
-                TRAVERSE_CACHE.remove(item);
-            }
-        }
+    public static RepositorySnapshot getUpdatedSnapshot(SVNRepository repository) throws Exception {
+        RepositorySnapshot snapshot = getSnapshot(repository);
+        snapshot.update(repository, null);
+        SNAPSHOT_CACHE.put(snapshot.getRepositoryUUID(), snapshot);
+        return snapshot;
     }
 
     /**
-     * 比较器
+     * 名称搜索：由快照更新名称索引后查询，不再遍历仓库
      */
-    private static final Collator COLLATOR = Collator.getInstance();
-
-    private static int nameCompare(RepositoryDirEntry o1, RepositoryDirEntry o2) {
-        return COLLATOR.compare(o1.getName(), o2.getName());
-    }
-
-    private static int mtimeCompare(RepositoryDirEntry o1, RepositoryDirEntry o2) {
-        return o1.getMtime().compareTo(o2.getMtime());
-    }
-
-    private static int typeCompare(RepositoryDirEntry o1, RepositoryDirEntry o2) {
-        return o1.getType().compareTo(o2.getType());
-    }
-
-    public static int entryNameCompare(RepositoryDirEntry o1, RepositoryDirEntry o2) {
-        if (o1.isDir()) {
-            return o2.isDir() ? nameCompare(o1, o2) : -1;
-        } else {
-            return !o2.isDir() ? nameCompare(o1, o2) : 1;
+    public static void search(SVNRepository repository, String searchPattern, DirEntryReceiver receiver) throws Exception {
+        RepositorySnapshot snapshot = getUpdatedSnapshot(repository);
+        RepositoryNameIndex nameIndex = getCached(NAME_INDEX_CACHE, repository.getRepositoryUUID(true),
+                () -> RepositoryNameIndex.load(repository));
+        nameIndex.update(snapshot);
+        NAME_INDEX_CACHE.put(nameIndex.getRepositoryUUID(), nameIndex);
+        for (String path : nameIndex.search(searchPattern)) {
+            SVNDirEntry entry = snapshot.getDirEntry(repository, path);
+            if (entry != null) {
+                receiver.receive(RepositoryPathNode.of(path), entry);
+            }
         }
     }
 
-    public static int entryMtimeCompare(RepositoryDirEntry o1, RepositoryDirEntry o2) {
-        if (o1.isDir()) {
-            return o2.isDir() ? mtimeCompare(o1, o2) : -1;
-        } else {
-            return !o2.isDir() ? mtimeCompare(o1, o2) : 1;
+    /**
+     * 结构化查询：在快照生成的列存储上按条件筛选
+     */
+    public static void query(SVNRepository repository, String searchPattern, DirEntryReceiver receiver) throws Exception {
+        RepositoryQuery query = RepositoryQuery.parse(searchPattern);
+        RepositorySnapshot snapshot = getUpdatedSnapshot(repository);
+        RepositoryMetadataStore metadataStore = METADATA_STORE_CACHE.getIfPresent(snapshot.getRepositoryUUID());
+        if (metadataStore == null || metadataStore.getRevision() != snapshot.getRevision()) {
+            metadataStore = snapshot.toMetadataStore();
+            METADATA_STORE_CACHE.put(snapshot.getRepositoryUUID(), metadataStore);
         }
-    }
-
-    public static int entryTypeCompare(RepositoryDirEntry o1, RepositoryDirEntry o2) {
-        if (typeCompare(o1, o2) == 0) {
-            return nameCompare(o1, o2);
+        for (String path : metadataStore.query(query)) {
+            SVNDirEntry entry = snapshot.getDirEntry(repository, path);
+            if (entry != null) {
+                receiver.receive(RepositoryPathNode.of(path), entry);
+            }
         }
-        return typeCompare(o1, o2);
     }
 
-    public static int entrySizeCompare(RepositoryDirEntry o1, RepositoryDirEntry o2) {
-        if (o1.isDir()) {
-            return o2.isDir() ? nameCompare(o1, o2) : -1;
-        } else {
-            return !o2.isDir() ? Long.compare(o1.getSize(), o2.getSize()) : 1;
+    /**
+     * 内容搜索：相同内容的文件一并返回
+     */
+    public static void searchContent(SVNRepository repository, String text, DirEntryReceiver receiver) throws Exception {
+        RepositorySnapshot snapshot = getUpdatedSnapshot(repository);
+        RepositoryChecksumIndex checksumIndex = getChecksumIndex(repository);
+        Map<RepositoryPathNode, String> checksumMap = getChecksumMap(repository);
+        RepositoryContentIndex contentIndex = getCached(CONTENT_INDEX_CACHE, repository.getRepositoryUUID(true),
+                () -> RepositoryContentIndex.load(repository));
+        try {
+            Set<String> matchedChecksums = RepositoryContentSearcher.search(repository, checksumIndex.getRevision(),
+                    snapshot, checksumMap, contentIndex, text);
+            for (Map.Entry<RepositoryPathNode, String> item : checksumMap.entrySet()) {
+                if (matchedChecksums.contains(item.getValue())) {
+                    SVNDirEntry entry = snapshot.getDirEntry(repository, item.getKey().toString());
+                    if (entry != null) {
+                        receiver.receive(item.getKey(), entry);
+                    }
+                }
+            }
+        } finally {
+            CONTENT_INDEX_CACHE.put(contentIndex.getRepositoryUUID(), contentIndex);
         }
     }
 
-    public static int entryNameCompareRev(RepositoryDirEntry o1, RepositoryDirEntry o2) {
-        if (o1.isDir()) {
-            return o2.isDir() ? nameCompare(o2, o1) : -1;
-        } else {
-            return !o2.isDir() ? nameCompare(o2, o1) : 1;
+    /**
+     * 遍历：优先使用快照，否则逐项流式获取
+     */
+    public static void traverse(SVNRepository repository, RepositoryPathNode pathNode, DirEntryReceiver receiver) throws Exception {
+        RepositorySnapshot snapshot = getSnapshot(repository);
+        if (snapshot.isBuilt() || pathNode.getParent() == null) {
+            // 快照覆盖整个仓库，新版本只需增量更新；首次建立时边获取边交付
+            boolean delivered = snapshot.update(repository, pathNode.getParent() == null ? receiver : null);
+            // 快照大小变化后重新计算缓存权重
+            SNAPSHOT_CACHE.put(snapshot.getRepositoryUUID(), snapshot);
+            if (!delivered) {
+                snapshot.traverse(repository, pathNode, receiver);
+            }
+            return;
         }
+        DirEntryStream.stream(streamReceiver -> list(repository, pathNode, -1, streamReceiver), receiver);
     }
 
-    public static int entryMtimeCompareRev(RepositoryDirEntry o1, RepositoryDirEntry o2) {
-        if (o1.isDir()) {
-            return o2.isDir() ? mtimeCompare(o2, o1) : -1;
-        } else {
-            return !o2.isDir() ? mtimeCompare(o2, o1) : 1;
+    /**
+     * 列表：远程仓库多会话并行获取，本地仓库单次获取；只使用会话池中的会话，可在生产者线程中调用
+     */
+    public static void list(SVNRepository repository, RepositoryPathNode pathNode, long revision,
+                            DirEntryReceiver receiver) throws Exception {
+        if (!LOCAL_PROTOCOL.equals(repository.getLocation().getProtocol())) {
+            ParallelTraverser.list(repository, pathNode, revision, receiver);
+            return;
         }
-    }
-
-    public static int entryTypeCompareRev(RepositoryDirEntry o1, RepositoryDirEntry o2) {
-        if (typeCompare(o1, o2) == 0) {
-            return nameCompare(o1, o2);
+        SVNURL repositoryRoot;
+        try (RepositorySessionPool.Session pooledSession = RepositorySessionPool.of(repository).borrow()) {
+            try {
+                repositoryRoot = pooledSession.getRepository().getRepositoryRoot(true);
+            } catch (SVNException e) {
+                pooledSession.invalidate();
+                throw e;
+            }
         }
-        return typeCompare(o2, o1);
-    }
-
-    public static int entrySizeCompareRev(RepositoryDirEntry o1, RepositoryDirEntry o2) {
-        if (o1.isDir()) {
-            return o2.isDir() ? nameCompare(o1, o2) : -1;
-        } else {
-            return !o2.isDir() ? Long.compare(o2.getSize(), o1.getSize()) : 1;
+        String repositoryRootString = repositoryRoot.toDecodedString();
+        SVNRevision svnRevision = revision >= 0 ? SVNRevision.create(revision) : SVNRevision.HEAD;
+        SvnOperationFactory svnOperationFactory = new SvnOperationFactory();
+        try {
+            svnOperationFactory.setAuthenticationManager(repository.getAuthenticationManager());
+            SvnList svnList = svnOperationFactory.createList();
+            svnList.setDepth(SVNDepth.INFINITY);
+            svnList.setRevision(svnRevision);
+            svnList.setSingleTarget(SvnTarget.fromURL(pathNode.getParent() != null ?
+                    repositoryRoot.appendPath(pathNode.toString(), false) : repositoryRoot, svnRevision));
+            svnList.setReceiver((target, entry) -> {
+                RepositoryPathNode currentPathNode = RepositoryPathNode.of(
+                        entry.getURL().toDecodedString().substring(repositoryRootString.length()));
+                entry.setName(currentPathNode.getName());
+                try {
+                    receiver.receive(currentPathNode, entry);
+                } catch (SVNException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new SVNCancelException(SVNErrorMessage.create(SVNErrorCode.CANCELLED, e.getMessage()));
+                }
+            });
+            svnList.run();
+        } finally {
+            svnOperationFactory.dispose();
         }
     }
 }
@@ -1,25 +1,27 @@
 package depot.model.repository.path;
 
 import depot.model.base.BaseDirTreeItem;
+import depot.model.repository.content.RepositoryListingCache;
 import org.tmatesoft.svn.core.SVNDirEntry;
 import org.tmatesoft.svn.core.SVNNodeKind;
-import org.tmatesoft.svn.core.io.SVNRepository;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
+/**
+ * 仓库文件夹树节点，与文件列表共用文件夹列表缓存
+ */
 public class RepositoryDirTreeItem extends BaseDirTreeItem {
 
-    private final SVNRepository repository;
+    private final RepositoryListingCache listingCache;
 
-    public RepositoryDirTreeItem(SVNRepository repository) {
-        this(repository, new RepositoryPathNode());
+    public RepositoryDirTreeItem(RepositoryListingCache listingCache) {
+        this(listingCache, RepositoryPathNode.getRoot());
     }
 
-    public RepositoryDirTreeItem(SVNRepository repository, RepositoryPathNode pathNode) {
+    public RepositoryDirTreeItem(RepositoryListingCache listingCache, RepositoryPathNode pathNode) {
         super(pathNode);
-        this.repository = repository;
+        this.listingCache = listingCache;
     }
 
     @Override
@@ -28,21 +30,34 @@ public class RepositoryDirTreeItem extends BaseDirTreeItem {
     }
 
     @Override
-    protected List<Object> getChildrenDir() throws Exception {
-        if (childrenDir == null) {
-            childrenDir = new ArrayList<>();
-            if (repository.checkPath(pathNode.toString(), -1) == SVNNodeKind.DIR) {
-                repository.getDir(pathNode.toString(), -1, null, childrenDir);
+    protected List<Object> getCachedChildrenDir() {
+        RepositoryListingCache.Listing listing = listingCache.getCached(pathNode.toString());
+        return listing != null ? toChildrenDir(listing) : null;
+    }
+
+    @Override
+    protected void loadChildrenDir(ChildrenDirListener listener) {
+        listingCache.load(pathNode.toString(), new RepositoryListingCache.LoadListener() {
+            @Override
+            public void loaded(RepositoryListingCache.Listing listing) {
+                listener.loaded(toChildrenDir(listing));
             }
-            childrenDir = childrenDir.stream()
-                    .filter(dirEntry -> ((SVNDirEntry) dirEntry).getKind() == SVNNodeKind.DIR)
-                    .collect(Collectors.toList());
-        }
-        return childrenDir;
+
+            @Override
+            public void failed(Exception e) {
+                listener.failed(e);
+            }
+        });
+    }
+
+    private static List<Object> toChildrenDir(RepositoryListingCache.Listing listing) {
+        return listing.getEntries().stream()
+                .filter(dirEntry -> dirEntry.getKind() == SVNNodeKind.DIR)
+                .collect(Collectors.toList());
     }
 
     @Override
     protected BaseDirTreeItem convertChildDir(Object childDir) {
-        return new RepositoryDirTreeItem(repository, pathNode.resolve(((SVNDirEntry) childDir).getName()));
+        return new RepositoryDirTreeItem(listingCache, pathNode.resolveChild(((SVNDirEntry) childDir).getName()));
     }
 }
@@ -101,6 +101,17 @@ public class RepositoryPath {
         return false;
     }
 
+    public boolean replacePath(String pathString) {
+        Path newPath = path.resolve(pathString).normalize();
+        if (!equals(path, newPath)) {
+            popUntilCurrent();
+            pathHistory.pop();
+            switchAndSaveHistory(newPath);
+            return true;
+        }
+        return false;
+    }
+
     public RepositoryPath resolve(String pathString) {
         return new RepositoryPath(path.resolve(pathString));
     }
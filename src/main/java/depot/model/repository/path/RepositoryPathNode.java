@@ -1,34 +1,66 @@
 package depot.model.repository.path;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+/**
+ * 仓库路径：路径段共享的前缀树节点，父节点经过驻留，比较时只需比较父节点引用和末段名称
+ */
 public class RepositoryPathNode {
-    private static final String SEARCH_PATH_PREFIX = "/@@";
-    private static final Pattern SEARCH_PATH_PATTERN = Pattern.compile("^" + SEARCH_PATH_PREFIX + "(.+)$");
+    private static final String SEARCH_PATH_PREFIX = "@@";
+    private static final String ROOT_PATH = "/";
+
+    private static final Interner<RepositoryPathNode> INTERNER = Interners.newWeakInterner();
+    private static final RepositoryPathNode ROOT = INTERNER.intern(new RepositoryPathNode(null, ""));
 
-    private final Path path;
+    private final RepositoryPathNode parent;
+    private final String name;
+    private final int depth;
+    private final int hash;
+
+    private RepositoryPathNode(RepositoryPathNode parent, String name) {
+        this.parent = parent;
+        this.name = name;
+        this.depth = parent != null ? parent.depth + 1 : 0;
+        this.hash = parent != null ? 31 * parent.hash + name.hashCode() : 1;
+    }
+
+    private RepositoryPathNode(RepositoryPathNode node) {
+        this(node.parent, node.name);
+    }
 
     public RepositoryPathNode() {
-        this(Paths.get("/"));
+        this(ROOT);
     }
 
     public RepositoryPathNode(String pathString) {
-        this(Paths.get("/").resolve(pathString));
+        this(of(pathString));
     }
 
     public RepositoryPathNode(Path path) {
-        this.path = path.normalize();
+        this(of(toUniString(path)));
+    }
+
+    /**
+     * 获取驻留的路径节点，相对路径从根路径解析
+     */
+    public static RepositoryPathNode of(String pathString) {
+        return ROOT.resolve(pathString);
+    }
+
+    public static RepositoryPathNode getRoot() {
+        return ROOT;
     }
 
     public Path getPath() {
-        return path;
+        return Paths.get(toString());
     }
 
     public static String toUniString(Path path) {
@@ -37,18 +69,30 @@ public class RepositoryPathNode {
 
     @Override
     public String toString() {
-        return toUniString(path);
+        if (parent == null) {
+            return ROOT_PATH;
+        }
+        RepositoryPathNode[] nodes = new RepositoryPathNode[depth];
+        int length = 0;
+        for (RepositoryPathNode node = this; node.parent != null; node = node.parent) {
+            nodes[node.depth - 1] = node;
+            length += node.name.length() + 1;
+        }
+        StringBuilder stringBuilder = new StringBuilder(length);
+        for (RepositoryPathNode node : nodes) {
+            stringBuilder.append('/').append(node.name);
+        }
+        return stringBuilder.toString();
     }
 
     public boolean isSearch() {
-        return SEARCH_PATH_PATTERN.matcher(toString()).matches();
+        return depth == 1 && name.length() > SEARCH_PATH_PREFIX.length() && name.startsWith(SEARCH_PATH_PREFIX);
     }
 
     public String getSearchPattern() {
-        Matcher searchPathMatcher = SEARCH_PATH_PATTERN.matcher(toString());
-        if (searchPathMatcher.matches()) {
+        if (isSearch()) {
             try {
-                return URLDecoder.decode(searchPathMatcher.group(1), StandardCharsets.UTF_8.toString());
+                return URLDecoder.decode(name.substring(SEARCH_PATH_PREFIX.length()), StandardCharsets.UTF_8.toString());
             } catch (UnsupportedEncodingException e) {
                 e.printStackTrace();
             }
@@ -58,8 +102,8 @@ public class RepositoryPathNode {
 
     public static RepositoryPathNode getSearchPathNode(String searchPattern) {
         try {
-            return new RepositoryPathNode(Paths.get(SEARCH_PATH_PREFIX
-                    + URLEncoder.encode(searchPattern, StandardCharsets.UTF_8.toString())));
+            return ROOT.resolveChild(SEARCH_PATH_PREFIX
+                    + URLEncoder.encode(searchPattern, StandardCharsets.UTF_8.toString()));
         } catch (UnsupportedEncodingException e) {
             e.printStackTrace();
         }
@@ -70,35 +114,77 @@ public class RepositoryPathNode {
         if (isSearch()) {
             return "搜索“" + getSearchPattern() + "”";
         }
-        return path.getNameCount() > 0 ? path.getFileName().toString() : "我的仓库";
+        return parent != null ? name : "我的仓库";
     }
 
     public RepositoryPathNode getParent() {
-        Path parentPath = path.getParent();
-        return parentPath != null ?
-                new RepositoryPathNode(parentPath) : null;
+        return parent;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * 获取驻留的子节点，name为单个路径段
+     */
+    public RepositoryPathNode resolveChild(String name) {
+        return INTERNER.intern(new RepositoryPathNode(INTERNER.intern(this), name));
     }
 
     public RepositoryPathNode resolve(String pathString) {
-        return new RepositoryPathNode(path.resolve(pathString));
+        RepositoryPathNode node = this;
+        int length = pathString.length();
+        int start = 0;
+        if (length > 0 && isSeparator(pathString.charAt(0))) {
+            node = ROOT;
+        }
+        for (int i = 0; i <= length; i++) {
+            if (i == length || isSeparator(pathString.charAt(i))) {
+                if (i > start) {
+                    String segment = pathString.substring(start, i);
+                    if ("..".equals(segment)) {
+                        node = node.parent != null ? node.parent : node;
+                    } else if (!".".equals(segment)) {
+                        node = node.resolveChild(segment);
+                    }
+                }
+                start = i + 1;
+            }
+        }
+        return node;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '/' || c == '\\';
     }
 
     public Path relativize(Path other) {
-        return path.relativize(other);
+        return getPath().relativize(other);
     }
 
     public boolean startsWith(RepositoryPathNode other) {
-        return path.startsWith(other.path);
+        RepositoryPathNode node = this;
+        while (node.depth > other.depth) {
+            node = node.parent;
+        }
+        return node.equals(other);
     }
 
     @Override
     public int hashCode() {
-        return toString().hashCode();
+        return hash;
     }
 
     @Override
     public boolean equals(Object obj) {
-        return obj instanceof RepositoryPathNode
-                && obj.toString().equals(toString());
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof RepositoryPathNode)) {
+            return false;
+        }
+        RepositoryPathNode other = (RepositoryPathNode) obj;
+        return hash == other.hash && parent == other.parent && name.equals(other.name);
     }
 }
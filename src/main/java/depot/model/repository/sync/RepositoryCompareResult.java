@@ -3,6 +3,7 @@ package depot.model.repository.sync;
 import com.google.common.base.Preconditions;
 import depot.model.repository.config.ComparableRepositoryConfig;
 import depot.model.repository.path.RepositoryPathNode;
+import depot.util.JsonWriter;
 
 import java.nio.file.Paths;
 import java.util.*;
@@ -39,10 +40,14 @@ public class RepositoryCompareResult {
                 .collect(Collectors.toMap(entry -> entry.getKey().toString(), Map.Entry::getValue));
     }
 
-    public synchronized Object[] getCompareTreeNodeChildrenArray(String parentId) {
-        return (compareTreeNodes != null ? compareTreeNodes : buildCompareTreeNodes()).parallelStream()
-                .filter(node -> node.parent.equals(parentId))
-                .toArray();
+    public synchronized String getCompareTreeNodeChildrenJson(String parentId) {
+        JsonWriter writer = new JsonWriter().beginArray();
+        for (RepositoryCompareTreeNode node : compareTreeNodes != null ? compareTreeNodes : buildCompareTreeNodes()) {
+            if (node.parent.equals(parentId)) {
+                node.writeJson(writer);
+            }
+        }
+        return writer.endArray().toString();
     }
 
     private LinkedList<RepositoryCompareTreeNode> buildCompareTreeNodes() {
@@ -1,6 +1,7 @@
 package depot.model.repository.sync;
 
 import depot.model.base.BaseTreeNode;
+import depot.util.JsonWriter;
 
 import java.util.HashMap;
 
@@ -35,4 +36,21 @@ public class RepositoryCompareTreeNode extends BaseTreeNode {
     public String getTargetProperty(String propertyName) {
         return targetProperties.get(propertyName);
     }
+
+    @Override
+    protected void writeJsonProperties(JsonWriter writer) {
+        super.writeJsonProperties(writer);
+        writer.name("data").beginObject();
+        writeJsonProperties(writer, "sourceProp", sourceProperties);
+        writeJsonProperties(writer, "targetProp", targetProperties);
+        writer.endObject();
+    }
+
+    private static void writeJsonProperties(JsonWriter writer, String name, HashMap<String, String> properties) {
+        writer.name(name).beginObject()
+                .property("size", properties.get(PROP_SIZE))
+                .property("mtime", properties.get(PROP_MTIME))
+                .property("checksum", properties.get(PROP_CHECKSUM))
+                .endObject();
+    }
 }
@@ -0,0 +1,185 @@
+package depot.model.transfer.base;
+
+import depot.model.base.AppSettings;
+import depot.model.base.BaseModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * 本地内容缓存：按MD5保存已下载并校验过的文件内容，内容相同的文件不再从仓库下载
+ * <p>
+ * 文件按校验和前两位分目录保存，读取时更新修改时间，超出容量时按修改时间淘汰最久未用的内容；
+ * 下载计划中使用的内容在下载结束前固定，不会被淘汰
+ */
+public class BlobCache extends BaseModel {
+    private static final String CACHE_PATH = Paths.get(APP_HOME, "cache", "blobs").toString();
+    private static final Logger LOGGER = Logger.getLogger("BlobCache");
+    private static final String TEMP_SUFFIX = ".tmp";
+    /*淘汰到容量的该比例以下，避免每次写入都淘汰*/
+    private static final double EVICT_RATIO = 0.9;
+
+    private static BlobCache instance;
+
+    private final File cacheDir = new File(CACHE_PATH);
+    private final long quota;
+    /*首次使用时统计*/
+    private long totalSize = -1;
+    /*固定的内容：校验和 -> 固定次数*/
+    private final Map<String, Integer> pinnedChecksums = new HashMap<>();
+
+    private BlobCache(long quota) {
+        this.quota = quota;
+        if (!cacheDir.isDirectory()) {
+            cacheDir.mkdirs();
+        }
+    }
+
+    /**
+     * 设置中未启用时返回null
+     */
+    public static synchronized BlobCache getInstance() {
+        AppSettings settings = AppSettings.load();
+        if (!settings.isBlobCacheEnabled()) {
+            return null;
+        }
+        long quota = Math.max(settings.getBlobCacheQuota(), 1) * 1024 * 1024;
+        if (instance == null || instance.quota != quota) {
+            instance = new BlobCache(quota);
+        }
+        return instance;
+    }
+
+    private File getBlobFile(String checksum) {
+        return new File(new File(cacheDir, checksum.substring(0, 2)), checksum);
+    }
+
+    private static boolean isValidChecksum(String checksum) {
+        return checksum != null && checksum.length() == 32 && checksum.chars().allMatch(c -> Character.digit(c, 16) >= 0);
+    }
+
+    public boolean contains(String checksum) {
+        return isValidChecksum(checksum) && getBlobFile(checksum).isFile();
+    }
+
+    /**
+     * 获取缓存的内容，同时标记为最近使用；未缓存时返回null
+     */
+    public File get(String checksum) {
+        if (!isValidChecksum(checksum)) {
+            return null;
+        }
+        File blobFile = getBlobFile(checksum);
+        if (!blobFile.isFile()) {
+            return null;
+        }
+        blobFile.setLastModified(System.currentTimeMillis());
+        return blobFile;
+    }
+
+    /**
+     * 固定已缓存的内容，直到对应的unpin，期间不会被淘汰
+     *
+     * @return 缓存的内容，未缓存时返回null且不固定
+     */
+    public synchronized File pin(String checksum) {
+        File blobFile = get(checksum);
+        if (blobFile != null) {
+            pinnedChecksums.merge(checksum, 1, Integer::sum);
+        }
+        return blobFile;
+    }
+
+    public synchronized void unpin(String checksum) {
+        pinnedChecksums.computeIfPresent(checksum, (k, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * 缓存已校验的文件：先复制为临时文件再移动，不会留下不完整的内容；已缓存时只标记为最近使用
+     */
+    public void put(String checksum, File file) {
+        if (!isValidChecksum(checksum) || file.length() > quota) {
+            return;
+        }
+        File blobFile = getBlobFile(checksum);
+        if (blobFile.isFile()) {
+            blobFile.setLastModified(System.currentTimeMillis());
+            return;
+        }
+        File tempFile = new File(blobFile.getParentFile(), blobFile.getName() + "." + Thread.currentThread().getId() + TEMP_SUFFIX);
+        try {
+            Files.createDirectories(blobFile.getParentFile().toPath());
+            Files.copy(file.toPath(), tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            tempFile.setLastModified(System.currentTimeMillis());
+            try {
+                Files.move(tempFile.toPath(), blobFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // 其他线程已缓存相同内容
+                return;
+            }
+            added(blobFile.length());
+        } catch (IOException e) {
+            LOGGER.warning("内容缓存写入失败：" + file + "\n" + e);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    private synchronized void added(long size) {
+        if (totalSize < 0) {
+            totalSize = scan(null);
+        } else {
+            totalSize += size;
+        }
+        if (totalSize > quota) {
+            evict();
+        }
+    }
+
+    private synchronized void evict() {
+        Map<Path, BasicFileAttributes> blobAttributes = new HashMap<>();
+        totalSize = scan(blobAttributes);
+        /*修改时间在排序前读取一次*/
+        List<Map.Entry<Path, BasicFileAttributes>> blobs = new ArrayList<>(blobAttributes.entrySet());
+        blobs.sort(Comparator.comparing(blob -> blob.getValue().lastModifiedTime()));
+        long targetSize = (long) (quota * EVICT_RATIO);
+        for (Map.Entry<Path, BasicFileAttributes> blob : blobs) {
+            if (totalSize <= targetSize) {
+                break;
+            }
+            if (pinnedChecksums.containsKey(blob.getKey().getFileName().toString())) {
+                continue;
+            }
+            if (blob.getKey().toFile().delete()) {
+                totalSize -= blob.getValue().size();
+            }
+        }
+    }
+
+    /**
+     * 统计缓存大小，blobAttributes不为null时同时收集所有内容文件及其属性
+     */
+    private long scan(Map<Path, BasicFileAttributes> blobAttributes) {
+        long size = 0;
+        try (Stream<Path> paths = Files.walk(cacheDir.toPath(), 2)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (attributes.isRegularFile() && !path.toString().endsWith(TEMP_SUFFIX)) {
+                    size += attributes.size();
+                    if (blobAttributes != null) {
+                        blobAttributes.put(path, attributes);
+                    }
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.warning("内容缓存统计失败：" + e);
+        }
+        return size;
+    }
+}
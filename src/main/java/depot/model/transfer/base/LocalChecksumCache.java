@@ -0,0 +1,259 @@
+package depot.model.transfer.base;
+
+import depot.model.base.BaseModel;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+/**
+ * 本地文件校验和缓存：按规范路径记录大小、修改时间、文件标识（inode）和MD5，文件未变化时不再重新计算
+ */
+public class LocalChecksumCache extends BaseModel implements Serializable {
+    private static final long serialVersionUID = 20261018001L;
+    private static final String CACHE_PATH = Paths.get(APP_HOME, "cache").toString();
+    private static final String CACHE_FILE_NAME = "local.checksum";
+    private static final Logger LOGGER = Logger.getLogger("LocalChecksumCache");
+    private static final int MAX_ENTRIES = 500_000;
+    /*计算受磁盘读取限制，线程数不宜过多*/
+    private static final int MAX_PARALLELISM = 4;
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final long PROGRESS_INTERVAL_MILLIS = 100;
+
+    private static LocalChecksumCache instance;
+
+    private transient LinkedHashMap<String, Entry> entries = newEntryMap();
+    private transient boolean changed = false;
+
+    static {
+        File cache = new File(CACHE_PATH);
+        if (!cache.isDirectory()) {
+            cache.mkdirs();
+        }
+    }
+
+    private static class Entry {
+        private final long size;
+        private final long mtime;
+        private final String fileKey;
+        private final String checksum;
+
+        private Entry(long size, long mtime, String fileKey, String checksum) {
+            this.size = size;
+            this.mtime = mtime;
+            this.fileKey = fileKey;
+            this.checksum = checksum;
+        }
+    }
+
+    public interface ProgressHandler {
+        void handle(long processedSize, long totalSize, int finishedCount, int fileCount, String fileName);
+    }
+
+    private LocalChecksumCache() {
+    }
+
+    public static synchronized LocalChecksumCache getInstance() {
+        if (instance == null) {
+            File cacheFile = new File(CACHE_PATH, CACHE_FILE_NAME);
+            if (cacheFile.isFile()) {
+                try (FileInputStream fileInputStream = new FileInputStream(cacheFile);
+                     ObjectInputStream objectInputStream = new ObjectInputStream(new BufferedInputStream(fileInputStream))) {
+                    instance = (LocalChecksumCache) objectInputStream.readObject();
+                } catch (Exception e) {
+                    LOGGER.warning("本地校验和缓存文件读取失败：" + e);
+                }
+            }
+            if (instance == null) {
+                instance = new LocalChecksumCache();
+            }
+        }
+        return instance;
+    }
+
+    private static LinkedHashMap<String, Entry> newEntryMap() {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+    }
+
+    public synchronized void save() throws Exception {
+        if (!changed) {
+            return;
+        }
+        File cacheFile = new File(CACHE_PATH, CACHE_FILE_NAME);
+        File tempFile = new File(cacheFile.getPath() + ".tmp");
+        try (FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+             ObjectOutputStream objectOutputStream = new ObjectOutputStream(new BufferedOutputStream(fileOutputStream))) {
+            objectOutputStream.writeObject(this);
+        }
+        if (!tempFile.renameTo(cacheFile)) {
+            cacheFile.delete();
+            if (!tempFile.renameTo(cacheFile)) {
+                throw new IOException("本地校验和缓存文件保存失败：" + cacheFile);
+            }
+        }
+        changed = false;
+    }
+
+    /**
+     * 获取已缓存的校验和，文件有变化时返回null
+     */
+    public String getCached(File file) {
+        try {
+            String key = file.getCanonicalPath();
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            Entry entry;
+            synchronized (this) {
+                entry = entries.get(key);
+            }
+            if (entry != null && entry.size == attributes.size()
+                    && entry.mtime == attributes.lastModifiedTime().toMillis()
+                    && entry.fileKey.equals(String.valueOf(attributes.fileKey()))) {
+                return entry.checksum;
+            }
+        } catch (IOException e) {
+            LOGGER.fine("文件属性读取失败：" + file + "\n" + e);
+        }
+        return null;
+    }
+
+    /**
+     * 计算多个文件的校验和：已缓存的直接返回，其余在ForkJoinPool中并行计算，大文件优先
+     *
+     * @param cancelled 返回true时停止计算，已算出的结果仍会缓存
+     */
+    public Map<File, String> getChecksums(Collection<File> files, ProgressHandler handler,
+                                          BooleanSupplier cancelled) throws Exception {
+        Map<File, String> checksums = new ConcurrentHashMap<>();
+        List<File> uncachedFiles = new ArrayList<>();
+        for (File file : files) {
+            String checksum = getCached(file);
+            if (checksum != null) {
+                checksums.put(file, checksum);
+            } else {
+                uncachedFiles.add(file);
+            }
+        }
+        if (uncachedFiles.isEmpty()) {
+            return checksums;
+        }
+        uncachedFiles.sort(Comparator.comparingLong(File::length).reversed());
+
+        long totalSize = uncachedFiles.stream().mapToLong(File::length).sum();
+        AtomicLong processedSize = new AtomicLong();
+        AtomicLong lastProgressTime = new AtomicLong();
+        AtomicInteger finishedCount = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(Math.min(MAX_PARALLELISM, Runtime.getRuntime().availableProcessors()));
+        try {
+            pool.submit(() -> uncachedFiles.parallelStream().forEach(file -> {
+                if (cancelled.getAsBoolean()) {
+                    return;
+                }
+                String checksum = computeChecksum(file, cancelled, readLength -> {
+                    long processed = processedSize.addAndGet(readLength);
+                    long now = System.currentTimeMillis();
+                    long last = lastProgressTime.get();
+                    if (handler != null && now - last >= PROGRESS_INTERVAL_MILLIS
+                            && lastProgressTime.compareAndSet(last, now)) {
+                        handler.handle(processed, totalSize,
+                                Math.min(finishedCount.get(), uncachedFiles.size() - 1), uncachedFiles.size(), file.getName());
+                    }
+                });
+                finishedCount.incrementAndGet();
+                if (checksum != null) {
+                    checksums.put(file, checksum);
+                }
+            })).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            pool.shutdownNow();
+            try {
+                save();
+            } catch (Exception e) {
+                LOGGER.warning("本地校验和缓存文件保存失败：" + e);
+            }
+        }
+        return checksums;
+    }
+
+    private interface ReadListener {
+        void read(int readLength);
+    }
+
+    /**
+     * 读取前后都取文件属性，读取期间文件有变化时不缓存
+     */
+    private String computeChecksum(File file, BooleanSupplier cancelled, ReadListener listener) {
+        try {
+            String key = file.getCanonicalPath();
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            try (FileInputStream fileInputStream = new FileInputStream(file)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int readLength;
+                while ((readLength = fileInputStream.read(buffer)) > 0) {
+                    if (cancelled.getAsBoolean()) {
+                        return null;
+                    }
+                    digest.update(buffer, 0, readLength);
+                    listener.read(readLength);
+                }
+            }
+            String checksum = SVNFileUtil.toHexDigest(digest);
+            BasicFileAttributes newAttributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            if (newAttributes.size() == attributes.size()
+                    && newAttributes.lastModifiedTime().equals(attributes.lastModifiedTime())) {
+                synchronized (this) {
+                    entries.put(key, new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(),
+                            String.valueOf(attributes.fileKey()), checksum));
+                    changed = true;
+                }
+            }
+            return checksum;
+        } catch (Exception e) {
+            LOGGER.warning("文件校验和计算失败：" + file + "\n" + e);
+            return null;
+        }
+    }
+
+    /**
+     * 序列化：逐项写入，避免保存LinkedHashMap子类
+     */
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(entries.size());
+        for (Map.Entry<String, Entry> item : entries.entrySet()) {
+            out.writeUTF(item.getKey());
+            out.writeLong(item.getValue().size);
+            out.writeLong(item.getValue().mtime);
+            out.writeUTF(item.getValue().fileKey);
+            out.writeUTF(item.getValue().checksum);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int count = in.readInt();
+        entries = newEntryMap();
+        for (int i = 0; i < count; i++) {
+            String key = in.readUTF();
+            entries.put(key, new Entry(in.readLong(), in.readLong(), in.readUTF(), in.readUTF()));
+        }
+    }
+}
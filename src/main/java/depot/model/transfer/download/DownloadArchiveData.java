@@ -0,0 +1,32 @@
+package depot.model.transfer.download;
+
+import depot.model.transfer.base.BaseTransferData;
+
+/**
+ * 打包下载进度：所有项目依次写入同一个压缩包
+ */
+public class DownloadArchiveData extends BaseTransferData {
+
+    private final boolean sizeKnown;
+    private volatile long receivedSize = 0;
+
+    /**
+     * @param totalSize 所有项目的总大小，未知时为-1
+     */
+    public DownloadArchiveData(long totalSize) {
+        this.totalSize = Math.max(totalSize, 0);
+        this.sizeKnown = totalSize >= 0;
+    }
+
+    public boolean isSizeKnown() {
+        return sizeKnown;
+    }
+
+    public void received(long newReceivedSize) {
+        receivedSize = newReceivedSize;
+    }
+
+    public long getReceivedSize() {
+        return receivedSize;
+    }
+}
@@ -0,0 +1,244 @@
+package depot.model.transfer.download;
+
+import depot.model.base.BaseEditor;
+import depot.model.repository.path.RepositoryPathNode;
+import depot.util.TarOutputStream;
+import org.tmatesoft.svn.core.*;
+import org.tmatesoft.svn.core.internal.wc.SVNErrorManager;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.core.io.diff.SVNDeltaProcessor;
+import org.tmatesoft.svn.core.io.diff.SVNDiffWindow;
+import org.tmatesoft.svn.util.SVNLogType;
+
+import java.io.*;
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
+import java.util.function.ToLongFunction;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 打包下载：差异窗口直接解码写入压缩包，不生成临时文件，内存占用为单个窗口
+ * <p>
+ * 校验方式与DownloadEditor相同，校验失败时抛出异常，由调用方删除不完整的压缩包
+ */
+public class DownloadArchiveEditor extends BaseEditor implements Closeable {
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    public enum Format {
+        ZIP(".zip"), TAR(".tar"), TAR_GZ(".tar.gz");
+
+        private final String suffix;
+
+        Format(String suffix) {
+            this.suffix = suffix;
+        }
+
+        public String getSuffix() {
+            return suffix;
+        }
+    }
+
+    private final RepositoryPathNode parentPathNode;
+    private final Format format;
+    /*tar条目需要预先给出文件大小*/
+    private final ToLongFunction<String> sizeLookup;
+    private final BooleanSupplier cancelled;
+    private final ZipOutputStream zipStream;
+    private final TarOutputStream tarStream;
+    /*条目数据流：解码结束时不关闭压缩包*/
+    private final OutputStream entryStream;
+    private final SVNDeltaProcessor deltaProcessor = new SVNDeltaProcessor();
+    private final long mtime = System.currentTimeMillis();
+    private String lastChecksum;
+    private long receivedTotal;
+    private volatile String currentPath;
+    private volatile long currentReceived;
+    private DownloadEditor.ReceiveListener receiveListener;
+
+    /**
+     * @param sizeLookup 按仓库路径取文件大小，tar格式必须提供
+     */
+    public DownloadArchiveEditor(RepositoryPathNode parentPathNode, OutputStream outputStream, Format format,
+                                 ToLongFunction<String> sizeLookup, BooleanSupplier cancelled) throws IOException {
+        this.parentPathNode = parentPathNode != null ? parentPathNode : new RepositoryPathNode();
+        this.format = format;
+        this.sizeLookup = sizeLookup;
+        this.cancelled = cancelled;
+        OutputStream bufferedStream = new BufferedOutputStream(outputStream, BUFFER_SIZE);
+        if (format == Format.ZIP) {
+            zipStream = new ZipOutputStream(bufferedStream);
+            tarStream = null;
+        } else {
+            zipStream = null;
+            tarStream = new TarOutputStream(format == Format.TAR_GZ ?
+                    new GZIPOutputStream(bufferedStream, BUFFER_SIZE) : bufferedStream);
+        }
+        OutputStream archiveStream = zipStream != null ? zipStream : tarStream;
+        entryStream = new FilterOutputStream(archiveStream) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * 条目名称只由仓库路径得出，与本地文件系统的编码无关
+     */
+    private String getEntryName(String srcPathString) throws SVNException {
+        RepositoryPathNode srcPathNode = RepositoryPathNode.of(srcPathString);
+        if (!srcPathNode.startsWith(parentPathNode) || srcPathNode.equals(parentPathNode)) {
+            throwSVNException("目标路径不在下载范围内：" + srcPathString);
+        }
+        String parentPathString = parentPathNode.toString();
+        return srcPathNode.toString().substring(parentPathString.endsWith("/") ?
+                parentPathString.length() : parentPathString.length() + 1);
+    }
+
+    private void throwSVNException(String msg) throws SVNException {
+        SVNErrorManager.error(SVNErrorMessage.create(SVNErrorCode.RA_SVN_CMD_ERR),
+                new Exception(msg), SVNLogType.DEFAULT);
+    }
+
+    private void throwSVNException(String msg, IOException e) throws SVNException {
+        SVNErrorManager.error(SVNErrorMessage.create(SVNErrorCode.IO_ERROR, msg + "：" + e.getMessage()),
+                e, SVNLogType.DEFAULT);
+    }
+
+    @Override
+    public void addDir(String path, String copyFromPath, long copyFromRevision) throws SVNException {
+        String entryName = getEntryName(path) + "/";
+        try {
+            if (zipStream != null) {
+                ZipEntry zipEntry = new ZipEntry(entryName);
+                zipEntry.setTime(mtime);
+                zipStream.putNextEntry(zipEntry);
+                zipStream.closeEntry();
+            } else {
+                tarStream.putDirEntry(entryName, mtime);
+            }
+        } catch (IOException e) {
+            throwSVNException("压缩包写入失败", e);
+        }
+    }
+
+    @Override
+    public void addFile(String path, String copyFromPath, long copyFromRevision) throws SVNException {
+        if (cancelled.getAsBoolean()) {
+            throw new SVNCancelException();
+        }
+        String entryName = getEntryName(path);
+        lastChecksum = null;
+        try {
+            if (zipStream != null) {
+                ZipEntry zipEntry = new ZipEntry(entryName);
+                zipEntry.setTime(mtime);
+                zipStream.putNextEntry(zipEntry);
+            } else {
+                long size = sizeLookup != null ? sizeLookup.applyAsLong(RepositoryPathNode.of(path).toString()) : -1;
+                if (size < 0) {
+                    throwSVNException("文件大小未知：" + path);
+                }
+                tarStream.putFileEntry(entryName, size, mtime);
+            }
+        } catch (IOException e) {
+            throwSVNException("压缩包写入失败", e);
+        }
+    }
+
+    @Override
+    public void applyTextDelta(String path, String baseChecksum) {
+        currentPath = path;
+        currentReceived = 0;
+        if (receiveListener != null) {
+            receiveListener.handle(receivedTotal);
+        }
+        deltaProcessor.applyTextDelta(SVNFileUtil.DUMMY_IN, entryStream, true);
+    }
+
+    @Override
+    public OutputStream textDeltaChunk(String path, SVNDiffWindow diffWindow) throws SVNException {
+        if (cancelled.getAsBoolean()) {
+            throw new SVNCancelException();
+        }
+        /*按窗口生成的数据量计算进度，复制自已生成部分的窗口新数据很少*/
+        receivedTotal += diffWindow.getTargetViewLength();
+        currentReceived += diffWindow.getTargetViewLength();
+        if (receiveListener != null) {
+            receiveListener.handle(receivedTotal);
+        }
+        return deltaProcessor.textDeltaChunk(diffWindow);
+    }
+
+    @Override
+    public void textDeltaEnd(String path) {
+        lastChecksum = deltaProcessor.textDeltaEnd();
+    }
+
+    @Override
+    public void closeFile(String path, String textChecksum) throws SVNException {
+        if (!Objects.equals(lastChecksum, textChecksum)) {
+            throwSVNException("下载文件校验失败：" + path);
+        }
+        try {
+            if (zipStream != null) {
+                zipStream.closeEntry();
+            } else {
+                tarStream.closeEntry();
+            }
+        } catch (IOException e) {
+            throwSVNException("压缩包写入失败", e);
+        }
+    }
+
+    @Override
+    public SVNCommitInfo closeEdit() {
+        return null;
+    }
+
+    /**
+     * 写入压缩包结尾并关闭
+     */
+    @Override
+    public void close() throws IOException {
+        if (zipStream != null) {
+            zipStream.close();
+        } else {
+            tarStream.close();
+        }
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * 正在下载的文件在仓库中的路径，尚未开始时返回null
+     */
+    public RepositoryPathNode getCurrentPathNode() {
+        String path = currentPath;
+        return path != null ? RepositoryPathNode.of(path) : null;
+    }
+
+    public long getCurrentReceived() {
+        return currentReceived;
+    }
+
+    /**
+     * 正在下载的文件的大小，按创建时给出的sizeLookup取得，未知时返回-1
+     */
+    public long getCurrentSize() {
+        String path = currentPath;
+        return path != null && sizeLookup != null ? sizeLookup.applyAsLong(RepositoryPathNode.of(path).toString()) : -1;
+    }
+
+    public void setReceiveListener(DownloadEditor.ReceiveListener receiveListener) {
+        this.receiveListener = receiveListener;
+    }
+}
@@ -4,22 +4,30 @@ import depot.MainApp;
 import depot.model.base.AppSettings;
 import depot.model.base.BaseEditor;
 import depot.model.repository.path.RepositoryPathNode;
+import org.tmatesoft.svn.core.SVNCancelException;
 import org.tmatesoft.svn.core.SVNCommitInfo;
 import org.tmatesoft.svn.core.SVNErrorCode;
 import org.tmatesoft.svn.core.SVNErrorMessage;
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.internal.wc.SVNErrorManager;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.core.io.SVNRepository;
 import org.tmatesoft.svn.core.io.diff.SVNDeltaProcessor;
 import org.tmatesoft.svn.core.io.diff.SVNDiffWindow;
 import org.tmatesoft.svn.util.SVNLogType;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.OutputStream;
+import java.io.*;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.LinkedList;
 import java.util.Objects;
+import java.util.function.BooleanSupplier;
 
 public class DownloadEditor extends BaseEditor {
     private static final String TEMP_SUFFIX = ("." + MainApp.APP_NAME + "downloading").toLowerCase();
@@ -29,8 +37,16 @@ public class DownloadEditor extends BaseEditor {
     private final File downloadParent;
     private final LinkedList<File> newEntries = new LinkedList<>();
     private String lastChecksum;
-    private long lastReceivedTotal;
+    /*整个任务已接收的数据量，进度线程读取当前文件*/
+    private long receivedTotal;
+    private volatile String currentPath;
+    private volatile long currentReceived;
     private ReceiveListener receiveListener;
+    private DownloadedListener downloadedListener;
+    /*镜像下载：覆盖已有文件，不另取名称*/
+    private boolean mirror = false;
+    /*文件夹为一次update，在文件和窗口之间检查是否已取消*/
+    private volatile BooleanSupplier cancelled = () -> false;
 
     public DownloadEditor(RepositoryPathNode parentPathNode, File downloadParent) {
         this.parentPathNode = parentPathNode != null ? parentPathNode : new RepositoryPathNode();
@@ -69,14 +85,42 @@ public class DownloadEditor extends BaseEditor {
     @Override
     public void openRoot(long revision) throws SVNException {
         if (!downloadParent.isDirectory()) {
-            if (!downloadParent.mkdirs()) {
+            if (!downloadParent.mkdirs() && !downloadParent.isDirectory()) {
                 throwSVNException("下载文件夹创建失败：" + downloadParent.getAbsolutePath());
             }
         }
     }
 
+    /**
+     * 本地已有内容的文件在汇报中列为已存在，其所在文件夹由openDir打开，同样需要创建
+     */
+    @Override
+    public void openDir(String path, long revision) throws SVNException {
+        addDir(path, null, -1);
+    }
+
+    /**
+     * 下载文件夹时创建每一层文件夹，包括空文件夹；已存在的文件夹直接使用
+     */
+    @Override
+    public void addDir(String path, String copyFromPath, long copyFromRevision) throws SVNException {
+        File newDir = getDownloadTarget(path);
+        LinkedList<File> newDirs = new LinkedList<>();
+        for (File dir = newDir; dir != null && !dir.equals(downloadParent) && !dir.isDirectory(); dir = dir.getParentFile()) {
+            newDirs.addFirst(dir);
+        }
+        for (File dir : newDirs) {
+            if (dir.mkdir()) {
+                newEntries.addFirst(dir);
+            } else if (!dir.isDirectory()) {
+                throwSVNException("文件夹创建失败：" + dir.getAbsolutePath());
+            }
+        }
+    }
+
     @Override
     public void addFile(String path, String copyFromPath, long copyFromRevision) throws SVNException {
+        checkCancelled();
         File newTempFile = getTempDownloadTarget(path);
         if (newTempFile.exists()) {
             throwSVNException("临时文件已存在：" + newTempFile.getAbsolutePath());
@@ -87,18 +131,22 @@ public class DownloadEditor extends BaseEditor {
              parent = parent.getParentFile()) {
             newDirs.addFirst(parent);
         }
-        newDirs.forEach(newEntries::addFirst);
         for (File newDir : newDirs) {
-            if (!newDir.mkdir()) {
+            if (newDir.mkdir()) {
+                newEntries.addFirst(newDir);
+            } else if (!newDir.isDirectory()) {
+                // 多个任务同时下载时，文件夹可能已由其他任务创建
                 throwSVNException("文件夹创建失败：" + newDir.getAbsolutePath());
             }
         }
-        newEntries.addFirst(newTempFile);
         try {
-            newTempFile.createNewFile();
+            if (!newTempFile.createNewFile()) {
+                throwSVNException("临时文件已存在：" + newTempFile.getAbsolutePath());
+            }
         } catch (IOException e) {
             throwSVNException("临时文件创建失败：" + newTempFile.getAbsolutePath());
         }
+        newEntries.addFirst(newTempFile);
     }
 
     @Override
@@ -111,19 +159,38 @@ public class DownloadEditor extends BaseEditor {
         if (!newTempFile.isFile()) {
             throwSVNException("临时文件不存在：" + newTempFile.getAbsolutePath());
         }
-        if (newFile.exists()) {
+        /*镜像下载时覆盖已有文件，原内容已不存在，取消时保留新内容；
+        否则不覆盖已有文件：目标已存在时换用下一个名称，由文件系统保证检查和移动是原子的*/
+        boolean replaced = false;
+        if (mirror) {
+            replaced = newFile.exists();
+            try {
+                Files.move(newTempFile.toPath(), newFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throwSVNException("文件下载失败：" + path);
+            }
+        } else {
             File parent = newFile.getParentFile();
             String fileName = newFile.getName();
             int num = 1;
-            while (newFile.exists()) {
-                newFile = new File(parent, getAnotherFileName(fileName, num++));
+            while (true) {
+                try {
+                    Files.move(newTempFile.toPath(), newFile.toPath());
+                    break;
+                } catch (FileAlreadyExistsException e) {
+                    newFile = new File(parent, getAnotherFileName(fileName, num++));
+                } catch (IOException e) {
+                    throwSVNException("文件下载失败：" + path);
+                }
             }
         }
-        newEntries.addFirst(newFile);
-        if (!newTempFile.renameTo(newFile)) {
-            throwSVNException("文件下载失败：" + path);
+        if (!replaced) {
+            newEntries.addFirst(newFile);
         }
         newEntries.remove(newTempFile);
+        if (downloadedListener != null) {
+            downloadedListener.downloaded(path, newFile, textChecksum);
+        }
     }
 
     @Override
@@ -145,18 +212,22 @@ public class DownloadEditor extends BaseEditor {
 
     @Override
     public void applyTextDelta(String path, String baseChecksum) throws SVNException {
-        lastReceivedTotal = 0;
+        currentPath = path;
+        currentReceived = 0;
         if (receiveListener != null) {
-            receiveListener.handle(lastReceivedTotal);
+            receiveListener.handle(receivedTotal);
         }
         deltaProcessor.applyTextDelta((File) null, getTempDownloadTarget(path), true);
     }
 
     @Override
     public OutputStream textDeltaChunk(String path, SVNDiffWindow diffWindow) throws SVNException {
-        lastReceivedTotal += diffWindow.getNewDataLength();
+        checkCancelled();
+        /*按窗口生成的数据量计算进度，复制自已生成部分的窗口新数据很少*/
+        receivedTotal += diffWindow.getTargetViewLength();
+        currentReceived += diffWindow.getTargetViewLength();
         if (receiveListener != null) {
-            receiveListener.handle(lastReceivedTotal);
+            receiveListener.handle(receivedTotal);
         }
         return deltaProcessor.textDeltaChunk(diffWindow);
     }
@@ -166,10 +237,89 @@ public class DownloadEditor extends BaseEditor {
         lastChecksum = deltaProcessor.textDeltaEnd();
     }
 
+    /**
+     * 从本地已有的内容生成文件，与下载的文件一样处理路径和重名
+     */
+    public void copyLocal(String path, File source, String checksum) throws SVNException {
+        addFile(path, null, -1);
+        try {
+            Files.copy(source.toPath(), getTempDownloadTarget(path).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throwSVNException("本地内容复制失败：" + source.getAbsolutePath());
+        }
+        lastChecksum = checksum;
+        closeFile(path, checksum);
+    }
+
+    /**
+     * 从仓库获取文件，与下载的文件一样校验内容、处理路径和重名
+     */
+    public void fetchFile(SVNRepository repository, String path, long revision, String checksum) throws SVNException {
+        addFile(path, null, -1);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            try (OutputStream outputStream = new DigestOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(getTempDownloadTarget(path))), digest)) {
+                repository.getFile(path, revision, null, outputStream);
+            }
+            lastChecksum = SVNFileUtil.toHexDigest(digest);
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throwSVNException("文件获取失败：" + path);
+        }
+        closeFile(path, checksum);
+    }
+
+    /**
+     * 仓库中的文件对应的本地文件
+     */
+    public File getLocalFile(RepositoryPathNode pathNode) throws SVNException {
+        return getDownloadTarget(pathNode.toString());
+    }
+
+    public void setMirror(boolean mirror) {
+        this.mirror = mirror;
+    }
+
+    /**
+     * 已取消时下载中断，由调用方abortEdit删除临时文件
+     */
+    public void setCancelled(BooleanSupplier cancelled) {
+        this.cancelled = cancelled != null ? cancelled : () -> false;
+    }
+
+    private void checkCancelled() throws SVNCancelException {
+        if (cancelled.getAsBoolean()) {
+            throw new SVNCancelException();
+        }
+    }
+
+    public interface DownloadedListener {
+        void downloaded(String path, File file, String checksum);
+    }
+
+    public void setDownloadedListener(DownloadedListener downloadedListener) {
+        this.downloadedListener = downloadedListener;
+    }
+
     public interface ReceiveListener {
+        /**
+         * @param newReceivedTotal 整个任务已接收的数据量
+         */
         void handle(long newReceivedTotal);
     }
 
+    /**
+     * 正在下载的文件在仓库中的路径，尚未开始时返回null
+     */
+    public RepositoryPathNode getCurrentPathNode() {
+        String path = currentPath;
+        return path != null ? RepositoryPathNode.of(path) : null;
+    }
+
+    public long getCurrentReceived() {
+        return currentReceived;
+    }
+
     public void setReceiveListener(ReceiveListener receiveListener) {
         this.receiveListener = receiveListener;
     }
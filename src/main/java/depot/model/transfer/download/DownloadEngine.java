@@ -0,0 +1,215 @@
+package depot.model.transfer.download;
+
+import depot.model.repository.config.RepositorySessionPool;
+import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 并行下载：多个会话同时执行下载任务，小文件往返延迟互相重叠
+ * <p>
+ * 大文件从大到小、小文件从小到大分别排队，同时下载的大文件数有上限，其余会话持续处理小文件；
+ * 同时下载中的数据量受共享额度限制
+ */
+public class DownloadEngine {
+    /*不超过会话池上限，为界面的其他请求留出会话*/
+    private static final int WORKER_COUNT = 6;
+    private static final long LARGE_FILE_SIZE = 16 * 1024 * 1024;
+    private static final int MAX_LARGE_STREAMS = 2;
+    private static final long BYTE_BUDGET = 128 * 1024 * 1024;
+    /*单个任务最多占用的额度，大文件不会占满额度*/
+    private static final long MAX_TASK_BUDGET = BYTE_BUDGET / 4;
+    private static final long PROGRESS_INTERVAL_MILLIS = 100;
+
+    private final SVNRepository repository;
+    private final DownloadTransactionData downloadTransactionData;
+    private final BooleanSupplier cancelled;
+
+    private final ArrayDeque<DownloadTask> largeTasks = new ArrayDeque<>();
+    private final ArrayDeque<DownloadTask> smallTasks = new ArrayDeque<>();
+    private int activeLargeStreams = 0;
+    private long availableBudget = BYTE_BUDGET;
+    private volatile Exception failure;
+    /*调用方已返回或被中断，正在下载的任务同样停止*/
+    private volatile boolean stopped = false;
+
+    public interface ProgressHandler {
+        void handle();
+    }
+
+    public DownloadEngine(SVNRepository repository, DownloadTransactionData downloadTransactionData,
+                          BooleanSupplier cancelled) {
+        this.repository = repository;
+        this.downloadTransactionData = downloadTransactionData;
+        this.cancelled = cancelled;
+        List<DownloadTask> sortedTasks = new ArrayList<>(downloadTransactionData.downloadTasks());
+        sortedTasks.sort(Comparator.comparingLong(DownloadTask::getSize));
+        for (DownloadTask downloadTask : sortedTasks) {
+            if (downloadTask.getSize() >= LARGE_FILE_SIZE) {
+                largeTasks.addFirst(downloadTask);
+            } else {
+                smallTasks.addLast(downloadTask);
+            }
+        }
+    }
+
+    /**
+     * 执行全部任务，调用线程等待期间定时回调handler；任一任务失败时停止其余任务并抛出该异常
+     */
+    public void execute(ProgressHandler handler) throws Exception {
+        int workerCount = Math.min(WORKER_COUNT, downloadTransactionData.lengthOfTasks());
+        if (workerCount == 0) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "DownloadEngine");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CountDownLatch latch = new CountDownLatch(workerCount);
+        try {
+            for (int i = 0; i < workerCount; i++) {
+                executor.execute(() -> {
+                    try {
+                        work();
+                    } catch (Exception e) {
+                        fail(e);
+                    } finally {
+                        latch.countDown();
+                    }
+                });
+            }
+            while (!latch.await(PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                handler.handle();
+            }
+            handler.handle();
+        } finally {
+            /*工作线程在SVNKit的读写中不响应中断，通知任务停止并等待结束，返回后不再写入文件或使用会话*/
+            stopped = true;
+            executor.shutdownNow();
+            awaitTermination(executor);
+        }
+        /*取消时正在下载的任务以SVNCancelException中断*/
+        if (failure != null && !(failure instanceof SVNCancelException)) {
+            throw failure;
+        }
+        if (failure != null || cancelled.getAsBoolean()) {
+            throw new DownloadCancelledException();
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 已取消、已失败或已停止时，不再开始新任务，正在下载的任务在下一个文件或窗口处中断
+     */
+    private boolean isStopped() {
+        return stopped || failure != null || cancelled.getAsBoolean();
+    }
+
+    /**
+     * 工作线程：借用一个会话连续执行多个任务，连接出错时换用新会话
+     */
+    private void work() throws Exception {
+        RepositorySessionPool sessionPool = RepositorySessionPool.of(repository);
+        RepositorySessionPool.Session session = null;
+        try {
+            DownloadTask downloadTask;
+            while ((downloadTask = next()) != null) {
+                try {
+                    if (session == null) {
+                        session = sessionPool.borrow();
+                    }
+                    downloadTransactionData.started(downloadTask);
+                    DownloadTask currentTask = downloadTask;
+                    downloadTask.getEditor().setReceiveListener(newReceivedTotal ->
+                            downloadTransactionData.received(currentTask, newReceivedTotal));
+                    downloadTask.getEditor().setCancelled(this::isStopped);
+                    downloadTask.execute(session.getRepository());
+                    downloadTransactionData.finished(downloadTask, true);
+                } catch (Exception e) {
+                    downloadTransactionData.finished(downloadTask, false);
+                    if (e instanceof SVNException && session != null) {
+                        session.invalidate();
+                    }
+                    throw e;
+                } finally {
+                    release(downloadTask);
+                }
+            }
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    /**
+     * 取下一个任务并占用额度：大文件下载数未满时优先取大文件，大文件额度不足时先取小文件；
+     * 小文件已取完时所有会话都下载大文件
+     */
+    private synchronized DownloadTask next() throws InterruptedException {
+        while (true) {
+            if (isStopped()) {
+                return null;
+            }
+            if (largeTasks.isEmpty() && smallTasks.isEmpty()) {
+                return null;
+            }
+            if (!largeTasks.isEmpty() && (activeLargeStreams < MAX_LARGE_STREAMS || smallTasks.isEmpty())
+                    && getTaskBudget(largeTasks.peekFirst()) <= availableBudget) {
+                DownloadTask downloadTask = largeTasks.pollFirst();
+                activeLargeStreams++;
+                availableBudget -= getTaskBudget(downloadTask);
+                return downloadTask;
+            }
+            if (!smallTasks.isEmpty() && getTaskBudget(smallTasks.peekFirst()) <= availableBudget) {
+                DownloadTask downloadTask = smallTasks.pollFirst();
+                availableBudget -= getTaskBudget(downloadTask);
+                return downloadTask;
+            }
+            // 额度不足，等待其他任务完成；定时醒来检查是否已取消
+            wait(PROGRESS_INTERVAL_MILLIS);
+        }
+    }
+
+    private synchronized void release(DownloadTask downloadTask) {
+        if (downloadTask.getSize() >= LARGE_FILE_SIZE) {
+            activeLargeStreams--;
+        }
+        availableBudget += getTaskBudget(downloadTask);
+        notifyAll();
+    }
+
+    private synchronized void fail(Exception e) {
+        if (failure == null) {
+            failure = e;
+        }
+        notifyAll();
+    }
+
+    private static long getTaskBudget(DownloadTask downloadTask) {
+        return Math.min(Math.max(downloadTask.getSize(), 0), MAX_TASK_BUDGET);
+    }
+}
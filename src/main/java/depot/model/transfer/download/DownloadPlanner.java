@@ -0,0 +1,221 @@
+package depot.model.transfer.download;
+
+import depot.model.repository.index.RepositoryChecksumIndex;
+import depot.model.repository.index.RepositorySnapshot;
+import depot.model.repository.path.RepositoryDirEntry;
+import depot.model.repository.path.RepositoryPathNode;
+import depot.model.transfer.base.BlobCache;
+import depot.model.transfer.base.LocalChecksumCache;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 下载计划：按校验和找出本地已有内容的文件，只从仓库下载不重复的内容
+ * <p>
+ * 内容缓存中已有的文件，以及与本次下载中其他文件内容相同的文件，下载结束后从本地复制；
+ * 计划使用的缓存内容在下载结束前固定，本地内容仍然缺失时改为从仓库获取；
+ * 镜像下载时比较本地文件的大小和校验和，相同的文件跳过，不同的文件下载后覆盖
+ */
+public class DownloadPlanner {
+
+    private final BlobCache blobCache;
+    private final boolean mirror;
+    /*本次已下载的内容：校验和 -> 下载的文件*/
+    private final Map<String, File> downloadedFiles = new ConcurrentHashMap<>();
+    /*已固定的缓存内容，release时解除*/
+    private final Set<String> pinnedChecksums = new HashSet<>();
+    private int localCount = 0;
+    private long localSize = 0;
+    private int unchangedCount = 0;
+    private long unchangedSize = 0;
+
+    public interface ProgressHandler {
+        void handle(int copiedCount, int localCount);
+    }
+
+    /**
+     * @param blobCache 未启用内容缓存时为null
+     * @param mirror    是否镜像下载
+     */
+    public DownloadPlanner(BlobCache blobCache, boolean mirror) {
+        this.blobCache = blobCache;
+        this.mirror = mirror;
+    }
+
+    /**
+     * 标记本地已有内容的文件；需要快照和校验和表的版本一致，否则全部从仓库下载。
+     * 未启用内容缓存和镜像下载时只使用已建立的校验和表，不为此遍历仓库
+     *
+     * @param handler 镜像下载时计算本地文件校验和的进度
+     */
+    public void plan(SVNRepository repository, RepositorySnapshot snapshot, List<DownloadTask> downloadTasks,
+                     LocalChecksumCache.ProgressHandler handler, BooleanSupplier cancelled) throws Exception {
+        for (DownloadTask downloadTask : downloadTasks) {
+            downloadTask.getEditor().setDownloadedListener(this::downloaded);
+            downloadTask.getEditor().setMirror(mirror);
+        }
+        if (snapshot == null) {
+            return;
+        }
+        RepositoryChecksumIndex checksumIndex = RepositoryDirEntry.getChecksumIndex(repository);
+        if (blobCache == null && !mirror && checksumIndex.getRevision() < 0) {
+            return;
+        }
+        Map<RepositoryPathNode, String> checksumMap = RepositoryDirEntry.getChecksumMap(repository);
+        long revision = checksumIndex.getRevision();
+        if (revision != snapshot.getRevision()) {
+            return;
+        }
+        Map<RepositoryPathNode, DownloadTask> taskMap = new HashMap<>();
+        for (DownloadTask downloadTask : downloadTasks) {
+            taskMap.put(downloadTask.getPathNode(), downloadTask);
+        }
+        /*按路径顺序处理，重复内容中路径最前的文件从仓库下载*/
+        TreeMap<String, String> sortedChecksums = new TreeMap<>();
+        for (Map.Entry<RepositoryPathNode, String> item : checksumMap.entrySet()) {
+            sortedChecksums.put(item.getKey().toString(), item.getValue());
+        }
+        Map<RepositoryPathNode, DownloadTask> fileTasks = new LinkedHashMap<>();
+        for (String path : sortedChecksums.keySet()) {
+            RepositoryPathNode filePathNode = RepositoryPathNode.of(path);
+            for (RepositoryPathNode pathNode = filePathNode; pathNode != null; pathNode = pathNode.getParent()) {
+                DownloadTask downloadTask = taskMap.get(pathNode);
+                if (downloadTask != null) {
+                    fileTasks.put(filePathNode, downloadTask);
+                    break;
+                }
+            }
+        }
+
+        /*本地相同的文件同时作为相同内容的复制来源*/
+        Set<RepositoryPathNode> unchangedFiles = mirror ?
+                planUnchangedFiles(snapshot, checksumMap, fileTasks, revision, handler, cancelled) : Collections.emptySet();
+        Set<String> plannedChecksums = new HashSet<>(downloadedFiles.keySet());
+        for (Map.Entry<RepositoryPathNode, DownloadTask> item : fileTasks.entrySet()) {
+            RepositoryPathNode filePathNode = item.getKey();
+            DownloadTask downloadTask = item.getValue();
+            if (unchangedFiles.contains(filePathNode)) {
+                continue;
+            }
+            String checksum = checksumMap.get(filePathNode);
+            /*固定缓存内容，避免本次下载写入缓存时被淘汰*/
+            if (plannedChecksums.add(checksum) && !pin(checksum)) {
+                continue;
+            }
+            long size = Math.max(snapshot.getSize(filePathNode.toString()), 0);
+            downloadTask.addLocalFile(filePathNode, checksum, size, revision);
+            localCount++;
+            localSize += size;
+        }
+    }
+
+    /**
+     * 镜像下载：大小相同的本地文件再比较校验和，本地校验和按路径、大小和修改时间缓存
+     */
+    private Set<RepositoryPathNode> planUnchangedFiles(RepositorySnapshot snapshot,
+                                                       Map<RepositoryPathNode, String> checksumMap,
+                                                       Map<RepositoryPathNode, DownloadTask> fileTasks, long revision,
+                                                       LocalChecksumCache.ProgressHandler handler,
+                                                       BooleanSupplier cancelled) throws Exception {
+        Map<File, RepositoryPathNode> candidates = new LinkedHashMap<>();
+        for (Map.Entry<RepositoryPathNode, DownloadTask> item : fileTasks.entrySet()) {
+            File localFile = item.getValue().getEditor().getLocalFile(item.getKey());
+            if (localFile.isFile() && localFile.length() == snapshot.getSize(item.getKey().toString())) {
+                candidates.put(localFile, item.getKey());
+            }
+        }
+        Set<RepositoryPathNode> unchangedFiles = new HashSet<>();
+        if (candidates.isEmpty()) {
+            return unchangedFiles;
+        }
+        Map<File, String> localChecksums = LocalChecksumCache.getInstance().getChecksums(candidates.keySet(), handler, cancelled);
+        if (cancelled.getAsBoolean()) {
+            throw new DownloadCancelledException();
+        }
+        for (Map.Entry<File, RepositoryPathNode> item : candidates.entrySet()) {
+            RepositoryPathNode filePathNode = item.getValue();
+            String checksum = checksumMap.get(filePathNode);
+            if (checksum.equals(localChecksums.get(item.getKey()))) {
+                fileTasks.get(filePathNode).addUnchangedFile(filePathNode, item.getKey().length(), revision);
+                unchangedFiles.add(filePathNode);
+                unchangedCount++;
+                unchangedSize += item.getKey().length();
+                downloadedFiles.putIfAbsent(checksum, item.getKey());
+            }
+        }
+        return unchangedFiles;
+    }
+
+    private boolean pin(String checksum) {
+        if (blobCache == null || blobCache.pin(checksum) == null) {
+            return false;
+        }
+        pinnedChecksums.add(checksum);
+        return true;
+    }
+
+    /**
+     * 解除固定的缓存内容，下载结束或失败后调用
+     */
+    public void release() {
+        if (blobCache != null) {
+            pinnedChecksums.forEach(blobCache::unpin);
+        }
+        pinnedChecksums.clear();
+    }
+
+    private void downloaded(String path, File file, String checksum) {
+        downloadedFiles.putIfAbsent(checksum, file);
+        if (blobCache != null) {
+            blobCache.put(checksum, file);
+        }
+    }
+
+    /**
+     * 下载结束后复制本地已有内容的文件，优先使用本次下载的文件；本地内容缺失时从仓库获取
+     */
+    public void copyLocalFiles(SVNRepository repository, List<DownloadTask> downloadTasks, BooleanSupplier cancelled,
+                               ProgressHandler handler) throws Exception {
+        int copiedCount = 0;
+        for (DownloadTask downloadTask : downloadTasks) {
+            if (downloadTask.getLocalFiles().isEmpty()) {
+                continue;
+            }
+            if (cancelled.getAsBoolean()) {
+                throw new DownloadCancelledException();
+            }
+            handler.handle(copiedCount, localCount);
+            downloadTask.copyLocalFiles(repository, this::getSource);
+            copiedCount += downloadTask.getLocalFiles().size();
+        }
+        handler.handle(copiedCount, localCount);
+    }
+
+    private File getSource(String checksum) {
+        File file = downloadedFiles.get(checksum);
+        if (file != null && file.isFile()) {
+            return file;
+        }
+        return blobCache != null ? blobCache.get(checksum) : null;
+    }
+
+    public int getLocalCount() {
+        return localCount;
+    }
+
+    public long getLocalSize() {
+        return localSize;
+    }
+
+    public int getUnchangedCount() {
+        return unchangedCount;
+    }
+
+    public long getUnchangedSize() {
+        return unchangedSize;
+    }
+}
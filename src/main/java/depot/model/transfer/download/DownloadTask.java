@@ -3,41 +3,85 @@ package depot.model.transfer.download;
 import depot.model.repository.path.RepositoryPathNode;
 import org.tmatesoft.svn.core.SVNDepth;
 import org.tmatesoft.svn.core.SVNDirEntry;
-import org.tmatesoft.svn.core.io.ISVNReporterBaton;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.io.ISVNReporter;
 import org.tmatesoft.svn.core.io.SVNRepository;
 
 import java.io.File;
+import java.util.*;
+import java.util.function.Function;
 
+/**
+ * 下载任务：文件或整个文件夹，一次update获取全部内容
+ * <p>
+ * 本地已有内容的文件在汇报中列为已存在，服务端不再发送，下载结束后从本地复制；
+ * 镜像下载时本地相同的文件同样列为已存在，保持不变
+ */
 public class DownloadTask {
 
     private final RepositoryPathNode pathNode;
     private final SVNDirEntry dirEntry;
-    private final ISVNReporterBaton reporter;
+    /*文件夹为所有文件的总大小，未知时为-1*/
+    private long size;
     private final DownloadEditor editor;
 
+    /*本地已有内容的文件：仓库路径 -> 校验和，只在固定版本下载时使用*/
+    private final Map<RepositoryPathNode, String> localFiles = new LinkedHashMap<>();
+    /*镜像下载时本地相同的文件，不下载也不复制*/
+    private final Set<RepositoryPathNode> unchangedFiles = new HashSet<>();
+    private long localRevision = -1;
+
     public DownloadTask(RepositoryPathNode pathNode, SVNDirEntry dirEntry, RepositoryPathNode parentPathNode) {
         this(pathNode, dirEntry, parentPathNode, null);
     }
 
     public DownloadTask(RepositoryPathNode pathNode, SVNDirEntry dirEntry, RepositoryPathNode parentPathNode, File downloadParent) {
+        this(pathNode, dirEntry, parentPathNode, downloadParent, dirEntry.getSize());
+    }
+
+    public DownloadTask(RepositoryPathNode pathNode, SVNDirEntry dirEntry, RepositoryPathNode parentPathNode,
+                        File downloadParent, long size) {
         this.pathNode = pathNode;
         this.dirEntry = dirEntry;
-        this.reporter = reporter -> {
-            try {
-                reporter.setPath("", null, dirEntry.getRevision(), SVNDepth.INFINITY, true);
-                reporter.deletePath("");
-                reporter.finishReport();
-            } catch (Exception e) {
-                reporter.abortReport();
-                throw e;
-            }
-        };
+        this.size = dirEntry.getKind() == SVNNodeKind.DIR ? size : dirEntry.getSize();
         this.editor = new DownloadEditor(parentPathNode, downloadParent);
     }
 
+    /**
+     * 标记本地已有内容的文件，任务改为下载revision版本，校验和必须是该版本的内容
+     */
+    public void addLocalFile(RepositoryPathNode filePathNode, String checksum, long fileSize, long revision) {
+        localFiles.put(filePathNode, checksum);
+        localRevision = revision;
+        if (size >= 0) {
+            size = Math.max(size - fileSize, 0);
+        }
+    }
+
+    /**
+     * 标记本地相同的文件，同样固定为revision版本
+     */
+    public void addUnchangedFile(RepositoryPathNode filePathNode, long fileSize, long revision) {
+        unchangedFiles.add(filePathNode);
+        localRevision = revision;
+        if (size >= 0) {
+            size = Math.max(size - fileSize, 0);
+        }
+    }
+
+    public Map<RepositoryPathNode, String> getLocalFiles() {
+        return localFiles;
+    }
+
     public void execute(SVNRepository repository) throws Exception {
+        if (!isDir() && (localFiles.containsKey(pathNode) || unchangedFiles.contains(pathNode))) {
+            // 文件内容本地已有，不需要下载
+            return;
+        }
         try {
-            repository.update(-1, pathNode.toString(), true, reporter, editor);
+            repository.update(localRevision, pathNode.toString(), true,
+                    this::report, editor);
         } catch (Exception e) {
             try {
                 editor.textDeltaEnd(pathNode.toString());
@@ -51,12 +95,74 @@ public class DownloadTask {
         }
     }
 
+    /**
+     * 没有本地文件时汇报目标不存在，服务端发送全部内容；
+     * 否则汇报目标为空文件夹，本地已有的文件及其上层文件夹为已存在，按深度优先顺序汇报
+     */
+    private void report(ISVNReporter reporter) throws SVNException {
+        try {
+            if (localFiles.isEmpty() && unchangedFiles.isEmpty()) {
+                reporter.setPath("", null, dirEntry.getRevision(), SVNDepth.INFINITY, true);
+                reporter.deletePath("");
+            } else {
+                reporter.setPath("", null, localRevision, SVNDepth.INFINITY, true);
+                TreeMap<String, Boolean> reportPaths = new TreeMap<>(
+                        Comparator.comparing(reportPath -> reportPath.replace('/', '\0')));
+                Set<RepositoryPathNode> presentFiles = new HashSet<>(localFiles.keySet());
+                presentFiles.addAll(unchangedFiles);
+                for (RepositoryPathNode filePathNode : presentFiles) {
+                    reportPaths.put(pathNode.relativize(filePathNode.getPath()).toString().replace('\\', '/'), false);
+                    for (RepositoryPathNode parent = filePathNode.getParent();
+                         parent != null && !parent.equals(pathNode); parent = parent.getParent()) {
+                        reportPaths.put(pathNode.relativize(parent.getPath()).toString().replace('\\', '/'), true);
+                    }
+                }
+                for (Map.Entry<String, Boolean> item : reportPaths.entrySet()) {
+                    reporter.setPath(item.getKey(), null, localRevision, SVNDepth.INFINITY, item.getValue());
+                }
+            }
+            reporter.finishReport();
+        } catch (Exception e) {
+            reporter.abortReport();
+            throw e;
+        }
+    }
+
+    /**
+     * 下载结束后生成本地已有内容的文件，本地内容已不存在时从仓库获取同一版本
+     *
+     * @param sourceLookup 按校验和查找本地内容，找不到时返回null
+     */
+    public void copyLocalFiles(SVNRepository repository, Function<String, File> sourceLookup) throws Exception {
+        try {
+            for (Map.Entry<RepositoryPathNode, String> item : localFiles.entrySet()) {
+                File source = sourceLookup.apply(item.getValue());
+                if (source != null) {
+                    editor.copyLocal(item.getKey().toString(), source, item.getValue());
+                } else {
+                    editor.fetchFile(repository, item.getKey().toString(), localRevision, item.getValue());
+                }
+            }
+        } catch (Exception e) {
+            editor.abortEdit();
+            throw e;
+        }
+    }
+
+    public RepositoryPathNode getPathNode() {
+        return pathNode;
+    }
+
     public String getName() {
         return pathNode.getName();
     }
 
     public long getSize() {
-        return dirEntry.getSize();
+        return size;
+    }
+
+    public boolean isDir() {
+        return dirEntry.getKind() == SVNNodeKind.DIR;
     }
 
     public DownloadEditor getEditor() {
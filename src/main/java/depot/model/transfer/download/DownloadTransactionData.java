@@ -3,14 +3,23 @@ package depot.model.transfer.download;
 import depot.model.transfer.base.BaseTransferData;
 import javafx.concurrent.Task;
 
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * 下载进度：多个任务同时下载，按任务汇总已接收的数据量
+ */
 public class DownloadTransactionData extends BaseTransferData {
 
     private final LinkedList<DownloadTask> downloadTasks;
-    private final Map<DownloadTask, Long> prevSizeMap = new HashMap<>();
+    private boolean sizeKnown = true;
+    private final AtomicLong receivedSize = new AtomicLong();
+    private final AtomicInteger finishedCount = new AtomicInteger();
+    /*下载中的任务及其已接收的数据量*/
+    private final Map<DownloadTask, Long> activeTasks = new ConcurrentHashMap<>();
 
     public DownloadTransactionData(LinkedList<DownloadTask> downloadTasks,
                                    Task<Void> task) throws Exception {
@@ -20,11 +29,21 @@ public class DownloadTransactionData extends BaseTransferData {
             if (task.isCancelled()) {
                 throw new DownloadCancelledException();
             }
-            prevSizeMap.put(downloadTask, totalSize);
-            totalSize += downloadTask.getSize();
+            if (downloadTask.getSize() >= 0) {
+                totalSize += downloadTask.getSize();
+            } else {
+                sizeKnown = false;
+            }
         }
     }
 
+    /**
+     * 是否所有任务的大小都已知，否则总大小不准确
+     */
+    public boolean isSizeKnown() {
+        return sizeKnown;
+    }
+
     public LinkedList<DownloadTask> downloadTasks() {
         return downloadTasks;
     }
@@ -33,11 +52,53 @@ public class DownloadTransactionData extends BaseTransferData {
         return downloadTasks.size();
     }
 
-    public int indexOfTask(DownloadTask downloadTask) {
-        return downloadTasks.indexOf(downloadTask);
+    public void started(DownloadTask downloadTask) {
+        activeTasks.put(downloadTask, 0L);
+    }
+
+    public void received(DownloadTask downloadTask, long newReceivedTotal) {
+        Long lastReceivedTotal = activeTasks.put(downloadTask, newReceivedTotal);
+        receivedSize.addAndGet(newReceivedTotal - (lastReceivedTotal != null ? lastReceivedTotal : 0));
+    }
+
+    /**
+     * 任务结束：失败的任务扣除已计入的数据量
+     */
+    public void finished(DownloadTask downloadTask, boolean success) {
+        Long lastReceivedTotal = activeTasks.remove(downloadTask);
+        if (success) {
+            finishedCount.incrementAndGet();
+        } else if (lastReceivedTotal != null) {
+            receivedSize.addAndGet(-lastReceivedTotal);
+        }
+    }
+
+    public long getReceivedSize() {
+        return receivedSize.get();
+    }
+
+    public int getFinishedCount() {
+        return finishedCount.get();
+    }
+
+    /**
+     * 下载中最大的任务，用于显示单个文件的进度
+     */
+    public DownloadTask getLargestActiveTask() {
+        DownloadTask largestTask = null;
+        for (DownloadTask downloadTask : activeTasks.keySet()) {
+            if (largestTask == null || downloadTask.getSize() > largestTask.getSize()) {
+                largestTask = downloadTask;
+            }
+        }
+        return largestTask;
+    }
+
+    public long getReceived(DownloadTask downloadTask) {
+        return activeTasks.getOrDefault(downloadTask, 0L);
     }
 
-    public long getPrevSize(DownloadTask downloadTask) {
-        return prevSizeMap.getOrDefault(downloadTask, 0L);
+    public int countActiveTasks() {
+        return activeTasks.size();
     }
 }
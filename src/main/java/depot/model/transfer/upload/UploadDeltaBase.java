@@ -0,0 +1,146 @@
+package depot.model.transfer.upload;
+
+import depot.model.base.BaseModel;
+import depot.model.repository.config.RepositorySessionPool;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+import java.io.*;
+import java.nio.file.Paths;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+/**
+ * 增量上传的基础版本：从仓库获取已有文件的最新内容保存为临时文件，上传时按相同偏移逐窗口生成差异，
+ * 文件只有少量修改或追加时，只需发送变化的部分
+ */
+public class UploadDeltaBase extends BaseModel implements Closeable {
+    private static final String TEMP_PATH = Paths.get(APP_HOME, "temp").toString();
+    private static final Logger LOGGER = Logger.getLogger("UploadDeltaBase");
+    /*小文件直接完整上传*/
+    public static final long MIN_FILE_SIZE = 1024 * 1024;
+    private static final long PROGRESS_INTERVAL_MILLIS = 100;
+
+    private final File file;
+    private final String checksum;
+    private final InputStream inputStream;
+    private long offset = 0;
+
+    static {
+        File temp = new File(TEMP_PATH);
+        if (!temp.isDirectory()) {
+            temp.mkdirs();
+        }
+    }
+
+    public interface FetchListener {
+        void fetched(long fetchedSize);
+    }
+
+    private UploadDeltaBase(File file, String checksum) throws IOException {
+        this.file = file;
+        this.checksum = checksum;
+        this.inputStream = new BufferedInputStream(new FileInputStream(file));
+    }
+
+    /**
+     * 获取基础版本，使用会话池中的独立会话，不影响正在提交的主会话；获取失败时返回null，改为完整上传
+     *
+     * @param cancelled 返回true时停止获取，并抛出UploadCancelledException
+     */
+    public static UploadDeltaBase fetch(SVNRepository repository, String path, FetchListener listener,
+                                        BooleanSupplier cancelled) throws UploadCancelledException {
+        File tempFile = null;
+        try (RepositorySessionPool.Session session = RepositorySessionPool.of(repository).borrow()) {
+            tempFile = File.createTempFile("upload", ".base", new File(TEMP_PATH));
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            try (OutputStream outputStream = new DigestOutputStream(new BufferedOutputStream(
+                    new ProgressOutputStream(new FileOutputStream(tempFile), listener, cancelled)), digest)) {
+                session.getRepository().getFile(path, -1, null, outputStream);
+            }
+            return new UploadDeltaBase(tempFile, SVNFileUtil.toHexDigest(digest));
+        } catch (Exception e) {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+            if (cancelled.getAsBoolean()) {
+                throw new UploadCancelledException();
+            }
+            LOGGER.warning("基础版本获取失败，改为完整上传：" + path + "\n" + e);
+            return null;
+        }
+    }
+
+    /**
+     * 仓库中已有内容的校验和，作为applyTextDelta的baseChecksum，提交时服务器据此确认基础版本一致
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * 读取与目标窗口等长的基础版本窗口，基础版本已读完时返回0
+     */
+    public int readWindow(byte[] buffer, int length) throws IOException {
+        int readTotal = 0;
+        while (readTotal < length) {
+            int readLength = inputStream.read(buffer, readTotal, length - readTotal);
+            if (readLength < 0) {
+                break;
+            }
+            readTotal += readLength;
+        }
+        offset += readTotal;
+        return readTotal;
+    }
+
+    @Override
+    public void close() {
+        try {
+            inputStream.close();
+        } catch (IOException e) {
+            LOGGER.fine("基础版本文件关闭失败：" + e);
+        }
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    private static class ProgressOutputStream extends FilterOutputStream {
+        private final FetchListener listener;
+        private final BooleanSupplier cancelled;
+        private long fetchedSize = 0;
+        private long lastProgressTime = 0;
+
+        private ProgressOutputStream(OutputStream out, FetchListener listener, BooleanSupplier cancelled) {
+            super(out);
+            this.listener = listener;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (cancelled.getAsBoolean()) {
+                throw new InterruptedIOException("上传已取消");
+            }
+            out.write(b, off, len);
+            fetchedSize += len;
+            long now = System.currentTimeMillis();
+            if (listener != null && now - lastProgressTime >= PROGRESS_INTERVAL_MILLIS) {
+                lastProgressTime = now;
+                listener.fetched(fetchedSize);
+            }
+        }
+    }
+}
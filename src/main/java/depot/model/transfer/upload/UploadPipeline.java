@@ -0,0 +1,174 @@
+package depot.model.transfer.upload;
+
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 上传流水线：读取线程 → 校验和线程 → 提交线程（调用方）
+ * <p>
+ * 读取线程按上传顺序依次读取所有文件，窗口缓冲区循环复用，空闲缓冲区用完时读取线程等待；
+ * 当前文件发送期间即开始读取下一个文件，读取、计算校验和与发送同时进行
+ */
+public class UploadPipeline implements AutoCloseable {
+    public static final int WINDOW_SIZE = 64 * 1024;
+    /*预读最多RING_SIZE个窗口*/
+    private static final int RING_SIZE = 32;
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+
+    private final List<File> files;
+    private final BooleanSupplier cancelled;
+    private final BlockingQueue<byte[]> freeBuffers = new ArrayBlockingQueue<>(RING_SIZE);
+    private final BlockingQueue<Window> readWindows = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Window> hashedWindows = new LinkedBlockingQueue<>();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "UploadPipeline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 文件的一个窗口；文件结束时为结束标记，带有整个文件的校验和
+     */
+    public static class Window {
+        private final File file;
+        private final byte[] buffer;
+        private final int length;
+        private final boolean end;
+        private String checksum;
+        private Exception error;
+
+        private Window(File file, byte[] buffer, int length, boolean end) {
+            this.file = file;
+            this.buffer = buffer;
+            this.length = length;
+            this.end = end;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public byte[] getBuffer() {
+            return buffer;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public boolean isEnd() {
+            return end;
+        }
+
+        public String getChecksum() {
+            return checksum;
+        }
+    }
+
+    public UploadPipeline(List<File> files, BooleanSupplier cancelled) {
+        this.files = files;
+        this.cancelled = cancelled;
+        for (int i = 0; i < RING_SIZE; i++) {
+            freeBuffers.add(new byte[WINDOW_SIZE]);
+        }
+        executor.execute(this::read);
+        executor.execute(this::hash);
+    }
+
+    /**
+     * 获取下一个窗口，窗口必须属于file，即调用顺序与文件列表一致；窗口用完后调用release归还缓冲区
+     */
+    public Window take(File file) throws Exception {
+        Window window;
+        while ((window = hashedWindows.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+            if (cancelled.getAsBoolean()) {
+                throw new UploadCancelledException();
+            }
+        }
+        if (window.error != null) {
+            throw window.error;
+        }
+        if (!window.file.equals(file)) {
+            throw new IllegalStateException("上传顺序不一致：" + file + "，" + window.file);
+        }
+        return window;
+    }
+
+    public void release(Window window) {
+        if (window.buffer != null) {
+            freeBuffers.offer(window.buffer);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void read() {
+        for (File file : files) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                while (true) {
+                    byte[] buffer = freeBuffers.take();
+                    ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+                    /*尽量读满窗口*/
+                    int readLength;
+                    do {
+                        readLength = channel.read(byteBuffer);
+                    } while (readLength >= 0 && byteBuffer.hasRemaining());
+                    if (byteBuffer.position() == 0) {
+                        freeBuffers.offer(buffer);
+                        break;
+                    }
+                    readWindows.put(new Window(file, buffer, byteBuffer.position(), false));
+                    if (byteBuffer.hasRemaining()) {
+                        break;
+                    }
+                }
+                readWindows.put(new Window(file, null, 0, true));
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                Window errorWindow = new Window(file, null, 0, true);
+                errorWindow.error = e;
+                readWindows.offer(errorWindow);
+                return;
+            }
+        }
+    }
+
+    private void hash() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            while (true) {
+                Window window = readWindows.take();
+                if (window.error == null) {
+                    if (window.end) {
+                        window.checksum = SVNFileUtil.toHexDigest(digest);
+                        digest.reset();
+                    } else {
+                        digest.update(window.buffer, 0, window.length);
+                    }
+                }
+                hashedWindows.put(window);
+                if (window.error != null) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // 已关闭
+        } catch (Exception e) {
+            Window errorWindow = new Window(null, null, 0, true);
+            errorWindow.error = e;
+            hashedWindows.offer(errorWindow);
+        }
+    }
+}
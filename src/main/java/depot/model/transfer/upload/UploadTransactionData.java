@@ -1,9 +1,13 @@
 package depot.model.transfer.upload;
 
 import com.google.common.base.Preconditions;
+import depot.model.repository.index.RepositoryChecksumIndex;
+import depot.model.repository.index.RepositorySnapshot;
+import depot.model.repository.index.RepositorySubtree;
 import depot.model.repository.path.RepositoryDirEntry;
+import depot.model.repository.path.RepositoryPathNode;
 import depot.model.transfer.base.BaseTransferData;
-import depot.util.FileUtil;
+import depot.model.transfer.base.LocalChecksumCache;
 import javafx.concurrent.Task;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -11,7 +15,6 @@ import lombok.Setter;
 import lombok.experimental.Accessors;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.tmatesoft.svn.core.SVNDirEntry;
 import org.tmatesoft.svn.core.SVNNodeKind;
 import org.tmatesoft.svn.core.io.SVNRepository;
 
@@ -42,14 +45,38 @@ public class UploadTransactionData extends BaseTransferData {
     @Setter
     private ChecksumProgressHandler checksumProgressHandler;
 
+    /*仓库中已有相同内容的文件，由服务端复制，不上传内容*/
+    @Getter
+    private final List<File> copyFileList = new LinkedList<>();
+    private final Map<File, RepositoryPathNode> copySourceMap = new HashMap<>();
+    @Getter
+    private long copyRevision = -1;
+    @Getter
+    private long copiedSize = 0;
+
     private final Map<File, SVNNodeKind> kindMap = new HashMap<>();
     private final Map<File, Long> fileSizeMap = new HashMap<>();
     private final Map<File, Long> prevSizeMap = new HashMap<>();
 
+    /*已同步到最新版本的快照，否则只获取上传目标的子树*/
+    private RepositorySnapshot snapshot;
+    private RepositorySubtree subtree;
+    private Map<RepositoryPathNode, String> checksumMap;
+
+    /**
+     * 上传前检查：已有最新快照时直接使用，否则一次获取上传目标所在子树的元数据，不再逐项查询仓库
+     */
     public UploadTransactionData build() throws Exception {
         Preconditions.checkNotNull(repository);
         Preconditions.checkNotNull(uploadPathMap);
 
+        long latestRevision = repository.getLatestRevision();
+        snapshot = RepositoryDirEntry.getSnapshot(repository);
+        if (!snapshot.isBuilt() || snapshot.getRevision() != latestRevision) {
+            snapshot = null;
+            subtree = RepositorySubtree.fetch(repository, getTargetPathNode(), latestRevision);
+        }
+
         HashSet<String> uploadPaths = new HashSet<>();
         if (CollectionUtils.isNotEmpty(dirList)) {
             for (Iterator<File> iterator = dirList.iterator(); iterator.hasNext(); ) {
@@ -65,7 +92,7 @@ public class UploadTransactionData extends BaseTransferData {
                 Preconditions.checkArgument(StringUtils.isNotBlank(uploadPath));
                 Preconditions.checkArgument(uploadPaths.add(uploadPath), "多个相同的上传路径：" + uploadPath);
 
-                SVNNodeKind kind = repository.checkPath(uploadPath, -1);
+                SVNNodeKind kind = getEntryKind(RepositoryPathNode.of(uploadPath).toString());
                 Preconditions.checkArgument(kind != SVNNodeKind.FILE, "存在同名文件，不能上传文件夹：" + dir.getCanonicalPath());
 
                 if (kind == SVNNodeKind.DIR) {
@@ -79,10 +106,12 @@ public class UploadTransactionData extends BaseTransferData {
         }
         totalSize = 0;
         if (CollectionUtils.isNotEmpty(fileList)) {
-            int fileIdx = 0, fileCount = fileList.size();
-            for (Iterator<File> iterator = fileList.iterator(); iterator.hasNext(); fileIdx++) {
-                File file = iterator.next();
-
+            /*相同大小且仓库中有校验和的文件，需要计算本地校验和*/
+            Map<File, String> entryChecksums = new LinkedHashMap<>();
+            /*大小与仓库中某个文件相同的其他文件，也计算校验和，查找可复制的文件*/
+            Set<Long> repositoryFileSizes = snapshot != null ? snapshot.getFileSizes() : subtree.getFileSizes();
+            Set<File> checksumFiles = new LinkedHashSet<>();
+            for (File file : fileList) {
                 if (task != null && task.isCancelled()) {
                     throw new UploadCancelledException();
                 }
@@ -93,31 +122,54 @@ public class UploadTransactionData extends BaseTransferData {
                 Preconditions.checkArgument(StringUtils.isNotBlank(uploadPath));
                 Preconditions.checkArgument(uploadPaths.add(uploadPath), "多个相同的上传路径：" + uploadPath);
 
-                SVNDirEntry entry = RepositoryDirEntry.getEntry(repository, uploadPath);
-                if (entry != null) {
-                    Preconditions.checkArgument(entry.getKind() != SVNNodeKind.DIR, "存在同名文件夹，不能上传文件：" + file.getCanonicalPath());
-
-                    if (entry.getKind() == SVNNodeKind.FILE) {
-                        if (file.length() == entry.getSize()) {
-                            // 相同大小文件，计算校验和，避免重复上传
-                            String entryChecksum = RepositoryDirEntry.getChecksum(repository, uploadPath);
-                            if (StringUtils.isNotBlank(entryChecksum)) {
-                                int itemIdx = fileIdx;
-                                String fileChecksum = FileUtil.getChecksum(file, (pSize, tSize) -> {
-                                    if (checksumProgressHandler != null) {
-                                        checksumProgressHandler.handle(pSize, tSize,
-                                                itemIdx, fileCount, file.getName());
-                                    }
-                                });
-                                if (entryChecksum.equals(fileChecksum)) {
-                                    // 重复文件不需要上传
-                                    iterator.remove();
-                                    continue;
-                                }
-                            }
+                RepositoryPathNode uploadPathNode = RepositoryPathNode.of(uploadPath);
+                SVNNodeKind kind = getEntryKind(uploadPathNode.toString());
+                if (kind != SVNNodeKind.NONE) {
+                    Preconditions.checkArgument(kind != SVNNodeKind.DIR, "存在同名文件夹，不能上传文件：" + file.getCanonicalPath());
+
+                    if (kind == SVNNodeKind.FILE && file.length() == getEntrySize(uploadPathNode.toString())) {
+                        String entryChecksum = getChecksumMap().get(uploadPathNode);
+                        if (StringUtils.isNotBlank(entryChecksum)) {
+                            entryChecksums.put(file, entryChecksum);
                         }
                     }
-                    kindMap.put(file, entry.getKind());
+                    kindMap.put(file, kind);
+                }
+                if (file.length() > 0 && repositoryFileSizes.contains(file.length())) {
+                    checksumFiles.add(file);
+                }
+            }
+            checksumFiles.addAll(entryChecksums.keySet());
+
+            Map<File, String> fileChecksums = LocalChecksumCache.getInstance().getChecksums(checksumFiles,
+                    (processedSize, checksumTotalSize, finishedCount, fileCount, fileName) -> {
+                        if (checksumProgressHandler != null) {
+                            checksumProgressHandler.handle(processedSize, checksumTotalSize, finishedCount, fileCount, fileName);
+                        }
+                    }, () -> task != null && task.isCancelled());
+            if (task != null && task.isCancelled()) {
+                throw new UploadCancelledException();
+            }
+
+            Map<String, RepositoryPathNode> copySources = getCopySources(fileChecksums, entryChecksums);
+
+            for (Iterator<File> iterator = fileList.iterator(); iterator.hasNext(); ) {
+                File file = iterator.next();
+                String entryChecksum = entryChecksums.get(file);
+                String fileChecksum = fileChecksums.get(file);
+                if (entryChecksum != null && entryChecksum.equals(fileChecksum)) {
+                    // 重复文件不需要上传
+                    iterator.remove();
+                    kindMap.remove(file);
+                    continue;
+                }
+                RepositoryPathNode copySource = fileChecksum != null ? copySources.get(fileChecksum) : null;
+                if (copySource != null) {
+                    iterator.remove();
+                    copyFileList.add(file);
+                    copySourceMap.put(file, copySource);
+                    copiedSize += file.length();
+                    continue;
                 }
                 fileSizeMap.put(file, file.length());
                 prevSizeMap.put(file, totalSize);
@@ -127,12 +179,100 @@ public class UploadTransactionData extends BaseTransferData {
         return this;
     }
 
+    /**
+     * 上传路径的父文件夹的共同祖先
+     */
+    private RepositoryPathNode getTargetPathNode() {
+        RepositoryPathNode targetPathNode = null;
+        for (String uploadPath : uploadPathMap.values()) {
+            RepositoryPathNode parent = RepositoryPathNode.of(uploadPath).getParent();
+            if (parent == null) {
+                return RepositoryPathNode.getRoot();
+            }
+            if (targetPathNode == null) {
+                targetPathNode = parent;
+                continue;
+            }
+            while (parent.getDepth() > targetPathNode.getDepth()) {
+                parent = parent.getParent();
+            }
+            while (targetPathNode.getDepth() > parent.getDepth()) {
+                targetPathNode = targetPathNode.getParent();
+            }
+            while (!targetPathNode.equals(parent)) {
+                targetPathNode = targetPathNode.getParent();
+                parent = parent.getParent();
+            }
+        }
+        return targetPathNode != null ? targetPathNode : RepositoryPathNode.getRoot();
+    }
+
+    private SVNNodeKind getEntryKind(String path) {
+        return snapshot != null ? snapshot.getKind(path) : subtree.getKind(path);
+    }
+
+    private long getEntrySize(String path) {
+        return snapshot != null ? snapshot.getSize(path) : subtree.getSize(path);
+    }
+
+    /**
+     * 校验和表：已建立的仓库校验和表只需增量同步，否则只获取子树的校验和
+     */
+    private Map<RepositoryPathNode, String> getChecksumMap() throws Exception {
+        if (checksumMap == null) {
+            RepositoryChecksumIndex checksumIndex = RepositoryDirEntry.getChecksumIndex(repository);
+            if (checksumIndex.getRevision() >= 0) {
+                checksumMap = RepositoryDirEntry.getChecksumMap(repository);
+                copyRevision = checksumIndex.getRevision();
+            } else if (subtree != null) {
+                checksumMap = subtree.getChecksumMap(repository);
+                copyRevision = subtree.getRevision();
+            } else {
+                RepositoryPathNode rootPathNode = getTargetPathNode();
+                while (rootPathNode.getParent() != null && snapshot.getKind(rootPathNode.toString()) != SVNNodeKind.DIR) {
+                    rootPathNode = rootPathNode.getParent();
+                }
+                checksumMap = RepositorySubtree.getChecksumMap(repository, rootPathNode, snapshot.getRevision());
+                copyRevision = snapshot.getRevision();
+            }
+        }
+        return checksumMap;
+    }
+
+    /**
+     * 按校验和查找仓库中的相同文件：复制来源取自校验和表对应的版本，保证该版本的内容与校验和一致
+     */
+    private Map<String, RepositoryPathNode> getCopySources(Map<File, String> fileChecksums,
+                                                           Map<File, String> entryChecksums) throws Exception {
+        Set<String> wantedChecksums = new HashSet<>();
+        fileChecksums.forEach((file, checksum) -> {
+            if (!checksum.equals(entryChecksums.get(file))) {
+                wantedChecksums.add(checksum);
+            }
+        });
+        Map<String, RepositoryPathNode> copySources = new HashMap<>();
+        if (wantedChecksums.isEmpty()) {
+            return copySources;
+        }
+        for (Map.Entry<RepositoryPathNode, String> item : getChecksumMap().entrySet()) {
+            if (wantedChecksums.contains(item.getValue())) {
+                copySources.putIfAbsent(item.getValue(), item.getKey());
+            }
+        }
+        return copySources;
+    }
+
+    public RepositoryPathNode getCopySource(File file) {
+        return copySourceMap.get(file);
+    }
+
     public interface ChecksumProgressHandler {
         void handle(long processedSize, long totalSize, int itemIdx, int itemCount, String itemName);
     }
 
     public boolean isEmpty() {
-        return CollectionUtils.isEmpty(dirList) && CollectionUtils.isEmpty(fileList);
+        return CollectionUtils.isEmpty(dirList) && CollectionUtils.isEmpty(fileList)
+                && CollectionUtils.isEmpty(copyFileList);
     }
 
     public SVNNodeKind getKind(File file) {
@@ -0,0 +1,151 @@
+package depot.util;
+
+/**
+ * 流式JSON编码：直接写入同一个StringBuilder，一次调用只向页面传递一个字符串
+ */
+public class JsonWriter {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final StringBuilder builder;
+    /*当前层级是否已有元素，决定是否需要写逗号*/
+    private boolean[] hasElement = new boolean[8];
+    private int depth = 0;
+
+    public JsonWriter() {
+        this(256);
+    }
+
+    public JsonWriter(int capacity) {
+        this.builder = new StringBuilder(capacity);
+    }
+
+    public JsonWriter beginArray() {
+        beforeValue();
+        builder.append('[');
+        push();
+        return this;
+    }
+
+    public JsonWriter endArray() {
+        depth--;
+        builder.append(']');
+        return this;
+    }
+
+    public JsonWriter beginObject() {
+        beforeValue();
+        builder.append('{');
+        push();
+        return this;
+    }
+
+    public JsonWriter endObject() {
+        depth--;
+        builder.append('}');
+        return this;
+    }
+
+    public JsonWriter name(String name) {
+        beforeValue();
+        appendString(name);
+        builder.append(':');
+        /*名称后紧跟值，不需要逗号*/
+        hasElement[depth] = false;
+        return this;
+    }
+
+    public JsonWriter value(String value) {
+        beforeValue();
+        if (value == null) {
+            builder.append("null");
+        } else {
+            appendString(value);
+        }
+        return this;
+    }
+
+    public JsonWriter value(long value) {
+        beforeValue();
+        builder.append(value);
+        return this;
+    }
+
+    public JsonWriter value(boolean value) {
+        beforeValue();
+        builder.append(value);
+        return this;
+    }
+
+    public JsonWriter property(String name, String value) {
+        return name(name).value(value);
+    }
+
+    public JsonWriter property(String name, long value) {
+        return name(name).value(value);
+    }
+
+    public JsonWriter property(String name, boolean value) {
+        return name(name).value(value);
+    }
+
+    @Override
+    public String toString() {
+        return builder.toString();
+    }
+
+    private void push() {
+        depth++;
+        if (depth == hasElement.length) {
+            boolean[] newHasElement = new boolean[depth * 2];
+            System.arraycopy(hasElement, 0, newHasElement, 0, depth);
+            hasElement = newHasElement;
+        }
+        hasElement[depth] = false;
+    }
+
+    private void beforeValue() {
+        if (hasElement[depth]) {
+            builder.append(',');
+        }
+        hasElement[depth] = true;
+    }
+
+    private void appendString(String value) {
+        builder.append('"');
+        int length = value.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            builder.append(value, start, i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    builder.append("\\u")
+                            .append(HEX_DIGITS[c >> 12 & 0xf])
+                            .append(HEX_DIGITS[c >> 8 & 0xf])
+                            .append(HEX_DIGITS[c >> 4 & 0xf])
+                            .append(HEX_DIGITS[c & 0xf]);
+            }
+            start = i + 1;
+        }
+        builder.append(value, start, length);
+        builder.append('"');
+    }
+}
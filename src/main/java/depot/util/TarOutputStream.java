@@ -0,0 +1,174 @@
+package depot.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 流式tar写入：条目大小预先给出，数据直接写入底层流，不缓存文件内容
+ * <p>
+ * 使用ustar格式，名称超过100字节或大小超出ustar范围时先写PAX扩展头
+ */
+public class TarOutputStream extends FilterOutputStream {
+    private static final int BLOCK_SIZE = 512;
+    private static final int NAME_LENGTH = 100;
+    /*ustar大小字段为11位八进制数*/
+    private static final long MAX_USTAR_SIZE = 077777777777L;
+    private static final byte[] ZERO_BLOCK = new byte[BLOCK_SIZE];
+
+    private String entryName;
+    private long entrySize;
+    private long entryRemaining;
+    private boolean finished = false;
+
+    public TarOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    public void putDirEntry(String name, long mtime) throws IOException {
+        checkEntryClosed();
+        writeHeader(name.endsWith("/") ? name : name + "/", 0, '5', 0755, mtime);
+    }
+
+    /**
+     * 开始文件条目，之后写入的数据量必须正好为size
+     */
+    public void putFileEntry(String name, long size, long mtime) throws IOException {
+        checkEntryClosed();
+        writeHeader(name, size, '0', 0644, mtime);
+        entryName = name;
+        entrySize = size;
+        entryRemaining = size;
+    }
+
+    public void closeEntry() throws IOException {
+        if (entryName == null) {
+            return;
+        }
+        if (entryRemaining != 0) {
+            throw new IOException("tar条目大小不符：" + entryName);
+        }
+        pad(entrySize);
+        entryName = null;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (entryName == null || len > entryRemaining) {
+            throw new IOException("tar条目大小不符：" + entryName);
+        }
+        out.write(b, off, len);
+        entryRemaining -= len;
+    }
+
+    /**
+     * 写入结束标记，不关闭底层流
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        checkEntryClosed();
+        out.write(ZERO_BLOCK);
+        out.write(ZERO_BLOCK);
+        out.flush();
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void checkEntryClosed() throws IOException {
+        if (entryName != null) {
+            throw new IOException("tar条目未结束：" + entryName);
+        }
+    }
+
+    private void writeHeader(String name, long size, char type, int mode, long mtime) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        boolean longName = nameBytes.length > NAME_LENGTH;
+        boolean largeSize = size > MAX_USTAR_SIZE;
+        if (longName || largeSize) {
+            StringBuilder records = new StringBuilder();
+            if (longName) {
+                appendPaxRecord(records, "path", name);
+            }
+            if (largeSize) {
+                appendPaxRecord(records, "size", String.valueOf(size));
+            }
+            byte[] paxData = records.toString().getBytes(StandardCharsets.UTF_8);
+            out.write(buildHeader("././@PaxHeader".getBytes(StandardCharsets.UTF_8), paxData.length, 'x', 0644, mtime));
+            out.write(paxData);
+            pad(paxData.length);
+        }
+        out.write(buildHeader(nameBytes, largeSize ? 0 : size, type, mode, mtime));
+    }
+
+    /**
+     * PAX记录格式为“长度 键=值\n”，长度包含长度字段本身
+     */
+    private static void appendPaxRecord(StringBuilder records, String key, String value) {
+        int length = key.getBytes(StandardCharsets.UTF_8).length + value.getBytes(StandardCharsets.UTF_8).length + 3;
+        int totalLength = length + String.valueOf(length).length();
+        if (String.valueOf(totalLength).length() > String.valueOf(length).length()) {
+            totalLength++;
+        }
+        records.append(totalLength).append(' ').append(key).append('=').append(value).append('\n');
+    }
+
+    private static byte[] buildHeader(byte[] nameBytes, long size, char type, int mode, long mtime) {
+        byte[] header = new byte[BLOCK_SIZE];
+        System.arraycopy(nameBytes, 0, header, 0, Math.min(nameBytes.length, NAME_LENGTH));
+        writeOctal(header, 100, 8, mode);
+        writeOctal(header, 108, 8, 0);
+        writeOctal(header, 116, 8, 0);
+        writeOctal(header, 124, 12, size);
+        writeOctal(header, 136, 12, Math.max(mtime / 1000, 0));
+        header[156] = (byte) type;
+        System.arraycopy("ustar\0".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 6);
+        header[263] = '0';
+        header[264] = '0';
+        /*校验和按字段为空格时计算*/
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' ';
+        }
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        writeOctal(header, 148, 7, checksum);
+        return header;
+    }
+
+    /**
+     * 定长八进制字段：高位补0，末尾为\0
+     */
+    private static void writeOctal(byte[] header, int offset, int length, long value) {
+        String octal = Long.toOctalString(value);
+        int digits = length - 1;
+        for (int i = 0; i < digits; i++) {
+            int idx = octal.length() - digits + i;
+            header[offset + i] = (byte) (idx >= 0 ? octal.charAt(idx) : '0');
+        }
+        header[offset + digits] = 0;
+    }
+
+    private void pad(long length) throws IOException {
+        int remainder = (int) (length % BLOCK_SIZE);
+        if (remainder > 0) {
+            out.write(ZERO_BLOCK, 0, BLOCK_SIZE - remainder);
+        }
+    }
+}
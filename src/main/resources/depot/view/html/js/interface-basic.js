@@ -20,6 +20,8 @@ layui.use(["element", "form", "laytpl"], function () {
         }
     });
 
+    form.on("switch(settings-switch)", enableSaveSettings);
+
     form.on("submit(form-settings-submit)", function (data) {
         tryRun(function () {
             javaApi.saveAppSettings(data.field);
@@ -9,11 +9,19 @@ let repoContentTableBody = $("#repo-content-table > tbody");
 let statusCount = $("#repo-content-status-count > span");
 let colResizeData = {};
 let colResizeStage = null;
+let searchInputTimer = null;
+let entryCount = 0;
+let entryRowHeight = 38;
+let entryWindow = {start: 0, end: 0};
+let entryWindowBlock = 20;
+let entryWindowRendering = false;
+let checkedEntryPaths = new Set();
 
 
 function repoContentLoading(dataReloading = true) {
     repoOpsOnselect.hide();
     repoContentCheckAll.prop("checked", false);
+    checkedEntryPaths.clear();
     if (dataReloading) {
         switchRepoNavOps("repo-nav-ops-refresh", false);
         statusCount.html($("#repo-content-status-count-loading-tpl").html());
@@ -72,17 +80,107 @@ function updateRepoNav() {
 
 function fillRepoContentTable() {
     tryRun(function () {
-        let entryList = javaApi.getEntryArray();
-        statusCount.html(entryList.length);
-        if (entryList.length > 0) {
-            repoContentTableBody.html(layui.laytpl($("#repo-content-table-tr-tpl").html()).render(entryList));
-            resizeRepoContentTableColumn();
+        entryCount = javaApi.getEntryCount();
+        statusCount.html(entryCount);
+        if (entryCount > 0) {
+            renderEntryWindow(true);
         } else {
+            entryWindow = {start: 0, end: 0};
             repoContentTableBody.html($("#repo-content-table-empty-tpl").html());
         }
     });
 }
 
+/*只渲染可见区域附近的行，上下用占位元素保持滚动高度，滚动跨过一段时才重新获取*/
+function renderEntryWindow(force = false) {
+    if (entryCount <= 0) {
+        return;
+    }
+    let trNewDir = $("#tr-new-dir");
+    let headHeight = trNewDir.length > 0 ? trNewDir.outerHeight() : 0;
+    let scrollTop = repoContentTableBody.scrollTop();
+    let firstIndex = Math.floor(Math.max(scrollTop - headHeight, 0) / entryRowHeight);
+    let visibleCount = Math.ceil(repoContentTableBody.height() / entryRowHeight) + 1;
+    let blockStart = Math.floor(firstIndex / entryWindowBlock) * entryWindowBlock;
+    let start = Math.max(blockStart - entryWindowBlock, 0);
+    let end = Math.min(blockStart + entryWindowBlock * 2 + visibleCount, entryCount);
+    start = Math.min(start, Math.max(end - visibleCount - entryWindowBlock * 3, 0));
+    if (!force && start === entryWindow.start && end === entryWindow.end) {
+        return;
+    }
+    entryWindow = {start: start, end: end};
+
+    /*重新渲染时保留正在重命名的行*/
+    let trInRenaming = $("#tr-in-renaming");
+    let renaming = null;
+    if (trInRenaming.length > 0) {
+        let inputNewName = trInRenaming.find("input[name='new-name']");
+        renaming = {
+            path: trInRenaming.attr("data-path"),
+            name: inputNewName.val(),
+            focused: inputNewName.is(":focus")
+        };
+    }
+
+    trNewDir.detach();
+    let entryList = JSON.parse(javaApi.getEntryWindowJson(start, end - start));
+    repoContentTableBody.html(entrySpacerHtml(start * entryRowHeight)
+        + layui.laytpl($("#repo-content-table-tr-tpl").html()).render(entryList)
+        + entrySpacerHtml((entryCount - end) * entryRowHeight));
+    repoContentTableBody.prepend(trNewDir);
+    repoContentTableBody.scrollTop(scrollTop);
+
+    repoContentTableBody.find("tr[data-path]").each(function () {
+        if (checkedEntryPaths.has($(this).attr("data-path"))) {
+            $(this).addClass("tr-selected").find(".repo-content-check").prop("checked", true);
+        }
+    });
+    if (renaming) {
+        let trRenaming = findEntryRow(renaming.path);
+        if (trRenaming.length > 0) {
+            let inputNewName = trRenaming.attr("id", "tr-in-renaming").find("input[name='new-name']");
+            trRenaming.find(".current-name").hide();
+            trRenaming.find(".span-rename").show();
+            inputNewName.val(renaming.name);
+            if (renaming.focused) {
+                inputNewName.focus();
+            }
+        }
+    }
+    resizeRepoContentTableColumn();
+
+    /*按实际行高校正一次*/
+    let rowHeight = repoContentTableBody.find("tr[data-path]").not("#tr-in-renaming").first().outerHeight();
+    if (rowHeight > 0 && rowHeight !== entryRowHeight) {
+        entryRowHeight = rowHeight;
+        renderEntryWindow(true);
+    }
+}
+
+function entrySpacerHtml(height) {
+    return height > 0 ? "<div class=\"repo-content-tbody-spacer\" style=\"height: " + height + "px;\"></div>" : "";
+}
+
+function findEntryRow(pathString) {
+    return repoContentTableBody.find("tr[data-path]").filter(function () {
+        return $(this).attr("data-path") === pathString;
+    });
+}
+
+function scrollToEntry(pathString) {
+    let trEntry = findEntryRow(pathString);
+    if (trEntry.length <= 0) {
+        let index = javaApi.indexOfEntry(pathString);
+        if (index >= 0) {
+            let trNewDir = $("#tr-new-dir");
+            repoContentTableBody.scrollTop(index * entryRowHeight + (trNewDir.length > 0 ? trNewDir.outerHeight() : 0));
+            renderEntryWindow();
+            trEntry = findEntryRow(pathString);
+        }
+    }
+    return trEntry;
+}
+
 function showSortIcon(sortKey, direction) {
     $(".sort-icon").hide();
     $(".th-responsive[col-key='" + sortKey + "']").find(".sort-icon." + direction).show();
@@ -121,11 +219,11 @@ function resizeRepoContentTableColumn() {
 }
 
 function allEntryChecked() {
-    return $(".repo-content-check:not(:checked)").length <= 0;
+    return checkedEntryPaths.size >= entryCount && $("#tr-new-dir .repo-content-check:not(:checked)").length <= 0;
 }
 
 function existingEntryCheckedNum() {
-    return $(".repo-content-check:checked").not("#tr-new-dir *").length;
+    return checkedEntryPaths.size;
 }
 
 function noExistingEntryChecked() {
@@ -133,14 +231,18 @@ function noExistingEntryChecked() {
 }
 
 function getCheckedPaths() {
-    let paths = [];
-    $(".repo-content-check:checked").each(function () {
-        let path = $(this).closest("tr").data("path");
-        if (typeof (path) != "undefined") {
-            paths.push(path);
-        }
-    });
-    return paths;
+    return Array.from(checkedEntryPaths);
+}
+
+/*未渲染的行也需要选中，因此从Java获取全部路径*/
+function checkAllEntries(checked) {
+    checkedEntryPaths.clear();
+    if (checked) {
+        tryRun(function () {
+            checkedEntryPaths = new Set(JSON.parse(javaApi.getEntryPathsJson()));
+        });
+    }
+    $(".repo-content-check").prop("checked", checked).change();
 }
 
 function getDropTarget(x, y) {
@@ -221,6 +323,15 @@ function goSearch() {
     });
 }
 
+function isValidSearchPattern(pattern) {
+    try {
+        new RegExp(pattern);
+        return true;
+    } catch (e) {
+        return false;
+    }
+}
+
 function clearSearchPattern() {
     $("#repo-nav-search-pattern").val("");
 }
@@ -238,6 +349,12 @@ function downloadEntry(paths) {
     });
 }
 
+function downloadArchive(paths, format) {
+    tryRun(function () {
+        javaApi.downloadArchive(paths, paths.length, format);
+    });
+}
+
 function deleteEntry(paths) {
     tryRun(function () {
         repoContentLoading();
@@ -343,6 +460,13 @@ $(function () {
             downloadEntry(paths);
         }
     });
+
+    $(".repo-ops-download-archive").click(function () {
+        let paths = getCheckedPaths();
+        if (paths.length > 0) {
+            downloadArchive(paths, $(this).data("format"));
+        }
+    });
 });
 
 /*删除*/
@@ -372,10 +496,9 @@ $(function () {
     let inputNewNameSelector = "input[name='new-name']";
 
     $("#repo-ops-rename").click(function () {
-        let existingEntryBoxChecked = $(".repo-content-check:checked").not("#tr-new-dir *");
-        if (existingEntryBoxChecked.length === 1) {
+        if (existingEntryCheckedNum() === 1) {
             cancelRename();
-            let trChecked = existingEntryBoxChecked.first().closest("tr");
+            let trChecked = scrollToEntry(getCheckedPaths()[0]);
             let currentName = trChecked.find(".repo-content-td-name").data("name");
             trChecked.attr("id", trInRenamingId);
             trChecked.find(spanCurrentNameSelector).hide();
@@ -492,6 +615,9 @@ $(function () {
     });
 
     repoNav.delegate("#repo-nav-ops-refresh:not(.repo-nav-ops-disabled)", "click", function () {
+        tryRun(function () {
+            javaApi.invalidateRepositoryContent();
+        });
         loadRepoContent();
     });
 
@@ -513,9 +639,24 @@ $(function () {
     repoNav.delegate("#repo-nav-search-pattern", "keydown", function (e) {
         if (e.which === 13) {
             e.stopPropagation();
+            clearTimeout(searchInputTimer);
             goSearch();
         }
     });
+
+    /*输入时自动搜索*/
+    repoNav.delegate("#repo-nav-search-pattern", "input", function () {
+        clearTimeout(searchInputTimer);
+        searchInputTimer = setTimeout(function () {
+            let pattern = $("#repo-nav-search-pattern").val().trim();
+            // 内容搜索需要获取文件，结构化查询输入未完成时无法解析，只在回车或点击时开始
+            if (pattern.length > 0 && !pattern.startsWith("content:")
+                && !/(^|\s)(size|mtime|ext|kind|author|path|rev)(>=|<=|>|<|=|:)/i.test(pattern)
+                && isValidSearchPattern(pattern)) {
+                goSearch();
+            }
+        }, 300);
+    });
 });
 
 /*仓库文件列表*/
@@ -590,10 +731,23 @@ $(function () {
 
     $(window).resize(function () {
         if (repoContentTable.is(":visible")) {
+            renderEntryWindow();
             resizeRepoContentTableColumn();
         }
     });
 
+    repoContentTableBody.scroll(function () {
+        if (!entryWindowRendering) {
+            entryWindowRendering = true;
+            requestAnimationFrame(function () {
+                entryWindowRendering = false;
+                tryRun(function () {
+                    renderEntryWindow();
+                });
+            });
+        }
+    });
+
     repoContentTable.delegate(".th-responsive", "click", function () {
         if (colResizeStage === 1) {
             colResizeStage = 2;
@@ -612,14 +766,14 @@ $(function () {
     body.keydown(function (e) {
         if (e.ctrlKey && e.which === 65) {
             if ($("#sidebar-tab > .layui-this").attr("id") === "sidebar-repo-home") {
-                $(".repo-content-check").prop("checked", true).change();
+                checkAllEntries(true);
             }
         }
     });
 
     repoContentTable.delegate("#repo-content-check-all", "click", function (e) {
         e.stopPropagation();
-        $(".repo-content-check").prop("checked", $(this).prop("checked")).change();
+        checkAllEntries($(this).prop("checked"));
     });
 
     repoContentTable.delegate(".repo-content-check", "click", function (e) {
@@ -630,6 +784,14 @@ $(function () {
     repoContentTable.delegate(".repo-content-check", "change", function (e) {
         e.stopPropagation();
         let classSelected = "tr-selected";
+        let path = $(this).closest("tr").attr("data-path");
+        if (typeof (path) != "undefined") {
+            if ($(this).prop("checked")) {
+                checkedEntryPaths.add(path);
+            } else {
+                checkedEntryPaths.delete(path);
+            }
+        }
         if ($(this).prop("checked")) {
             $(this).closest("tr").addClass(classSelected);
             if ($(this).closest("tr").attr("id") !== "tr-new-dir") {
@@ -651,7 +813,7 @@ $(function () {
 
     repoContentTable.delegate("tbody > tr", "click", function (e) {
         e.stopPropagation();
-        $(".repo-content-check").prop("checked", false).change();
+        checkAllEntries(false);
         $(this).find(".repo-content-check").prop("checked", true).change();
     });
 
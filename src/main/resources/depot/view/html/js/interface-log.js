@@ -27,7 +27,7 @@ function createLogTree() {
     tryRun(function () {
         logTreeOptions.core.data = function (node, callback) {
             let children = [];
-            $.each(javaApi.getLogTreeNodeChildrenArray(node.id), function (idx, treeNode) {
+            $.each(JSON.parse(javaApi.getLogTreeNodeChildrenJson(node.id)), function (idx, treeNode) {
                 children.push({
                     id: treeNode.id,
                     parent: treeNode.parent,
@@ -5,6 +5,11 @@ function loadAppSettings() {
     tryRun(function () {
         let settings = javaApi.loadAppSettings();
         setDownloadParent(settings.getDownloadParent().getAbsolutePath());
+        formSettings.find("input[name='deltaUpload']").prop("checked", settings.isDeltaUpload());
+        formSettings.find("input[name='mirrorDownload']").prop("checked", settings.isMirrorDownload());
+        formSettings.find("input[name='blobCacheEnabled']").prop("checked", settings.isBlobCacheEnabled());
+        formSettings.find("input[name='blobCacheQuota']").val(settings.getBlobCacheQuota());
+        layui.form.render("checkbox", "form-settings");
         formSettingsAction.addClass("layui-btn-disabled")
             .prop("disabled", true);
     });
@@ -13,11 +18,15 @@ function loadAppSettings() {
 function setDownloadParent(downloadParent, enableSave = false) {
     formSettings.find("input[name='downloadParent']").val(downloadParent);
     if (enableSave) {
-        formSettingsAction.removeClass("layui-btn-disabled")
-            .prop("disabled", false);
+        enableSaveSettings();
     }
 }
 
+function enableSaveSettings() {
+    formSettingsAction.removeClass("layui-btn-disabled")
+        .prop("disabled", false);
+}
+
 $(function () {
     $("#icon-choose-downloadParent").click(function () {
         tryRun(function () {
@@ -26,4 +35,6 @@ $(function () {
     });
 
     $("#form-settings-reset").click(loadAppSettings);
+
+    formSettings.find("input[name='blobCacheQuota']").on("input", enableSaveSettings);
 });
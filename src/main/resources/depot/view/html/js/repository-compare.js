@@ -12,9 +12,6 @@ let compareTreeOptions = {
     sort: treeNodeCompare,
     plugins: ["types", "sort"],
 };
-let propSize = "SIZE";
-let propMtime = "MTIME";
-let propChecksum = "CHECKSUM";
 
 
 function renewCompareResult() {
@@ -27,7 +24,7 @@ function createCompareTree() {
     tryRun(function () {
         compareTreeOptions.core.data = function (node, callback) {
             let children = [];
-            $.each(javaApi.getCompareTreeNodeChildrenArray(node.id), function (idx, treeNode) {
+            $.each(JSON.parse(javaApi.getCompareTreeNodeChildrenJson(node.id)), function (idx, treeNode) {
                 children.push({
                     id: treeNode.id,
                     parent: treeNode.parent,
@@ -42,18 +39,7 @@ function createCompareTree() {
                         opened: treeNode.state.opened,
                     },
                     children: treeNode.children,
-                    data: {
-                        sourceProp: {
-                            size: treeNode.getSourceProperty(propSize),
-                            mtime: treeNode.getSourceProperty(propMtime),
-                            checksum: treeNode.getSourceProperty(propChecksum),
-                        },
-                        targetProp: {
-                            size: treeNode.getTargetProperty(propSize),
-                            mtime: treeNode.getTargetProperty(propMtime),
-                            checksum: treeNode.getTargetProperty(propChecksum),
-                        },
-                    },
+                    data: treeNode.data,
                 });
             });
             callback.call(this, children);
@@ -0,0 +1,171 @@
+package depot.model.repository.content;
+
+import depot.model.repository.path.RepositoryDirEntry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.tmatesoft.svn.core.SVNDirEntry;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.SVNURL;
+
+import java.text.Collator;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 与原RepositoryDirEntry中按列排序的比较器逐一对照；
+ * 名称、修改时间、文件大小各不相同，修改时间取整秒，避免相等元素的先后顺序影响结果
+ */
+class RepositoryEntrySorterTest {
+    private static final Collator COLLATOR = Collator.getInstance();
+    private static final String[] EXTS = {"", "txt", "psd", "PNG", "zip", "java"};
+    private static final String[] NAME_PREFIXES = {"a", "B", "c", "报告", "_x", "1", "Z"};
+
+    private static List<RepositoryDirEntry> entries;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        Random random = new Random(20220);
+        List<Long> mtimes = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            mtimes.add(1600000000L + i * 37L);
+        }
+        Collections.shuffle(mtimes, random);
+        entries = new ArrayList<>();
+        for (int i = 0; i < mtimes.size(); i++) {
+            boolean dir = random.nextInt(4) == 0;
+            String ext = EXTS[random.nextInt(EXTS.length)];
+            String name = NAME_PREFIXES[random.nextInt(NAME_PREFIXES.length)] + i + (dir || ext.isEmpty() ? "" : "." + ext);
+            long size = dir ? 0 : 1000L * i + random.nextInt(1000);
+            Date date = new Date(TimeUnit.SECONDS.toMillis(mtimes.get(i)));
+            SVNURL url = SVNURL.parseURIEncoded("file:///repository/dir/" + i);
+            entries.add(new RepositoryDirEntry(new SVNDirEntry(url, null, name,
+                    dir ? SVNNodeKind.DIR : SVNNodeKind.FILE, size, false, i, date, "author")));
+        }
+    }
+
+    /*以下为原比较器*/
+
+    private static int nameCompare(RepositoryDirEntry o1, RepositoryDirEntry o2) {
+        return COLLATOR.compare(o1.getName(), o2.getName());
+    }
+
+    private static int mtimeCompare(RepositoryDirEntry o1, RepositoryDirEntry o2) {
+        return o1.getMtime().compareTo(o2.getMtime());
+    }
+
+    private static int typeCompare(RepositoryDirEntry o1, RepositoryDirEntry o2) {
+        return o1.getType().compareTo(o2.getType());
+    }
+
+    private static int entryNameCompare(RepositoryDirEntry o1, RepositoryDirEntry o2) {
+        if (o1.isDir()) {
+            return o2.isDir() ? nameCompare(o1, o2) : -1;
+        } else {
+            return !o2.isDir() ? nameCompare(o1, o2) : 1;
+        }
+    }
+
+    private static int entryMtimeCompare(RepositoryDirEntry o1, RepositoryDirEntry o2) {
+        if (o1.isDir()) {
+            return o2.isDir() ? mtimeCompare(o1, o2) : -1;
+        } else {
+            return !o2.isDir() ? mtimeCompare(o1, o2) : 1;
+        }
+    }
+
+    private static int entryTypeCompare(RepositoryDirEntry o1, RepositoryDirEntry o2) {
+        if (typeCompare(o1, o2) == 0) {
+            return nameCompare(o1, o2);
+        }
+        return typeCompare(o1, o2);
+    }
+
+    private static int entrySizeCompare(RepositoryDirEntry o1, RepositoryDirEntry o2) {
+        if (o1.isDir()) {
+            return o2.isDir() ? nameCompare(o1, o2) : -1;
+        } else {
+            return !o2.isDir() ? Long.compare(o1.getSize(), o2.getSize()) : 1;
+        }
+    }
+
+    private static int entryNameCompareRev(RepositoryDirEntry o1, RepositoryDirEntry o2) {
+        if (o1.isDir()) {
+            return o2.isDir() ? nameCompare(o2, o1) : -1;
+        } else {
+            return !o2.isDir() ? nameCompare(o2, o1) : 1;
+        }
+    }
+
+    private static int entryMtimeCompareRev(RepositoryDirEntry o1, RepositoryDirEntry o2) {
+        if (o1.isDir()) {
+            return o2.isDir() ? mtimeCompare(o2, o1) : -1;
+        } else {
+            return !o2.isDir() ? mtimeCompare(o2, o1) : 1;
+        }
+    }
+
+    private static int entryTypeCompareRev(RepositoryDirEntry o1, RepositoryDirEntry o2) {
+        if (typeCompare(o1, o2) == 0) {
+            return nameCompare(o1, o2);
+        }
+        return typeCompare(o2, o1);
+    }
+
+    private static int entrySizeCompareRev(RepositoryDirEntry o1, RepositoryDirEntry o2) {
+        if (o1.isDir()) {
+            return o2.isDir() ? nameCompare(o1, o2) : -1;
+        } else {
+            return !o2.isDir() ? Long.compare(o2.getSize(), o1.getSize()) : 1;
+        }
+    }
+
+    private static void assertSorted(String sortKey, boolean ascending, Comparator<RepositoryDirEntry> comparator) {
+        List<RepositoryDirEntry> expected = new ArrayList<>(entries);
+        expected.sort(comparator);
+        RepositoryEntrySorter sorter = new RepositoryEntrySorter(entries);
+        assertEquals(expected, sorter.sort(sortKey, ascending), sortKey + (ascending ? "升序" : "降序"));
+        // 另一方向之后再次排序，使用缓存的升序排列
+        sorter.sort(sortKey, !ascending);
+        assertEquals(expected, sorter.sort(sortKey, ascending), sortKey + (ascending ? "升序" : "降序"));
+    }
+
+    @Test
+    void sortByName() {
+        assertSorted(RepositoryEntrySorter.SORT_KEY_NAME, true, RepositoryEntrySorterTest::entryNameCompare);
+        assertSorted(RepositoryEntrySorter.SORT_KEY_NAME, false, RepositoryEntrySorterTest::entryNameCompareRev);
+    }
+
+    @Test
+    void sortByMtime() {
+        assertSorted(RepositoryEntrySorter.SORT_KEY_MTIME, true, RepositoryEntrySorterTest::entryMtimeCompare);
+        assertSorted(RepositoryEntrySorter.SORT_KEY_MTIME, false, RepositoryEntrySorterTest::entryMtimeCompareRev);
+    }
+
+    @Test
+    void sortByType() {
+        assertSorted(RepositoryEntrySorter.SORT_KEY_TYPE, true, RepositoryEntrySorterTest::entryTypeCompare);
+        assertSorted(RepositoryEntrySorter.SORT_KEY_TYPE, false, RepositoryEntrySorterTest::entryTypeCompareRev);
+    }
+
+    @Test
+    void sortBySize() {
+        assertSorted(RepositoryEntrySorter.SORT_KEY_SIZE, true, RepositoryEntrySorterTest::entrySizeCompare);
+        assertSorted(RepositoryEntrySorter.SORT_KEY_SIZE, false, RepositoryEntrySorterTest::entrySizeCompareRev);
+    }
+
+    @Test
+    void unknownSortKeySortsByName() {
+        RepositoryEntrySorter sorter = new RepositoryEntrySorter(entries);
+        assertEquals(sorter.sort(RepositoryEntrySorter.SORT_KEY_NAME, false), sorter.sort("unknown", false));
+        assertEquals(RepositoryEntrySorter.SORT_KEY_NAME, RepositoryEntrySorter.normalizeSortKey(null));
+    }
+
+    @Test
+    void emptyAndSingleEntry() {
+        assertTrue(new RepositoryEntrySorter(Collections.emptyList()).sort(RepositoryEntrySorter.SORT_KEY_TYPE, false).isEmpty());
+        List<RepositoryDirEntry> single = entries.subList(0, 1);
+        assertEquals(single, new RepositoryEntrySorter(single).sort(RepositoryEntrySorter.SORT_KEY_SIZE, false));
+    }
+}
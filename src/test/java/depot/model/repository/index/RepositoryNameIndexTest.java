@@ -0,0 +1,107 @@
+package depot.model.repository.index;
+
+import depot.util.TestRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+import java.io.File;
+import java.util.*;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 索引查询结果与逐个名称用正则表达式匹配的结果对照
+ */
+class RepositoryNameIndexTest {
+    private static final String[] NAMES = {
+            "report2021.pdf", "v12.txt", "v123.txt", "a" + String.join("", Collections.nCopies(100, "b")) + "c",
+            "abbc", "Abc.txt", "ABCD", "xa.bx", "xyxyzzz", "ababc", "ab1234", "abc", "a b c", "Alpha",
+            "İstanbul", "istanbul.txt", "ISTANBUL", "ſtop", "stop.txt", "STOP", "\u212Aelvin", "kelvin.log",
+            "straße", "STRASSE", "STRAẞE", "σίσυφος", "ΣΊΣΥΦΟΣ", "ς.txt", "😀smile😀.png", "smile.png",
+            "报告2021.doc", "年度报告.docx", "data[1].csv", "a+b=c", "file.tar.gz", "tar.gz.bak", "-x-y-z-",
+    };
+    private static final String[] PATTERNS = {
+            "[0-9]{2,4}", "ab{100}", "ab{100}c", "\\p{Alpha}", "\\p{IsAlphabetic}{5}", "\\x41bc", "\\x{41}bc",
+            "\\u0041bcd", "\\0101bc", "\\N{LATIN CAPITAL LETTER A}bc", "\\Qa.b\\E", "x\\Qa.b\\Ex", "(?x) a b c",
+            "(?<n>ab)\\k<n>c", "(xy)\\1zzz", "(ab)\\11234", "\\cJabc", "\\tabc", "abc", "ABC", "istan", "İSTAN",
+            "stop", "STOP", "ſto", "kel", "KEL", "\u212AEL", "straß", "STRAẞ", "strass", "σίσ", "ΣΊΣ", "ς",
+            "smile", "😀smi", "😀?smile", "smile😀?", "报告", "度报告", "2021", "data\\[1\\]", "a\\+b", "a\\+?b",
+            "tar\\.gz", "\\.tar", "ab*c", "ab?c", "abc?", "ab+c", "^abc", "abc$", "v1.*txt", "v12?3", "-x-y",
+            "a.c", "[a-c]bc", "(?i:abc)d", "(?-i)abc", "abc|stop", "(?:ab)+c", "\\w{3}\\.txt", "\\btar\\b",
+            "\\Babc", "\\Qabc", "\\Q\\E", "\\p{Lu}{4}", "\\P{L}{3}", "\\pLbc",
+    };
+
+    @TempDir
+    File tempDir;
+
+    private RepositoryNameIndex nameIndex;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        TestRepository testRepository = new TestRepository(tempDir);
+        SVNRepository repository = testRepository.getRepository();
+        testRepository.commit(commit -> {
+            commit.addDir("dir");
+            for (String name : NAMES) {
+                commit.addFile("dir/" + name, name);
+            }
+        });
+        RepositorySnapshot snapshot = RepositorySnapshot.load(repository);
+        snapshot.update(repository, null);
+        nameIndex = RepositoryNameIndex.load(repository);
+        nameIndex.update(snapshot);
+    }
+
+    /**
+     * 原搜索方式：逐个名称整体匹配，除顶层的“|”外与find()相同
+     */
+    private static List<String> bruteForce(String searchPattern) {
+        Pattern pattern = Pattern.compile(".*" + searchPattern + ".*", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        List<String> result = new ArrayList<>();
+        if (pattern.matcher("dir").matches()) {
+            result.add("/dir");
+        }
+        for (String name : NAMES) {
+            if (pattern.matcher(name).matches()) {
+                result.add("/dir/" + name);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private List<String> search(String searchPattern) {
+        List<String> result = new ArrayList<>(nameIndex.search(searchPattern));
+        Collections.sort(result);
+        return result;
+    }
+
+    @Test
+    void matchesBruteForce() {
+        for (String searchPattern : PATTERNS) {
+            assertEquals(bruteForce(searchPattern), search(searchPattern), searchPattern);
+        }
+    }
+
+    @Test
+    void reviewedPatternsFindMatches() {
+        assertTrue(search("[0-9]{2,4}").contains("/dir/report2021.pdf"));
+        assertTrue(search("ab{100}").contains("/dir/a" + String.join("", Collections.nCopies(100, "b")) + "c"));
+        assertTrue(search("\\x41bc").contains("/dir/Abc.txt"));
+        assertTrue(search("\\u0041bcd").contains("/dir/ABCD"));
+        assertTrue(search("istan").contains("/dir/İstanbul"));
+        assertTrue(search("STOP").contains("/dir/ſtop"));
+    }
+
+    @Test
+    void refineWhileTyping() {
+        /*逐字输入时在上次结果中继续筛选，大小写不同时不能沿用*/
+        String[] inputs = {"s", "st", "sto", "stop", "stop.", "ſ", "ſt", "ſto", "S", "ST", "STO", "STOP", "ab", "abc", "abcd"};
+        for (String input : inputs) {
+            assertEquals(bruteForce(input), search(input), input);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package depot.model.repository.index;
+
+import org.junit.jupiter.api.Test;
+import org.tmatesoft.svn.core.SVNNodeKind;
+
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepositoryQueryTest {
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Test
+    void isQuery() {
+        assertTrue(RepositoryQuery.isQuery("size>1MB"));
+        assertTrue(RepositoryQuery.isQuery("  report EXT:pdf "));
+        assertFalse(RepositoryQuery.isQuery("report final"));
+        assertFalse(RepositoryQuery.isQuery("size"));
+        assertFalse(RepositoryQuery.isQuery(""));
+    }
+
+    @Test
+    void sizeBounds() {
+        RepositoryQuery query = RepositoryQuery.parse("size>500MB size<=1.5GB");
+        assertEquals(SVNNodeKind.FILE, query.kind);
+        assertEquals(500L * 1024 * 1024 + 1, query.minSize);
+        assertEquals(1536L * 1024 * 1024, query.maxSize);
+
+        query = RepositoryQuery.parse("size=10kb");
+        assertEquals(10240, query.minSize);
+        assertEquals(10240, query.maxSize);
+
+        query = RepositoryQuery.parse("size<100 size>=20");
+        assertEquals(20, query.minSize);
+        assertEquals(99, query.maxSize);
+    }
+
+    @Test
+    void timeBounds() throws Exception {
+        long before = System.currentTimeMillis();
+        RepositoryQuery query = RepositoryQuery.parse("mtime>30d");
+        long after = System.currentTimeMillis();
+        assertTrue(query.minTime > before - 30 * DAY && query.minTime <= after - 30 * DAY + 1);
+        assertEquals(Long.MAX_VALUE, query.maxTime);
+
+        before = System.currentTimeMillis();
+        query = RepositoryQuery.parse("mtime<2w");
+        after = System.currentTimeMillis();
+        assertEquals(Long.MIN_VALUE, query.minTime);
+        assertTrue(query.maxTime >= before - 14 * DAY - 1 && query.maxTime < after - 14 * DAY);
+
+        long dayStart = new SimpleDateFormat("yyyy-MM-dd").parse("2021-03-04").getTime();
+        query = RepositoryQuery.parse("mtime:2021-03-04");
+        assertEquals(dayStart, query.minTime);
+        assertEquals(dayStart + DAY - 1, query.maxTime);
+
+        query = RepositoryQuery.parse("mtime>2021-03-04");
+        assertEquals(dayStart + DAY, query.minTime);
+    }
+
+    @Test
+    void equalityTerms() {
+        RepositoryQuery query = RepositoryQuery.parse("Report ext:.PSD,png kind:dir author:Alice,bob path:assets/ rev>=3 rev<7 Final");
+        assertEquals(new HashSet<>(Arrays.asList("psd", "png")), query.exts);
+        assertEquals(SVNNodeKind.DIR, query.kind);
+        assertEquals(new HashSet<>(Arrays.asList("alice", "bob")), query.authors);
+        assertEquals("/assets", query.pathPrefix);
+        assertEquals(3, query.minRevision);
+        assertEquals(6, query.maxRevision);
+        assertEquals(Arrays.asList("report", "final"), query.nameTerms);
+    }
+
+    @Test
+    void invalidTerms() {
+        assertThrows(IllegalArgumentException.class, () -> RepositoryQuery.parse("size>big"));
+        assertThrows(IllegalArgumentException.class, () -> RepositoryQuery.parse("mtime>yesterday"));
+        assertThrows(IllegalArgumentException.class, () -> RepositoryQuery.parse("mtime:2021-13-01"));
+        assertThrows(IllegalArgumentException.class, () -> RepositoryQuery.parse("rev>abc"));
+        assertThrows(IllegalArgumentException.class, () -> RepositoryQuery.parse("kind:link"));
+        assertThrows(IllegalArgumentException.class, () -> RepositoryQuery.parse("ext>psd"));
+    }
+
+    @Test
+    void queryMetadataStore() {
+        String[][] rows = {
+                {"/", "dir", "0", "0", "1", "alice"},
+                {"/assets", "dir", "0", "0", "2", "alice"},
+                {"/assets/Big.PSD", "file", "2000", "5000", "3", "bob"},
+                {"/assets/small.psd", "file", "10", "5000", "4", "alice"},
+                {"/assets/sub", "dir", "0", "0", "2", "alice"},
+                {"/assets/sub/big.png", "file", "3000", "9000", "5", "Bob"},
+                {"/assets0/big.psd", "file", "4000", "9000", "6", "bob"},
+                {"/big.psd", "file", "5000", "9000", "7", "bob"},
+        };
+        RepositoryMetadataStore store = new RepositoryMetadataStore(7, rows.length);
+        Map<String, Integer> extIdMap = new HashMap<>();
+        Map<String, Integer> authorIdMap = new HashMap<>();
+        for (int i = 0; i < rows.length; i++) {
+            String[] row = rows[i];
+            store.set(i, row[0], "file".equals(row[1]) ? SVNNodeKind.FILE : SVNNodeKind.DIR, Long.parseLong(row[2]),
+                    Long.parseLong(row[3]), Long.parseLong(row[4]), row[5], extIdMap, authorIdMap);
+        }
+
+        assertEquals(Arrays.asList("/assets/Big.PSD", "/assets/sub/big.png"),
+                store.query(RepositoryQuery.parse("path:/assets size>1000")));
+        assertEquals(Arrays.asList("/assets/Big.PSD", "/assets0/big.psd", "/big.psd"),
+                store.query(RepositoryQuery.parse("ext:psd author:bob")));
+        assertEquals(Arrays.asList("/assets", "/assets/sub"),
+                store.query(RepositoryQuery.parse("kind:dir")));
+        assertEquals(Arrays.asList("/assets/sub/big.png", "/assets0/big.psd"),
+                store.query(RepositoryQuery.parse("BIG rev>4 rev<=6")));
+        assertEquals(Collections.singletonList("/assets/small.psd"),
+                store.query(RepositoryQuery.parse("mtime<1970-01-02 author:alice kind:file")));
+    }
+}
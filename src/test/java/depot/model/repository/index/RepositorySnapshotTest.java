@@ -0,0 +1,104 @@
+package depot.model.repository.index;
+
+import depot.model.repository.path.RepositoryPathNode;
+import depot.util.TestRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepositorySnapshotTest {
+    @TempDir
+    File tempDir;
+
+    private TestRepository testRepository;
+    private SVNRepository repository;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        testRepository = new TestRepository(tempDir);
+        repository = testRepository.getRepository();
+        testRepository.commit(commit -> commit
+                .addDir("a")
+                .addDir("a/b")
+                .addFile("a/x.txt", "x")
+                .addFile("a/b/y.txt", "yy")
+                .addDir("c")
+                .addFile("c/z.txt", "zzz")
+                .addFile("top.txt", "top"));
+    }
+
+    private static Map<String, String> describe(SVNRepository repository, RepositorySnapshot snapshot) throws Exception {
+        Map<String, String> entries = new TreeMap<>();
+        snapshot.traverse(repository, RepositoryPathNode.getRoot(), (pathNode, entry) ->
+                entries.put(pathNode.toString(), String.format("%s %d r%d %s %s", entry.getKind(), entry.getSize(),
+                        entry.getRevision(), entry.getDate(), entry.getAuthor())));
+        return entries;
+    }
+
+    private RepositorySnapshot rebuild() throws Exception {
+        RepositorySnapshot.load(repository).dumpCache();
+        RepositorySnapshot snapshot = RepositorySnapshot.load(repository);
+        assertFalse(snapshot.isBuilt());
+        snapshot.update(repository, null);
+        return snapshot;
+    }
+
+    @Test
+    void rollForwardMatchesRebuild() throws Exception {
+        RepositorySnapshot snapshot = RepositorySnapshot.load(repository);
+        snapshot.update(repository, null);
+        assertEquals(1, snapshot.getRevision());
+
+        testRepository.commit(commit -> commit.modifyFile("a/x.txt", "changed"));
+        testRepository.commit(commit -> commit.delete("a/b"));
+        testRepository.commit(commit -> commit.copyDir("d", "c", 1).addFile("d/new.txt", "new"));
+        testRepository.commit(commit -> commit.delete("top.txt").addDir("top.txt").addFile("top.txt/inner.txt", "i"));
+        long latestRevision = repository.getLatestRevision();
+
+        snapshot.update(repository, null);
+        assertEquals(latestRevision, snapshot.getRevision());
+        Map<String, String> rolledForward = describe(repository, snapshot);
+
+        RepositorySnapshot rebuilt = rebuild();
+        assertEquals(latestRevision, rebuilt.getRevision());
+        assertEquals(describe(repository, rebuilt), rolledForward);
+        assertFalse(rolledForward.containsKey("/a/b"));
+        assertFalse(rolledForward.containsKey("/a/b/y.txt"));
+        assertEquals(SVNNodeKind.DIR, snapshot.getKind("/top.txt"));
+        assertEquals(SVNNodeKind.FILE, snapshot.getKind("/d/z.txt"));
+    }
+
+    @Test
+    void subtreeSizeCoversDescendantsOnly() throws Exception {
+        testRepository.commit(commit -> commit.addDir("a0").addFile("a0/w.txt", "wwww").addFile("a.txt", "aaaaa"));
+        RepositorySnapshot snapshot = RepositorySnapshot.load(repository);
+        snapshot.update(repository, null);
+
+        // "/a0"和"/a.txt"按字典序紧跟在"/a"的子树之后，不属于该子树
+        assertEquals(1 + 2, snapshot.getSubtreeSize("/a"));
+        assertEquals(2, snapshot.getSubtreeSize("/a/b"));
+        assertEquals(3, snapshot.getSubtreeSize("/c/z.txt"));
+        assertEquals(1 + 2 + 3 + 3 + 4 + 5, snapshot.getSubtreeSize("/"));
+    }
+
+    @Test
+    void traverseSubtree() throws Exception {
+        RepositorySnapshot snapshot = RepositorySnapshot.load(repository);
+        snapshot.update(repository, null);
+
+        Map<String, String> entries = new TreeMap<>();
+        snapshot.traverse(repository, RepositoryPathNode.of("/a"), (pathNode, entry) ->
+                entries.put(pathNode.toString(), entry.getName()));
+        assertEquals(4, entries.size());
+        assertEquals("a", entries.get("/a"));
+        assertEquals("y.txt", entries.get("/a/b/y.txt"));
+    }
+}
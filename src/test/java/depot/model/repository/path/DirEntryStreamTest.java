@@ -0,0 +1,63 @@
+package depot.model.repository.path;
+
+import org.junit.jupiter.api.Test;
+import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNDirEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirEntryStreamTest {
+    private static SVNDirEntry entry(String name) {
+        return new SVNDirEntry(null, null, name, null, 0, false, 0, null, null);
+    }
+
+    @Test
+    void streamInOrder() throws Exception {
+        List<String> names = new ArrayList<>();
+        DirEntryStream.stream(receiver -> {
+            for (int i = 0; i < 100; i++) {
+                receiver.receive(RepositoryPathNode.of("/" + i), entry(String.valueOf(i)));
+            }
+        }, (pathNode, entry) -> names.add(entry.getName()), 4);
+        assertEquals(100, names.size());
+        assertEquals("99", names.get(99));
+    }
+
+    @Test
+    void receiverFailureWaitsForProducer() {
+        AtomicReference<Thread> producerThread = new AtomicReference<>();
+        AtomicReference<Exception> producerFailure = new AtomicReference<>();
+        RuntimeException failure = new IllegalStateException("receiver");
+        Exception thrown = assertThrows(IllegalStateException.class, () -> DirEntryStream.stream(receiver -> {
+            producerThread.set(Thread.currentThread());
+            try {
+                for (int i = 0; ; i++) {
+                    receiver.receive(RepositoryPathNode.of("/" + i), entry(String.valueOf(i)));
+                }
+            } catch (Exception e) {
+                producerFailure.set(e);
+                throw e;
+            }
+        }, (pathNode, entry) -> {
+            throw failure;
+        }, 4));
+        assertSame(failure, thrown);
+        assertFalse(producerThread.get().isAlive());
+        assertTrue(producerFailure.get() instanceof SVNCancelException);
+    }
+
+    @Test
+    void producerFailureIsRethrown() {
+        Exception failure = new Exception("producer");
+        Exception thrown = assertThrows(Exception.class, () -> DirEntryStream.stream(receiver -> {
+            receiver.receive(RepositoryPathNode.of("/a"), entry("a"));
+            throw failure;
+        }, (pathNode, entry) -> {
+        }));
+        assertSame(failure, thrown);
+    }
+}
@@ -0,0 +1,72 @@
+package depot.model.repository.path;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepositoryPathNodeTest {
+    @Test
+    void parseAndFormat() {
+        assertEquals("/", RepositoryPathNode.of("").toString());
+        assertEquals("/", RepositoryPathNode.of("/").toString());
+        assertEquals("/a/b/c", RepositoryPathNode.of("/a/b/c").toString());
+        assertEquals("/a/b/c", RepositoryPathNode.of("a//b/c/").toString());
+        assertEquals("/a/b/c", RepositoryPathNode.of("\\a\\b\\c").toString());
+        assertEquals("/a/c", RepositoryPathNode.of("/a/./b/../c").toString());
+        assertEquals("/a", RepositoryPathNode.of("/../../a").toString());
+        assertEquals("/a/b", new RepositoryPathNode(Paths.get("a", "b")).toString());
+    }
+
+    @Test
+    void nodesAreInterned() {
+        RepositoryPathNode node = RepositoryPathNode.of("/a/b/c");
+        assertSame(node, RepositoryPathNode.of("a/b/c"));
+        assertSame(node, RepositoryPathNode.of("/a").resolve("b/c"));
+        assertSame(node.getParent(), RepositoryPathNode.of("/a/b"));
+        assertSame(RepositoryPathNode.getRoot(), RepositoryPathNode.of("/a").getParent());
+        assertNull(RepositoryPathNode.getRoot().getParent());
+        assertEquals(3, node.getDepth());
+        assertEquals("c", node.getName());
+    }
+
+    @Test
+    void constructedNodesEqualInternedNodes() {
+        RepositoryPathNode node = new RepositoryPathNode("/a/b");
+        RepositoryPathNode interned = RepositoryPathNode.of("/a/b");
+        assertNotSame(interned, node);
+        assertEquals(interned, node);
+        assertEquals(interned.hashCode(), node.hashCode());
+        assertEquals(RepositoryPathNode.getRoot(), new RepositoryPathNode());
+        assertNotEquals(RepositoryPathNode.of("/a/b"), RepositoryPathNode.of("/b/a"));
+        assertNotEquals(RepositoryPathNode.of("/a/b"), RepositoryPathNode.of("/a/b/c"));
+        assertSame(interned.resolveChild("c"), node.resolveChild("c"));
+    }
+
+    @Test
+    void startsWith() {
+        RepositoryPathNode node = RepositoryPathNode.of("/a/b/c");
+        assertTrue(node.startsWith(RepositoryPathNode.getRoot()));
+        assertTrue(node.startsWith(RepositoryPathNode.of("/a")));
+        assertTrue(node.startsWith(new RepositoryPathNode("/a/b")));
+        assertTrue(node.startsWith(node));
+        assertFalse(node.startsWith(RepositoryPathNode.of("/a/bc")));
+        assertFalse(node.startsWith(RepositoryPathNode.of("/a/b/c/d")));
+        assertFalse(RepositoryPathNode.of("/ab").startsWith(RepositoryPathNode.of("/a")));
+    }
+
+    @Test
+    void searchPathNode() {
+        RepositoryPathNode node = RepositoryPathNode.getSearchPathNode("a b/c?");
+        assertTrue(node.isSearch());
+        assertEquals(1, node.getDepth());
+        assertEquals("a b/c?", node.getSearchPattern());
+        assertEquals("搜索“a b/c?”", node.getName());
+        assertSame(node, RepositoryPathNode.of(node.toString()));
+        assertFalse(RepositoryPathNode.of("/@@").isSearch());
+        assertFalse(RepositoryPathNode.of("/a/@@x").isSearch());
+        assertNull(RepositoryPathNode.of("/a").getSearchPattern());
+        assertEquals("我的仓库", RepositoryPathNode.getRoot().getName());
+    }
+}
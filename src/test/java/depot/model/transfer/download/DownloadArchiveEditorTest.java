@@ -0,0 +1,196 @@
+package depot.model.transfer.download;
+
+import depot.model.repository.path.RepositoryDirEntry;
+import depot.model.repository.path.RepositoryPathNode;
+import depot.util.TestRepository;
+import depot.util.TestTarReader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownloadArchiveEditorTest {
+    private static final String LONG_NAME = "很长的文件名" + String.join("", Collections.nCopies(30, "long")) + ".txt";
+
+    @TempDir
+    File tempDir;
+
+    private SVNRepository repository;
+    private long revision;
+    /*仓库路径 → 内容，文件夹为null*/
+    private final Map<String, byte[]> contents = new TreeMap<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        TestRepository testRepository = new TestRepository(tempDir);
+        repository = testRepository.getRepository();
+        byte[] large = new byte[300 * 1024 + 3];
+        new Random(25).nextBytes(large);
+        contents.put("/a", null);
+        contents.put("/a/b", null);
+        contents.put("/a/b/empty", new byte[0]);
+        contents.put("/a/b/" + LONG_NAME, "long".getBytes(StandardCharsets.UTF_8));
+        contents.put("/a/x.txt", "x".getBytes(StandardCharsets.UTF_8));
+        contents.put("/a/large.bin", large);
+        contents.put("/top.txt", "top".getBytes(StandardCharsets.UTF_8));
+        contents.put("/other.txt", "not selected".getBytes(StandardCharsets.UTF_8));
+        revision = testRepository.commit(commit -> {
+            for (Map.Entry<String, byte[]> entry : contents.entrySet()) {
+                if (entry.getValue() == null) {
+                    commit.addDir(entry.getKey().substring(1));
+                } else {
+                    commit.addFile(entry.getKey().substring(1), entry.getValue());
+                }
+            }
+        });
+        // 后续修改不影响按固定版本打包
+        testRepository.commit(commit -> commit.modifyFile("a/x.txt", "changed later"));
+    }
+
+    /**
+     * 与打包下载相同的方式写入所选项目
+     */
+    private byte[] download(DownloadArchiveEditor.Format format, String... srcPaths) throws Exception {
+        Map<String, Long> fileSizes = new HashMap<>();
+        for (String srcPath : srcPaths) {
+            RepositoryDirEntry.list(repository, RepositoryPathNode.of(srcPath), revision, (pathNode, entry) -> {
+                if (entry.getKind() == SVNNodeKind.FILE) {
+                    fileSizes.put(pathNode.toString(), entry.getSize());
+                }
+            });
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long[] received = {0};
+        try (DownloadArchiveEditor archiveEditor = new DownloadArchiveEditor(RepositoryPathNode.getRoot(), out, format,
+                filePath -> fileSizes.getOrDefault(filePath, -1L), () -> false)) {
+            archiveEditor.setReceiveListener(receivedTotal -> received[0] = receivedTotal);
+            for (String srcPath : srcPaths) {
+                repository.update(revision, srcPath, true, reporter -> {
+                    reporter.setPath("", null, revision, SVNDepth.INFINITY, true);
+                    reporter.deletePath("");
+                    reporter.finishReport();
+                }, archiveEditor);
+            }
+        }
+        assertEquals(fileSizes.values().stream().mapToLong(Long::longValue).sum(), received[0]);
+        return out.toByteArray();
+    }
+
+    private Map<String, byte[]> expected(String... srcPaths) {
+        Map<String, byte[]> expected = new TreeMap<>();
+        contents.forEach((path, content) -> {
+            for (String srcPath : srcPaths) {
+                if (RepositoryPathNode.of(path).startsWith(RepositoryPathNode.of(srcPath))) {
+                    expected.put(path.substring(1) + (content == null ? "/" : ""), content);
+                }
+            }
+        });
+        return expected;
+    }
+
+    private static void assertEntries(Map<String, byte[]> expected, Map<String, byte[]> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        expected.forEach((name, content) -> assertArrayEquals(content, actual.get(name), name));
+    }
+
+    private static Map<String, byte[]> readTar(InputStream in) throws Exception {
+        Map<String, byte[]> entries = new TreeMap<>();
+        for (TestTarReader.Entry entry : TestTarReader.read(in)) {
+            assertNull(entries.put(entry.name, entry.isDir() ? null : entry.content), entry.name);
+        }
+        return entries;
+    }
+
+    @Test
+    void zipRoundTrip() throws Exception {
+        byte[] archive = download(DownloadArchiveEditor.Format.ZIP, "/a", "/top.txt");
+        Map<String, byte[]> entries = new TreeMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                assertNull(entries.put(entry.getName(), entry.isDirectory() ? null : TestTarReader.readAll(zip)));
+            }
+        }
+        assertEntries(expected("/a", "/top.txt"), entries);
+    }
+
+    @Test
+    void tarRoundTrip() throws Exception {
+        byte[] archive = download(DownloadArchiveEditor.Format.TAR, "/a", "/top.txt");
+        assertEntries(expected("/a", "/top.txt"), readTar(new ByteArrayInputStream(archive)));
+    }
+
+    @Test
+    void tarGzRoundTrip() throws Exception {
+        byte[] archive = download(DownloadArchiveEditor.Format.TAR_GZ, "/a/b");
+        assertEntries(expected("/a/b"), readTar(new GZIPInputStream(new ByteArrayInputStream(archive))));
+    }
+
+    @Test
+    void tarProgressWithoutSnapshot() throws Exception {
+        /*没有快照时文件大小只来自所选子树的列表*/
+        Map<String, Long> fileSizes = new HashMap<>();
+        RepositoryDirEntry.list(repository, RepositoryPathNode.of("/a"), revision, (pathNode, entry) -> {
+            if (entry.getKind() == SVNNodeKind.FILE) {
+                fileSizes.put(pathNode.toString(), entry.getSize());
+            }
+        });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Map<String, Long> currentSizes = new TreeMap<>();
+        try (DownloadArchiveEditor archiveEditor = new DownloadArchiveEditor(RepositoryPathNode.getRoot(), out,
+                DownloadArchiveEditor.Format.TAR, filePath -> fileSizes.getOrDefault(filePath, -1L), () -> false)) {
+            assertEquals(-1, archiveEditor.getCurrentSize());
+            archiveEditor.setReceiveListener(receivedTotal -> {
+                RepositoryPathNode currentPathNode = archiveEditor.getCurrentPathNode();
+                long currentSize = archiveEditor.getCurrentSize();
+                assertTrue(archiveEditor.getCurrentReceived() <= currentSize);
+                currentSizes.put(currentPathNode.toString(), currentSize);
+            });
+            repository.update(revision, "/a", true, reporter -> {
+                reporter.setPath("", null, revision, SVNDepth.INFINITY, true);
+                reporter.deletePath("");
+                reporter.finishReport();
+            }, archiveEditor);
+        }
+        assertEquals(new TreeMap<>(fileSizes), currentSizes);
+        assertEntries(expected("/a"), readTar(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    @Test
+    void tarWithoutSizeFails() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DownloadArchiveEditor archiveEditor = new DownloadArchiveEditor(RepositoryPathNode.getRoot(), out,
+                DownloadArchiveEditor.Format.TAR, filePath -> -1L, () -> false);
+        assertThrows(SVNException.class, () -> repository.update(revision, "/top.txt", true, reporter -> {
+            reporter.setPath("", null, revision, SVNDepth.INFINITY, true);
+            reporter.deletePath("");
+            reporter.finishReport();
+        }, archiveEditor));
+    }
+
+    @Test
+    void cancelStopsDownload() throws Exception {
+        DownloadArchiveEditor archiveEditor = new DownloadArchiveEditor(RepositoryPathNode.getRoot(),
+                new ByteArrayOutputStream(), DownloadArchiveEditor.Format.ZIP, null, () -> true);
+        assertThrows(SVNException.class, () -> repository.update(revision, "/a", true, reporter -> {
+            reporter.setPath("", null, revision, SVNDepth.INFINITY, true);
+            reporter.deletePath("");
+            reporter.finishReport();
+        }, archiveEditor));
+    }
+}
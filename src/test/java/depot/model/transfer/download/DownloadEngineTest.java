@@ -0,0 +1,70 @@
+package depot.model.transfer.download;
+
+import depot.model.repository.path.RepositoryPathNode;
+import depot.util.TestRepository;
+import javafx.concurrent.Task;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedList;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownloadEngineTest {
+    @TempDir
+    File tempDir;
+
+    private static boolean isWorkerAlive() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> thread.isAlive() && "DownloadEngine".equals(thread.getName()));
+    }
+
+    @Test
+    void interruptedCallerWaitsForWorkers() throws Exception {
+        TestRepository testRepository = new TestRepository(new File(tempDir, "repository"));
+        SVNRepository repository = testRepository.getRepository();
+        byte[] content = new byte[2 * 1024 * 1024];
+        new Random(21).nextBytes(content);
+        testRepository.commit(commit -> commit.addDir("a").addFile("a/1.bin", content).addFile("a/2.bin", content));
+
+        File downloadParent = new File(tempDir, "download");
+        LinkedList<DownloadTask> downloadTasks = new LinkedList<>();
+        downloadTasks.add(new DownloadTask(RepositoryPathNode.of("/a"), repository.info("/a", -1),
+                RepositoryPathNode.getRoot(), downloadParent));
+        DownloadTransactionData downloadTransactionData = new DownloadTransactionData(downloadTasks, new Task<Void>() {
+            @Override
+            protected Void call() {
+                return null;
+            }
+        });
+        /*每个窗口都会检查是否取消，借此放慢下载，保证调用方中断时任务仍在下载中*/
+        DownloadEngine downloadEngine = new DownloadEngine(repository, downloadTransactionData, () -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        });
+
+        assertThrows(InterruptedException.class, () -> downloadEngine.execute(() -> {
+            if (downloadTransactionData.getReceivedSize() > 0) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertFalse(isWorkerAlive());
+        /*任务已中断并按失败结束，返回前已删除写入的文件*/
+        assertEquals(0, downloadTransactionData.countActiveTasks());
+        assertEquals(0, downloadTransactionData.getFinishedCount());
+        assertEquals(0, downloadTransactionData.getReceivedSize());
+        try (Stream<Path> paths = Files.walk(downloadParent.toPath())) {
+            assertEquals(0, paths.filter(Files::isRegularFile).count());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package depot.model.transfer.download;
+
+import depot.model.repository.path.RepositoryPathNode;
+import depot.util.TestRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNDirEntry;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownloadTaskTest {
+    @TempDir
+    File tempDir;
+
+    private SVNRepository repository;
+    private File downloadParent;
+    private byte[] large;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        TestRepository testRepository = new TestRepository(new File(tempDir, "repository"));
+        repository = testRepository.getRepository();
+        downloadParent = new File(tempDir, "download");
+        large = new byte[1024 * 1024];
+        new Random(22).nextBytes(large);
+        testRepository.commit(commit -> commit
+                .addDir("a")
+                .addFile("a/1.txt", "one")
+                .addFile("a/2.bin", large)
+                .addDir("a/sub")
+                .addFile("a/sub/3.txt", "three"));
+    }
+
+    private DownloadTask createTask() throws Exception {
+        SVNDirEntry dirEntry = repository.info("/a", -1);
+        return new DownloadTask(RepositoryPathNode.of("/a"), dirEntry, RepositoryPathNode.getRoot(), downloadParent);
+    }
+
+    private long countFiles() throws Exception {
+        if (!downloadParent.exists()) {
+            return 0;
+        }
+        try (Stream<Path> paths = Files.walk(downloadParent.toPath())) {
+            return paths.filter(Files::isRegularFile).count();
+        }
+    }
+
+    @Test
+    void downloadFolder() throws Exception {
+        createTask().execute(repository);
+        assertEquals("one", new String(Files.readAllBytes(new File(downloadParent, "a/1.txt").toPath())));
+        assertArrayEquals(large, Files.readAllBytes(new File(downloadParent, "a/2.bin").toPath()));
+        assertEquals("three", new String(Files.readAllBytes(new File(downloadParent, "a/sub/3.txt").toPath())));
+        assertEquals(3, countFiles());
+    }
+
+    @Test
+    void cancelWithinFile() throws Exception {
+        DownloadTask downloadTask = createTask();
+        DownloadEditor editor = downloadTask.getEditor();
+        /*大文件的第一个窗口写入后取消*/
+        editor.setCancelled(() -> editor.getCurrentReceived() > 0
+                && editor.getCurrentPathNode().getName().equals("2.bin"));
+        assertThrows(SVNCancelException.class, () -> downloadTask.execute(repository));
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void cancelBetweenFiles() throws Exception {
+        DownloadTask downloadTask = createTask();
+        /*第一个文件完成后取消*/
+        AtomicBoolean downloaded = new AtomicBoolean();
+        downloadTask.getEditor().setDownloadedListener((path, file, checksum) -> downloaded.set(true));
+        downloadTask.getEditor().setCancelled(downloaded::get);
+        assertThrows(SVNCancelException.class, () -> downloadTask.execute(repository));
+        /*已完成的文件同样删除，不留下不完整的文件夹*/
+        assertEquals(0, countFiles());
+        assertFalse(new File(downloadParent, "a").exists());
+    }
+}
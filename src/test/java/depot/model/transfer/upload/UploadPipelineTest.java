@@ -0,0 +1,110 @@
+package depot.model.transfer.upload;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.security.MessageDigest;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadPipelineTest {
+    @TempDir
+    File tempDir;
+
+    private final Random random = new Random(19);
+
+    private File createFile(String name, int size) throws Exception {
+        byte[] content = new byte[size];
+        random.nextBytes(content);
+        File file = new File(tempDir, name);
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+    private static String md5(byte[] content) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        digest.update(content);
+        return SVNFileUtil.toHexDigest(digest);
+    }
+
+    /**
+     * 按提交线程的方式读取一个文件的所有窗口，返回结束标记
+     */
+    private static UploadPipeline.Window readFile(UploadPipeline pipeline, File file, ByteArrayOutputStream content)
+            throws Exception {
+        while (true) {
+            UploadPipeline.Window window = pipeline.take(file);
+            assertSame(file, window.getFile());
+            if (window.isEnd()) {
+                return window;
+            }
+            assertTrue(window.getLength() > 0 && window.getLength() <= UploadPipeline.WINDOW_SIZE);
+            content.write(window.getBuffer(), 0, window.getLength());
+            pipeline.release(window);
+        }
+    }
+
+    @Test
+    void windowsFollowFileOrder() throws Exception {
+        int windowSize = UploadPipeline.WINDOW_SIZE;
+        List<File> files = Arrays.asList(
+                createFile("empty", 0),
+                createFile("small", 100),
+                createFile("exact", windowSize),
+                createFile("partial", windowSize * 5 / 2),
+                /*超过缓冲区总数，需要循环复用*/
+                createFile("large", windowSize * 40 + 7),
+                createFile("last", 1));
+        try (UploadPipeline pipeline = new UploadPipeline(files, () -> false)) {
+            for (File file : files) {
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                UploadPipeline.Window end = readFile(pipeline, file, content);
+                byte[] expected = Files.readAllBytes(file.toPath());
+                assertArrayEquals(expected, content.toByteArray(), file.getName());
+                assertEquals(md5(expected), end.getChecksum(), file.getName());
+            }
+        }
+    }
+
+    @Test
+    void outOfOrderTakeFails() throws Exception {
+        File first = createFile("first", 10);
+        File second = createFile("second", 10);
+        try (UploadPipeline pipeline = new UploadPipeline(Arrays.asList(first, second), () -> false)) {
+            assertThrows(IllegalStateException.class, () -> pipeline.take(second));
+        }
+    }
+
+    @Test
+    void readErrorReachesTake() throws Exception {
+        File first = createFile("first", UploadPipeline.WINDOW_SIZE + 1);
+        File missing = new File(tempDir, "missing");
+        File third = createFile("third", 10);
+        try (UploadPipeline pipeline = new UploadPipeline(Arrays.asList(first, missing, third), () -> false)) {
+            readFile(pipeline, first, new ByteArrayOutputStream());
+            assertThrows(NoSuchFileException.class, () -> pipeline.take(missing));
+        }
+    }
+
+    @Test
+    void cancelWhileWaiting() throws Exception {
+        File file = createFile("large", UploadPipeline.WINDOW_SIZE * 40);
+        boolean[] cancelled = {false};
+        try (UploadPipeline pipeline = new UploadPipeline(Collections.singletonList(file), () -> cancelled[0])) {
+            /*不归还缓冲区，读取线程用完缓冲区后等待*/
+            List<UploadPipeline.Window> windows = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                windows.add(pipeline.take(file));
+            }
+            cancelled[0] = true;
+            assertThrows(UploadCancelledException.class, () -> pipeline.take(file));
+            windows.forEach(pipeline::release);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package depot.util;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonWriterTest {
+    @Test
+    void escapeStrings() {
+        assertEquals("\"plain 中文\"", new JsonWriter().value("plain 中文").toString());
+        assertEquals("\"a\\\"b\\\\c\"", new JsonWriter().value("a\"b\\c").toString());
+        assertEquals("\"\\n\\r\\t\"", new JsonWriter().value("\n\r\t").toString());
+        assertEquals("\"\\u0000\\u001f\\u0008\"", new JsonWriter().value("\u0000\u001f\b").toString());
+        assertEquals("\"/<>\u007f\"", new JsonWriter().value("/<>\u007f").toString());
+        assertEquals("null", new JsonWriter().value((String) null).toString());
+    }
+
+    @Test
+    void separators() {
+        String json = new JsonWriter()
+                .beginArray()
+                .beginObject().property("a", 1).property("b", true).property("c", "x").endObject()
+                .beginArray().endArray()
+                .beginObject().endObject()
+                .value(-2)
+                .endArray()
+                .toString();
+        assertEquals("[{\"a\":1,\"b\":true,\"c\":\"x\"},[],{},-2]", json);
+    }
+
+    @Test
+    void deepNesting() {
+        JsonWriter writer = new JsonWriter(4);
+        for (int i = 0; i < 20; i++) {
+            writer.beginArray().value(i);
+        }
+        for (int i = 0; i < 20; i++) {
+            writer.endArray();
+        }
+        JSONArray array = new JSONArray(writer.toString());
+        for (int i = 0; i < 19; i++) {
+            assertEquals(i, array.getInt(0));
+            array = array.getJSONArray(1);
+        }
+        assertEquals(1, array.length());
+    }
+
+    @Test
+    void roundTrip() {
+        StringBuilder text = new StringBuilder();
+        for (char c = 0; c < 0x80; c++) {
+            text.append(c);
+        }
+        text.append("中文 😀");
+        String json = new JsonWriter()
+                .beginObject()
+                .property(text.toString(), text.toString())
+                .name("nested").beginArray().value(Long.MAX_VALUE).value(false).value((String) null).endArray()
+                .endObject()
+                .toString();
+        JSONObject object = new JSONObject(json);
+        assertEquals(text.toString(), object.getString(text.toString()));
+        JSONArray nested = object.getJSONArray("nested");
+        assertEquals(Long.MAX_VALUE, nested.getLong(0));
+        assertFalse(nested.getBoolean(1));
+        assertTrue(nested.isNull(2));
+    }
+}
@@ -0,0 +1,137 @@
+package depot.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TarOutputStreamTest {
+    private static final long MTIME = 1600000000123L;
+
+    private static String repeat(String s, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(s);
+        }
+        return builder.toString();
+    }
+
+    private static void putFile(TarOutputStream tar, String name, byte[] content) throws IOException {
+        tar.putFileEntry(name, content.length, MTIME);
+        tar.write(content);
+        tar.closeEntry();
+    }
+
+    @Test
+    void roundTrip() throws Exception {
+        byte[] large = new byte[512 * 3 + 17];
+        Arrays.fill(large, (byte) 7);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TarOutputStream tar = new TarOutputStream(out)) {
+            tar.putDirEntry("dir", MTIME);
+            putFile(tar, "dir/a.txt", "hello".getBytes(StandardCharsets.UTF_8));
+            putFile(tar, "dir/empty", new byte[0]);
+            putFile(tar, "dir/block", new byte[512]);
+            putFile(tar, "dir/large", large);
+        }
+        assertEquals(0, out.size() % 512);
+
+        List<TestTarReader.Entry> entries = TestTarReader.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(5, entries.size());
+        assertEquals("dir/", entries.get(0).name);
+        assertTrue(entries.get(0).isDir());
+        assertEquals(0755, entries.get(0).mode);
+        assertEquals("dir/a.txt", entries.get(1).name);
+        assertEquals('0', entries.get(1).type);
+        assertEquals(0644, entries.get(1).mode);
+        assertEquals(MTIME / 1000, entries.get(1).mtime);
+        assertEquals("hello", new String(entries.get(1).content, StandardCharsets.UTF_8));
+        assertEquals(0, entries.get(2).size);
+        assertArrayEquals(new byte[512], entries.get(3).content);
+        assertArrayEquals(large, entries.get(4).content);
+        entries.forEach(entry -> assertTrue(entry.paxRecords.isEmpty(), entry.name));
+    }
+
+    @Test
+    void longNamesUsePaxPath() throws Exception {
+        /*恰好100字节时仍放在ustar头中*/
+        String exactName = repeat("a", 96) + ".txt";
+        String longName = repeat("b", 97) + ".txt";
+        String unicodeName = repeat("目录/", 20) + "文件.txt";
+        String longDirName = repeat("c", 100);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TarOutputStream tar = new TarOutputStream(out)) {
+            putFile(tar, exactName, new byte[]{1});
+            putFile(tar, longName, new byte[]{2});
+            putFile(tar, unicodeName, new byte[]{3});
+            tar.putDirEntry(longDirName, MTIME);
+        }
+
+        List<TestTarReader.Entry> entries = TestTarReader.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(4, entries.size());
+        assertEquals(exactName, entries.get(0).name);
+        assertTrue(entries.get(0).paxRecords.isEmpty());
+        assertEquals(longName, entries.get(1).name);
+        assertEquals(longName, entries.get(1).paxRecords.get("path"));
+        assertEquals(unicodeName, entries.get(2).name);
+        assertArrayEquals(new byte[]{3}, entries.get(2).content);
+        assertEquals(longDirName + "/", entries.get(3).name);
+        assertTrue(entries.get(3).isDir());
+    }
+
+    @Test
+    void paxRecordLengthIncludesItsOwnDigits() throws Exception {
+        /*记录长度在9/10和99/100附近时，长度字段本身的位数会变化*/
+        for (int nameLength = 101; nameLength < 1100; nameLength++) {
+            String name = repeat("n", nameLength);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (TarOutputStream tar = new TarOutputStream(out)) {
+                putFile(tar, name, new byte[0]);
+            }
+            List<TestTarReader.Entry> entries = TestTarReader.read(new ByteArrayInputStream(out.toByteArray()));
+            assertEquals(name, entries.get(0).name);
+        }
+    }
+
+    @Test
+    void largeSizeUsesPaxSize() throws Exception {
+        long size = 077777777777L + 1;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TarOutputStream tar = new TarOutputStream(out);
+        tar.putFileEntry("huge.bin", size, MTIME);
+        byte[] written = out.toByteArray();
+
+        /*PAX头、PAX数据块、ustar头*/
+        assertEquals(512 * 3, written.length);
+        assertEquals('x', written[156]);
+        int paxLength = Integer.parseInt(new String(written, 124, 11, StandardCharsets.US_ASCII), 8);
+        Map<String, String> records = TestTarReader.parsePaxRecords(Arrays.copyOfRange(written, 512, 512 + paxLength));
+        assertEquals(String.valueOf(size), records.get("size"));
+        assertFalse(records.containsKey("path"));
+        assertEquals('0', written[1024 + 156]);
+        assertEquals("huge.bin", new String(written, 1024, 8, StandardCharsets.UTF_8));
+        assertEquals("00000000000", new String(written, 1024 + 124, 11, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void sizeMismatchFails() throws Exception {
+        TarOutputStream tar = new TarOutputStream(new ByteArrayOutputStream());
+        assertThrows(IOException.class, () -> tar.write(1));
+        tar.putFileEntry("a", 2, MTIME);
+        assertThrows(IOException.class, () -> tar.write(new byte[3]));
+        tar.write(1);
+        assertThrows(IOException.class, tar::closeEntry);
+        assertThrows(IOException.class, () -> tar.putDirEntry("b", MTIME));
+        assertThrows(IOException.class, tar::finish);
+        tar.write(2);
+        tar.closeEntry();
+        tar.finish();
+    }
+}
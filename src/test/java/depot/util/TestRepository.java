@@ -0,0 +1,104 @@
+package depot.util;
+
+import org.tmatesoft.svn.core.SVNCommitInfo;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory;
+import org.tmatesoft.svn.core.io.ISVNEditor;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+import org.tmatesoft.svn.core.io.diff.SVNDeltaGenerator;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 测试用本地仓库：在临时文件夹中创建，按路径提交文件夹和文件
+ */
+public class TestRepository {
+    private final SVNRepository repository;
+
+    static {
+        FSRepositoryFactory.setup();
+    }
+
+    public TestRepository(File dir) throws SVNException {
+        SVNURL url = SVNRepositoryFactory.createLocalRepository(dir, true, false);
+        repository = SVNRepositoryFactory.create(url);
+    }
+
+    public SVNRepository getRepository() {
+        return repository;
+    }
+
+    public interface Edit {
+        void edit(Commit commit) throws SVNException;
+    }
+
+    /**
+     * 一次提交，路径相对仓库根路径，上级文件夹必须已存在或在同一次提交中先添加
+     */
+    public long commit(Edit edit) throws SVNException {
+        ISVNEditor editor = repository.getCommitEditor("test", null);
+        try {
+            editor.openRoot(-1);
+            edit.edit(new Commit(editor));
+            editor.closeDir();
+            SVNCommitInfo commitInfo = editor.closeEdit();
+            return commitInfo.getNewRevision();
+        } catch (SVNException e) {
+            editor.abortEdit();
+            throw e;
+        }
+    }
+
+    public static class Commit {
+        private final ISVNEditor editor;
+
+        private Commit(ISVNEditor editor) {
+            this.editor = editor;
+        }
+
+        public Commit addDir(String path) throws SVNException {
+            editor.addDir(path, null, -1);
+            editor.closeDir();
+            return this;
+        }
+
+        public Commit copyDir(String path, String copyFromPath, long copyFromRevision) throws SVNException {
+            editor.addDir(path, copyFromPath, copyFromRevision);
+            editor.closeDir();
+            return this;
+        }
+
+        public Commit addFile(String path, String content) throws SVNException {
+            editor.addFile(path, null, -1);
+            sendContent(path, content.getBytes(StandardCharsets.UTF_8));
+            return this;
+        }
+
+        public Commit addFile(String path, byte[] content) throws SVNException {
+            editor.addFile(path, null, -1);
+            sendContent(path, content);
+            return this;
+        }
+
+        public Commit modifyFile(String path, String content) throws SVNException {
+            editor.openFile(path, -1);
+            sendContent(path, content.getBytes(StandardCharsets.UTF_8));
+            return this;
+        }
+
+        public Commit delete(String path) throws SVNException {
+            editor.deleteEntry(path, -1);
+            return this;
+        }
+
+        private void sendContent(String path, byte[] content) throws SVNException {
+            editor.applyTextDelta(path, null);
+            String checksum = new SVNDeltaGenerator().sendDelta(path, new ByteArrayInputStream(content), editor, true);
+            editor.closeFile(path, checksum);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package depot.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 测试用tar读取：校验ustar头，应用PAX扩展头中的path和size，读取到两个全零块为止
+ */
+public class TestTarReader {
+    private static final int BLOCK_SIZE = 512;
+
+    public static class Entry {
+        public final String name;
+        public final char type;
+        public final int mode;
+        public final long mtime;
+        public final long size;
+        public final byte[] content;
+        public final Map<String, String> paxRecords;
+
+        private Entry(String name, char type, int mode, long mtime, long size, byte[] content,
+                      Map<String, String> paxRecords) {
+            this.name = name;
+            this.type = type;
+            this.mode = mode;
+            this.mtime = mtime;
+            this.size = size;
+            this.content = content;
+            this.paxRecords = paxRecords;
+        }
+
+        public boolean isDir() {
+            return type == '5';
+        }
+    }
+
+    public static List<Entry> read(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        List<Entry> entries = new ArrayList<>();
+        Map<String, String> paxRecords = new HashMap<>();
+        byte[] header = new byte[BLOCK_SIZE];
+        while (true) {
+            in.readFully(header);
+            if (isZero(header)) {
+                in.readFully(header);
+                if (!isZero(header)) {
+                    throw new IOException("tar结尾缺少第二个全零块");
+                }
+                if (in.read() >= 0) {
+                    throw new IOException("tar结尾之后还有数据");
+                }
+                return entries;
+            }
+            checkHeader(header);
+            char type = (char) header[156];
+            long size = parseOctal(header, 124, 12);
+            byte[] content = readContent(in, type == 'x' ? size : paxRecords.containsKey("size") ?
+                    Long.parseLong(paxRecords.get("size")) : size);
+            if (type == 'x') {
+                paxRecords = parsePaxRecords(content);
+                continue;
+            }
+            String name = paxRecords.containsKey("path") ? paxRecords.get("path") : parseString(header, 0, 100);
+            entries.add(new Entry(name, type, (int) parseOctal(header, 100, 8), parseOctal(header, 136, 12),
+                    content.length, content, paxRecords));
+            paxRecords = new HashMap<>();
+        }
+    }
+
+    private static void checkHeader(byte[] header) throws IOException {
+        if (!"ustar".equals(parseString(header, 257, 6)) || header[263] != '0' || header[264] != '0') {
+            throw new IOException("不是ustar格式");
+        }
+        long checksum = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            checksum += i >= 148 && i < 156 ? ' ' : header[i] & 0xff;
+        }
+        if (checksum != parseOctal(header, 148, 8)) {
+            throw new IOException("tar头校验和不符");
+        }
+    }
+
+    private static byte[] readContent(DataInputStream in, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("条目过大：" + size);
+        }
+        byte[] content = new byte[(int) size];
+        in.readFully(content);
+        int remainder = (int) (size % BLOCK_SIZE);
+        if (remainder > 0) {
+            byte[] padding = new byte[BLOCK_SIZE - remainder];
+            in.readFully(padding);
+            if (!isZero(padding)) {
+                throw new IOException("填充不为零");
+            }
+        }
+        return content;
+    }
+
+    /**
+     * 每条记录的长度字段必须等于记录的实际字节数
+     */
+    public static Map<String, String> parsePaxRecords(byte[] data) throws IOException {
+        Map<String, String> records = new HashMap<>();
+        int pos = 0;
+        while (pos < data.length) {
+            int space = pos;
+            while (data[space] != ' ') {
+                space++;
+            }
+            int length = Integer.parseInt(new String(data, pos, space - pos, StandardCharsets.US_ASCII));
+            if (pos + length > data.length || data[pos + length - 1] != '\n') {
+                throw new IOException("PAX记录长度不符");
+            }
+            String record = new String(data, space + 1, pos + length - space - 2, StandardCharsets.UTF_8);
+            int equals = record.indexOf('=');
+            records.put(record.substring(0, equals), record.substring(equals + 1));
+            pos += length;
+        }
+        return records;
+    }
+
+    private static boolean isZero(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String parseString(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static long parseOctal(byte[] header, int offset, int length) throws IOException {
+        String octal = parseString(header, offset, length).trim();
+        try {
+            return Long.parseLong(octal, 8);
+        } catch (NumberFormatException e) {
+            throw new IOException("八进制字段无效：" + octal);
+        }
+    }
+
+    public static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int length;
+        while ((length = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, length);
+        }
+        return out.toByteArray();
+    }
+}